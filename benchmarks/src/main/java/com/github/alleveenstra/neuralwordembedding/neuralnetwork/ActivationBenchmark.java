@@ -0,0 +1,53 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The activation and its derivative over a hidden layer of the training, or a scoring batch of 256 of them
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActivationBenchmark {
+
+    @Param({"tanh", "tabulated", "rational", "hard"})
+    public String activation;
+
+    @Param({"100", "25600"})
+    public int size;
+
+    private Activation function;
+    private double[] inputs;
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        function = Activations.byName(activation);
+        final Random random = new Random(37);
+        inputs = new double[size];
+        for (int index = 0; index < size; index++) {
+            // the inputs of a hidden unit mostly stay within a few units of zero
+            inputs[index] = random.nextGaussian() * 2.0;
+        }
+        values = new double[size];
+    }
+
+    @Benchmark
+    public double[] apply() {
+        System.arraycopy(inputs, 0, values, 0, size);
+        function.apply(values, 0, size);
+        return values;
+    }
+
+    @Benchmark
+    public double[] derive() {
+        System.arraycopy(inputs, 0, values, 0, size);
+        function.apply(values, 0, size);
+        function.derive(values, 0, size);
+        return values;
+    }
+}
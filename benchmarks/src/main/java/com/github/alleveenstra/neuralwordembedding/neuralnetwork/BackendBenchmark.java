@@ -0,0 +1,63 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The three products of the matrix backends on rows x inner times inner x columns. One row is a training step, 256 rows
+// a scoring batch, the inner and column sizes span the layers of the network, so the crossover between native BLAS and
+// the Java loops can be read off per shape.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackendBenchmark {
+
+    @Param({"jblas", "java"})
+    public String backend;
+
+    @Param({"1", "256"})
+    public int rows;
+
+    @Param({"50", "500", "2000"})
+    public int inner;
+
+    @Param({"1", "100", "500"})
+    public int columns;
+
+    private MatrixBackend matrixBackend;
+    private DoubleMatrix input, weights, delta, product, error, update;
+
+    @Setup
+    public void setup() {
+        org.jblas.util.Random.seed(37);
+        matrixBackend = MatrixBackends.byName(backend);
+        input = DoubleMatrix.rand(rows, inner);
+        weights = DoubleMatrix.rand(inner, columns);
+        delta = DoubleMatrix.rand(rows, columns);
+        product = new DoubleMatrix(rows, columns);
+        error = new DoubleMatrix(rows, inner);
+        update = new DoubleMatrix(inner, columns);
+    }
+
+    // the forward pass
+    @Benchmark
+    public DoubleMatrix mmul() {
+        return matrixBackend.mmul(input, weights, product);
+    }
+
+    // the error propagated back through the weights
+    @Benchmark
+    public DoubleMatrix mmulTransposed() {
+        return matrixBackend.mmulTransposed(delta, weights, error);
+    }
+
+    // the weight update, an outer product for a single row
+    @Benchmark
+    public DoubleMatrix transposedMmul() {
+        return matrixBackend.transposedMmul(input, delta, update);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+// Building the input of the network from a window of words, with a vocabulary the size of a real corpus so the
+// lookups miss the caches like they do during training
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EmbeddingBenchmark {
+    private static final int WINDOWS = 4096;
+
+    @Param({"100000", "1000000"})
+    public int vocabularySize;
+
+    private ZealousWordEmbeddingTrainingStrategy strategy;
+    private List<Vector<String>> windows;
+    private int next;
+
+    @Setup
+    public void setup() {
+        org.jblas.util.Random.seed(37);
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (int word = 0; word < vocabularySize; word++) {
+            embeddings.put("w" + word, DoubleMatrix.rand(1, ZealousWordEmbeddingTrainingStrategy.EMBEDDING_SIZE).min(0.5));
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(ZealousWordEmbeddingTrainingStrategy.EMBEDDING_SIZE * 10, 100, 1);
+        strategy = new ZealousWordEmbeddingTrainingStrategy(network, new BackPropagationTrainer(network), embeddings, 1);
+        final Random random = new Random(37);
+        windows = new ArrayList<>(WINDOWS);
+        for (int i = 0; i < WINDOWS; i++) {
+            final Vector<String> window = new Vector<>(strategy.windowSize);
+            for (int offset = 0; offset < strategy.windowSize; offset++) {
+                window.add("w" + random.nextInt(vocabularySize));
+            }
+            windows.add(window);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategy.shutdown();
+    }
+
+    @Benchmark
+    public DoubleMatrix concatenateEmbeddings() {
+        next = (next + 1) % WINDOWS;
+        return strategy.concatenateEmbeddings(windows.get(next));
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One training example through the network the training uses, 10 words of 50 dimensions into 100 hidden units
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+
+    @Param({"500"})
+    public int inputSize;
+
+    @Param({"100"})
+    public int hiddenSize;
+
+    @Param({"jblas", "java"})
+    public String backend;
+
+    private FeedForwardNetwork network;
+    private BackPropagationTrainer trainer;
+    private DoubleMatrix target;
+
+    @Setup
+    public void setup() {
+        org.jblas.util.Random.seed(37);
+        network = new FeedForwardNetwork(inputSize, hiddenSize, 1);
+        trainer = new BackPropagationTrainer(network, MatrixBackends.byName(backend));
+        network.activations[0] = DoubleMatrix.rand(1, inputSize).subi(0.5);
+        target = DoubleMatrix.ones(1, 1);
+        // the deltas and weight updates need activations and deltas to start from
+        trainer.feedForward();
+        trainer.calculateDeltas(target);
+    }
+
+    @Benchmark
+    public DoubleMatrix feedForward() {
+        trainer.feedForward();
+        return network.activations[network.nLayers - 1];
+    }
+
+    @Benchmark
+    public DoubleMatrix[] calculateDeltas() {
+        return trainer.calculateDeltas(target);
+    }
+
+    @Benchmark
+    public DoubleMatrix[] calculateWeightUpdate() {
+        return trainer.calculateWeightUpdate();
+    }
+}
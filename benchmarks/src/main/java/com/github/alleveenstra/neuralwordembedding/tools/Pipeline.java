@@ -0,0 +1,291 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.google.common.base.Splitter;
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Runs Step1 to Step4 in this JVM on the corpus in ./data/raw and writes one JSON object per stage with its wall time,
+// CPU time, throughput, GC time, peak heap and peak resident set size. Run it from the directory that holds ./data, the
+// steps use fixed paths. Every step runs with -full so the manifests of an earlier run do not skip any work. The peak
+// RSS is reset before every stage through /proc/self/clear_refs, where that is not possible it is the peak so far.
+public class Pipeline {
+    private static final Logger log = LoggerFactory.getLogger(Pipeline.class);
+
+    private static final String RAW = "./data/raw";
+    private static final String DATASET = "./data/dataset";
+    private static final String NUMBERED = "./data/numbered";
+    private static final String VOCABULARY = "./data/vocab.txt";
+    private static final String MODEL = "./data/pipeline.nwm";
+    private static final double MB = 1 << 20;
+
+    private boolean peakResettable = true;
+
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("stages", true, "Comma separated stages to run, default: 1,2,3,4");
+        options.addOption("rules", false, "Tokenize with the rule-based tokenizer instead of OpenNLP");
+        options.addOption("c", "concurrency", true, "The number of training processes of Step4");
+        options.addOption("o", "output", true, "File to append the results to, default: standard output");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Pipeline", options);
+            return;
+        }
+        final List<String> stages = new ArrayList<>();
+        for (String stage : Splitter.on(',').trimResults().omitEmptyStrings().split(cmd.getOptionValue("stages", "1,2,3,4"))) {
+            stages.add(stage);
+        }
+        final boolean rules = cmd.hasOption("rules");
+
+        // Step1 and Step3 write next to their input but do not create the directories
+        new File(DATASET).mkdirs();
+        new File(NUMBERED).mkdirs();
+        final Pipeline pipeline = new Pipeline();
+        final PrintStream output = cmd.hasOption("output") ? new PrintStream(new FileOutputStream(cmd.getOptionValue("output"), true), true, "UTF-8") : System.out;
+        try {
+            long tokens = -1;
+            for (final String stage : stages) {
+                // the tokens are what every stage after Step1 works through, counted once outside the measurements
+                if (tokens < 0 && !stage.equals("1")) {
+                    tokens = countTokens();
+                }
+                final String input;
+                final Stage run;
+                switch (stage) {
+                    case "1":
+                        input = RAW;
+                        run = new Stage() {
+                            @Override
+                            public void run() throws IOException {
+                                Step1ConvertRaw.main(rules ? new String[]{"-full", "-rules"} : new String[]{"-full"});
+                            }
+                        };
+                        break;
+                    case "2":
+                        input = DATASET;
+                        run = new Stage() {
+                            @Override
+                            public void run() throws IOException {
+                                Step2CreateVocabulary.main(rules ? new String[]{"-full", "-rules"} : new String[]{"-full"});
+                            }
+                        };
+                        break;
+                    case "3":
+                        input = DATASET;
+                        run = new Stage() {
+                            @Override
+                            public void run() throws IOException {
+                                Step3Enumerate.main(new String[]{"-full"});
+                            }
+                        };
+                        break;
+                    case "4":
+                        input = DATASET;
+                        run = new Stage() {
+                            @Override
+                            public void run() {
+                                final List<String> arguments = new ArrayList<>();
+                                arguments.add("learn");
+                                arguments.add("-dataset");
+                                arguments.add(DATASET);
+                                arguments.add("-vocabulary");
+                                arguments.add(VOCABULARY);
+                                arguments.add("-save");
+                                arguments.add(MODEL);
+                                if (cmd.hasOption("concurrency")) {
+                                    arguments.add("-concurrency");
+                                    arguments.add(cmd.getOptionValue("concurrency"));
+                                }
+                                new File(MODEL).delete();
+                                Step4LearnWordEmbeddings.main(arguments.toArray(new String[arguments.size()]));
+                            }
+                        };
+                        break;
+                    default:
+                        log.error("Unknown stage {}", stage);
+                        return;
+                }
+                final long bytes = size(input, stage.equals("1") ? ".txt" : ".dataset");
+                log.info("Running stage {} on {} MB", stage, String.format("%.1f", bytes / MB));
+                final Measurement measurement = pipeline.measure(run);
+                if (tokens < 0) {
+                    tokens = countTokens();
+                }
+                output.println(Json.object(
+                        "stage", "step" + stage,
+                        "rules", rules,
+                        "inputMB", bytes / MB,
+                        "tokens", tokens,
+                        "seconds", measurement.seconds,
+                        "cpuSeconds", measurement.cpuSeconds,
+                        "mbPerSecond", bytes / MB / measurement.seconds,
+                        "tokensPerSecond", tokens / measurement.seconds,
+                        "gcSeconds", measurement.gcSeconds,
+                        "gcCount", measurement.gcCount,
+                        "peakHeapMB", measurement.peakHeap / MB,
+                        "peakRssMB", measurement.peakRss / MB,
+                        "peakRssReset", pipeline.peakResettable,
+                        "cores", Runtime.getRuntime().availableProcessors(),
+                        "maxHeapMB", Runtime.getRuntime().maxMemory() / MB,
+                        "java", System.getProperty("java.version")));
+            }
+        } finally {
+            if (output != System.out) {
+                output.close();
+            }
+        }
+    }
+
+    private interface Stage {
+        void run() throws IOException;
+    }
+
+    private static class Measurement {
+        double seconds, cpuSeconds, gcSeconds;
+        long gcCount, peakHeap, peakRss;
+    }
+
+    private Measurement measure(Stage stage) throws IOException {
+        // the garbage of the previous stage is not billed to this one
+        System.gc();
+        final List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heap.add(pool);
+            }
+        }
+        resetPeakRss();
+        final long gcTime = gcTime(), gcCount = gcCount(), cpuTime = cpuTime();
+        final long start = System.nanoTime();
+
+        stage.run();
+
+        final Measurement measurement = new Measurement();
+        measurement.seconds = (System.nanoTime() - start) / 1e9;
+        measurement.cpuSeconds = (cpuTime() - cpuTime) / 1e9;
+        measurement.gcSeconds = (gcTime() - gcTime) / 1e3;
+        measurement.gcCount = gcCount() - gcCount;
+        // the pools peak at different times, so this is an upper bound
+        for (MemoryPoolMXBean pool : heap) {
+            measurement.peakHeap += pool.getPeakUsage().getUsed();
+        }
+        measurement.peakRss = peakRss();
+        return measurement;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    // -1 when the JVM does not report the CPU time of the process
+    private static long cpuTime() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    // writing 5 resets the peak resident set size of the process, since Linux 4.0
+    private void resetPeakRss() {
+        if (!peakResettable) {
+            return;
+        }
+        Writer writer = null;
+        try {
+            writer = new FileWriter("/proc/self/clear_refs");
+            writer.write("5");
+        } catch (IOException e) {
+            log.warn("Unable to reset the peak resident set size, the peaks include the earlier stages");
+            peakResettable = false;
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    // VmHWM in bytes, or -1 when there is no /proc
+    private static long peakRss() throws IOException {
+        final File status = new File("/proc/self/status");
+        if (!status.exists()) {
+            return -1;
+        }
+        for (String line : (List<String>) FileUtils.readLines(status)) {
+            if (line.startsWith("VmHWM:")) {
+                final List<String> fields = new ArrayList<>();
+                for (String field : Splitter.on(' ').omitEmptyStrings().split(line)) {
+                    fields.add(field);
+                }
+                return Long.parseLong(fields.get(1)) * 1024;
+            }
+        }
+        return -1;
+    }
+
+    private static long size(String directory, String suffix) {
+        long size = 0;
+        for (File file : files(directory, suffix)) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    // the tokens in the '.dataset' files, sentence markers included, 0 when there are none yet
+    private static long countTokens() throws IOException {
+        long tokens = 0;
+        for (File file : files(DATASET, ".dataset")) {
+            final LineIterator lines = FileUtils.lineIterator(file, "UTF-8");
+            try {
+                while (lines.hasNext()) {
+                    final String line = lines.nextLine();
+                    for (int i = 0; i < line.length(); i++) {
+                        if (line.charAt(i) != ' ' && (i == 0 || line.charAt(i - 1) == ' ')) {
+                            tokens++;
+                        }
+                    }
+                }
+            } finally {
+                LineIterator.closeQuietly(lines);
+            }
+        }
+        return tokens;
+    }
+
+    private static Collection<File> files(String directory, String suffix) {
+        if (!new File(directory).isDirectory()) {
+            return new ArrayList<>();
+        }
+        return (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(suffix), TrueFileFilter.TRUE);
+    }
+}
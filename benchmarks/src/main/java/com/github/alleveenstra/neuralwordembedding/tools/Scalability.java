@@ -0,0 +1,199 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.BackPropagationTrainer;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.ZealousWordEmbeddingTrainingStrategy;
+import com.google.common.base.Splitter;
+import org.apache.commons.cli.*;
+import org.jblas.DoubleMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+// Trains on a synthetic Zipf corpus for a fixed time with every thread count of a sweep, and writes one JSON object per
+// line with the throughput, the speed-up and efficiency against one thread, the counters of the strategy and the
+// validation loss reached. Every run starts from the same initial model.
+public class Scalability {
+    private static final Logger log = LoggerFactory.getLogger(Scalability.class);
+
+    private static final int EMBEDDING_SIZE = 50;
+    private static final int WINDOW_SIZE = 10;
+    private static final int HIDDEN_SIZE = 100;
+    private static final String STRATEGY = "zealous";
+
+    private final ZipfCorpus corpus;
+    private final List<Vector<String>> windows;
+    private final List<Vector<String>> validation;
+    private final long seed;
+    private final int batch;
+    private final double eta;
+    private final double etaEmbedding;
+
+    private Scalability(ZipfCorpus corpus, int windows, int validation, long seed, int batch, double eta, double etaEmbedding) {
+        this.corpus = corpus;
+        this.windows = generate(corpus, windows);
+        this.validation = generate(corpus, validation);
+        this.seed = seed;
+        this.batch = batch;
+        this.eta = eta;
+        this.etaEmbedding = etaEmbedding;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("windows", true, "Number of training windows in the corpus, default: 100000");
+        options.addOption("vocabulary", true, "Number of distinct words, default: 10000");
+        options.addOption("exponent", true, "Exponent of the Zipf distribution, default: 1.0");
+        options.addOption("threads", true, "Comma separated thread counts, default: 1, the powers of two below the number of cores and the number of cores");
+        options.addOption("seconds", true, "Training time per thread count, default: 20");
+        options.addOption("warmup", true, "Training time before the sweep, default: 5");
+        options.addOption("batch", true, "Windows per call to the strategy, like one dataset file, default: 5000");
+        options.addOption("validation", true, "Number of validation windows, default: 2000");
+        options.addOption("seed", true, "Seed of the corpus, the initial model and the corrupted words, default: 37");
+        options.addOption("l", "learning-rate", true, "Learning rate for the neural network, default: 0.000001");
+        options.addOption("m", "embedding-rate", true, "Learning rate for the word embeddings, default: 0.000320");
+        options.addOption("o", "output", true, "File to append the results to, default: standard output");
+        options.addOption("help", false, "Shows this help");
+        final CommandLineParser parser = new GnuParser();
+        final CommandLine cmd;
+        try {
+            cmd = parser.parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Scalability", options);
+            return;
+        }
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final List<Integer> threads = new ArrayList<>();
+        if (cmd.hasOption("threads")) {
+            for (String count : Splitter.on(',').trimResults().omitEmptyStrings().split(cmd.getOptionValue("threads"))) {
+                threads.add(Integer.parseInt(count));
+            }
+        } else {
+            for (int count = 1; count < cores; count *= 2) {
+                threads.add(count);
+            }
+            threads.add(cores);
+        }
+        final int vocabulary = Integer.parseInt(cmd.getOptionValue("vocabulary", "10000"));
+        final double exponent = Double.parseDouble(cmd.getOptionValue("exponent", "1.0"));
+        final int windows = Integer.parseInt(cmd.getOptionValue("windows", "100000"));
+        final long seed = Long.parseLong(cmd.getOptionValue("seed", "37"));
+        final double seconds = Double.parseDouble(cmd.getOptionValue("seconds", "20"));
+        final double warmup = Double.parseDouble(cmd.getOptionValue("warmup", "5"));
+
+        final Scalability scalability = new Scalability(new ZipfCorpus(vocabulary, exponent, seed), windows,
+                Integer.parseInt(cmd.getOptionValue("validation", "2000")), seed,
+                Integer.parseInt(cmd.getOptionValue("batch", "5000")),
+                Double.parseDouble(cmd.getOptionValue("learning-rate", "0.000001")),
+                Double.parseDouble(cmd.getOptionValue("embedding-rate", "0.000320")));
+
+        final PrintStream output = cmd.hasOption("output") ? new PrintStream(new FileOutputStream(cmd.getOptionValue("output"), true), true, "UTF-8") : System.out;
+        try {
+            log.info("Warming up for {} seconds", warmup);
+            scalability.run(Collections.max(threads), warmup);
+            double baseline = 0.0;
+            for (int count : threads) {
+                log.info("Training with {} threads for {} seconds", count, seconds);
+                final Result result = scalability.run(count, seconds);
+                if (baseline == 0.0) {
+                    // the first thread count of the sweep is the baseline, which is one thread unless asked otherwise
+                    baseline = result.windowsPerSecond() / threads.get(0);
+                }
+                output.println(Json.object(
+                        "strategy", STRATEGY,
+                        "threads", count,
+                        "cores", cores,
+                        "vocabulary", vocabulary,
+                        "exponent", exponent,
+                        "corpusWindows", windows,
+                        "batch", scalability.batch,
+                        "seed", seed,
+                        "seconds", result.seconds,
+                        "windows", result.windows,
+                        "windowsPerSecond", result.windowsPerSecond(),
+                        "speedup", result.windowsPerSecond() / baseline,
+                        "efficiency", result.windowsPerSecond() / baseline / count,
+                        "updates", result.updates,
+                        "windowsPerUpdate", result.updates == 0 ? 0.0 : (double) result.windows / result.updates,
+                        "tokenWaitSeconds", result.tokenWaitNanos / 1e9,
+                        "tokenWaitFraction", result.tokenWaitNanos / 1e9 / (result.seconds * count),
+                        "updateFraction", result.updateNanos / 1e9 / (result.seconds * count),
+                        "idleFraction", result.idleNanos / 1e9 / (result.seconds * count),
+                        "initialLoss", result.initialLoss,
+                        "loss", result.loss,
+                        "java", System.getProperty("java.version")));
+            }
+        } finally {
+            if (output != System.out) {
+                output.close();
+            }
+        }
+    }
+
+    private static class Result {
+        long windows, updates, tokenWaitNanos, updateNanos, idleNanos;
+        double seconds, initialLoss, loss;
+
+        double windowsPerSecond() {
+            return windows / seconds;
+        }
+    }
+
+    // trains a fresh model until the time is up, the last batch is finished so the time can run over a little
+    private Result run(int threads, double seconds) {
+        org.jblas.util.Random.seed(seed);
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>(corpus.size() * 2);
+        for (int rank = 0; rank < corpus.size(); rank++) {
+            embeddings.put(corpus.word(rank), DoubleMatrix.rand(1, EMBEDDING_SIZE).min(0.5));
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(EMBEDDING_SIZE * WINDOW_SIZE, HIDDEN_SIZE, 1);
+        final ZealousWordEmbeddingTrainingStrategy strategy = new ZealousWordEmbeddingTrainingStrategy(network, new BackPropagationTrainer(network), embeddings, threads);
+        strategy.setEta(eta);
+        strategy.setEtaEmbedding(etaEmbedding);
+        strategy.setSeed(seed);
+        final Result result = new Result();
+        try {
+            result.initialLoss = strategy.validate(validation);
+            final long start = System.nanoTime();
+            final long deadline = start + (long) (seconds * 1e9);
+            int offset = 0;
+            while (System.nanoTime() < deadline) {
+                strategy.train(windows.subList(offset, Math.min(offset + batch, windows.size())));
+                offset = offset + batch >= windows.size() ? 0 : offset + batch;
+            }
+            result.seconds = (System.nanoTime() - start) / 1e9;
+            result.loss = strategy.validate(validation);
+        } finally {
+            strategy.shutdown();
+        }
+        final ZealousWordEmbeddingTrainingStrategy.Counters counters = strategy.getCounters();
+        result.windows = counters.getWindows();
+        result.updates = counters.getUpdates();
+        result.tokenWaitNanos = counters.getTokenWaitNanos();
+        result.updateNanos = counters.getUpdateNanos();
+        result.idleNanos = counters.getIdleNanos();
+        return result;
+    }
+
+    // windows slide over one long stream of words, like they do over a sentence
+    private static List<Vector<String>> generate(ZipfCorpus corpus, int count) {
+        final List<Vector<String>> windows = new ArrayList<>(count);
+        final LinkedList<String> stream = new LinkedList<>();
+        while (windows.size() < count) {
+            stream.add(corpus.next());
+            if (stream.size() > WINDOW_SIZE) {
+                stream.removeFirst();
+            }
+            if (stream.size() == WINDOW_SIZE) {
+                windows.add(new Vector<>(stream));
+            }
+        }
+        return windows;
+    }
+}
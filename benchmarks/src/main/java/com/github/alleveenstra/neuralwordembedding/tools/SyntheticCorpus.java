@@ -0,0 +1,166 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Random;
+
+// Writes raw '.txt' files of Dutch looking text with a Zipf distributed vocabulary, as large as needed to find out how
+// the preprocessing steps scale. Sentences have a log-normal number of words with a median of 14, lines hold one to
+// three sentences and paragraphs a few lines, separated by three empty lines like Step1 expects. Some sentences are
+// quoted, half of them with curly quotes, so sanitization does not only see ASCII.
+public class SyntheticCorpus {
+    private static final Logger log = LoggerFactory.getLogger(SyntheticCorpus.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long MB = 1 << 20;
+    private static final double SENTENCE_MU = Math.log(14);
+    private static final double SENTENCE_SIGMA = 0.5;
+    private static final int MAX_SENTENCE = 120;
+    private static final double COMMA = 0.06;
+    private static final double QUOTED = 0.05;
+    private static final double LINES_PER_PARAGRAPH = 4.0;
+
+    private final ZipfCorpus corpus;
+    private final Random random;
+    private final StringBuilder builder = new StringBuilder(1024);
+
+    SyntheticCorpus(ZipfCorpus corpus, long seed) {
+        this.corpus = corpus;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("o", "output", true, "The directory to write the '.txt' files to, default: ./data/raw");
+        options.addOption("size", true, "Total size in MB, default: 1024");
+        options.addOption(null, "file-size", true, "Size of one file in MB, default: 64");
+        options.addOption("vocabulary", true, "Number of distinct words, default: 500000");
+        options.addOption("exponent", true, "Exponent of the Zipf distribution, default: 1.0");
+        options.addOption("seed", true, "Seed, the same seed and settings write the same corpus, default: 37");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("SyntheticCorpus", options);
+            return;
+        }
+        final File directory = new File(cmd.getOptionValue("output", "./data/raw"));
+        final long size = Long.parseLong(cmd.getOptionValue("size", "1024")) * MB;
+        final long fileSize = Long.parseLong(cmd.getOptionValue("file-size", "64")) * MB;
+        final long seed = Long.parseLong(cmd.getOptionValue("seed", "37"));
+        final ZipfCorpus corpus = new ZipfCorpus(Integer.parseInt(cmd.getOptionValue("vocabulary", "500000")),
+                Double.parseDouble(cmd.getOptionValue("exponent", "1.0")), seed);
+        final SyntheticCorpus generator = new SyntheticCorpus(corpus, seed + 1);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        final long start = System.currentTimeMillis();
+        long written = 0, words = 0;
+        for (int file = 0; written < size; file++) {
+            final File output = new File(directory, String.format("synthetic-%05d.txt", file));
+            final CountingWriter writer = new CountingWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+            try {
+                words += generator.write(writer, Math.min(fileSize, size - written));
+            } finally {
+                writer.close();
+            }
+            written += output.length();
+            log.debug("Wrote {}", output.getPath());
+        }
+        final long time = Math.max(1, System.currentTimeMillis() - start);
+        log.info("Wrote {} MB, {} words in {} ms", new Object[]{written / MB, words, time});
+    }
+
+    // paragraphs until at least this many characters are written, returns the number of words
+    long write(CountingWriter writer, long characters) throws IOException {
+        long words = 0;
+        while (writer.getCount() < characters) {
+            final int lines = 1 + geometric(LINES_PER_PARAGRAPH - 1);
+            for (int line = 0; line < lines; line++) {
+                builder.setLength(0);
+                final int sentences = 1 + random.nextInt(3);
+                for (int sentence = 0; sentence < sentences; sentence++) {
+                    if (sentence > 0) {
+                        builder.append(' ');
+                    }
+                    words += sentence();
+                }
+                builder.append('\n');
+                writer.append(builder);
+            }
+            writer.write("\n\n\n");
+        }
+        return words;
+    }
+
+    private int sentence() {
+        final int words = (int) Math.max(1, Math.min(MAX_SENTENCE, Math.round(Math.exp(SENTENCE_MU + SENTENCE_SIGMA * random.nextGaussian()))));
+        final boolean quoted = random.nextDouble() < QUOTED;
+        final boolean curly = random.nextBoolean();
+        if (quoted) {
+            builder.append(curly ? '“' : '"');
+        }
+        for (int word = 0; word < words; word++) {
+            final String next = corpus.next();
+            if (word == 0) {
+                builder.append(Character.toUpperCase(next.charAt(0))).append(next, 1, next.length());
+            } else {
+                builder.append(' ').append(next);
+            }
+            if (word < words - 1 && random.nextDouble() < COMMA) {
+                builder.append(',');
+            }
+        }
+        final double end = random.nextDouble();
+        builder.append(end < 0.9 ? '.' : end < 0.96 ? '?' : '!');
+        if (quoted) {
+            builder.append(curly ? '”' : '"');
+        }
+        return words;
+    }
+
+    // the number of failures before the first success, with this mean
+    private int geometric(double mean) {
+        return (int) (Math.log(1 - random.nextDouble()) / Math.log(mean / (mean + 1)));
+    }
+
+    // counts the characters written, which is close enough to the bytes for mostly ASCII text
+    static class CountingWriter extends FilterWriter {
+        private long count;
+
+        CountingWriter(Writer writer) {
+            super(new BufferedWriter(writer, BUFFER_SIZE));
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            super.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            super.write(buffer, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String string, int offset, int length) throws IOException {
+            super.write(string, offset, length);
+            count += length;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
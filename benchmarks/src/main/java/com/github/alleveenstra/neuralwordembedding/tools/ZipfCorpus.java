@@ -0,0 +1,84 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+// Words with Zipf distributed frequencies, the word of rank r is drawn with a probability proportional to
+// 1 / (r + 1)^exponent. The most frequent ranks are the most frequent Dutch function words, the others are spelled from
+// Dutch onsets, vowels and codas so the tokenizer keeps them whole. Vowels only appear in the vowel part of a syllable,
+// which makes every spelling unique.
+public class ZipfCorpus {
+    static final String[] FUNCTION_WORDS = {
+            "de", "en", "van", "het", "een", "in", "is", "dat", "op", "te", "zijn", "voor", "met", "die", "niet", "aan",
+            "er", "om", "ook", "als", "dan", "maar", "bij", "of", "uit", "nog", "wordt", "door", "naar", "ze", "hij",
+            "over", "tot", "je", "zo", "wel", "kan", "we", "al", "was", "deze", "ik", "meer", "zich", "geen", "moet",
+            "hebben", "heeft", "hun", "onder", "veel", "had", "waren", "wat", "werd", "na", "nu", "tegen", "zal", "haar",
+            "omdat", "wij", "mij", "twee", "zou", "hem", "dus", "daar", "jaar", "ons", "alle", "waar", "wie", "hier",
+            "doen", "gaan", "toen", "zij", "hoe", "mensen", "nieuwe", "eerste", "andere", "tijd", "land", "God"};
+    private static final String[] ONSETS = {
+            "b", "d", "f", "g", "h", "j", "k", "l", "m", "n", "p", "r", "s", "t", "v", "w", "z",
+            "st", "sch", "gr", "kl", "br", "tr", "sl", "sp", "vr"};
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u", "aa", "ee", "oo", "ie", "oe", "eu", "ou", "ui", "ei"};
+    private static final String[] CODAS = {"", "n", "r", "l", "t", "k", "s", "m", "ng", "rd", "cht", "ns"};
+    private static final int SYLLABLES = ONSETS.length * VOWELS.length;
+
+    private final double[] cumulative;
+    private final String[] words;
+    private final Random random;
+
+    public ZipfCorpus(int vocabularySize, double exponent, long seed) {
+        cumulative = new double[vocabularySize];
+        words = new String[vocabularySize];
+        final Set<String> functionWords = ImmutableSet.copyOf(FUNCTION_WORDS);
+        double total = 0;
+        int spelled = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+            if (rank < FUNCTION_WORDS.length) {
+                words[rank] = FUNCTION_WORDS[rank];
+            } else {
+                do {
+                    words[rank] = spell(spelled++);
+                } while (functionWords.contains(words[rank]));
+            }
+        }
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            cumulative[rank] /= total;
+        }
+        random = new Random(seed);
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public String word(int rank) {
+        return words[rank];
+    }
+
+    public int nextRank() {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(words.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    public String next() {
+        return words[nextRank()];
+    }
+
+    // the coda comes from the lowest digit, the syllables from the others
+    static String spell(int number) {
+        final StringBuilder builder = new StringBuilder();
+        final String coda = CODAS[number % CODAS.length];
+        number /= CODAS.length;
+        do {
+            final int syllable = number % SYLLABLES;
+            builder.append(ONSETS[syllable / VOWELS.length]).append(VOWELS[syllable % VOWELS.length]);
+            number /= SYLLABLES;
+        } while (number > 0);
+        return builder.append(coda).toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Nearest neighbours over the embeddings on the heap and mapped from a model container
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModelBenchmark {
+    private static final int EMBEDDING_SIZE = 50;
+    private static final int QUERIES = 64;
+
+    @Param({"100000", "1000000"})
+    public int vocabularySize;
+
+    @Param({"heap", "mapped"})
+    public String storage;
+
+    private Model model;
+    private File container;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        org.jblas.util.Random.seed(37);
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (int word = 0; word < vocabularySize; word++) {
+            embeddings.put("w" + word, DoubleMatrix.rand(1, EMBEDDING_SIZE).min(0.5));
+        }
+        if (storage.equals("mapped")) {
+            container = File.createTempFile("benchmark", ModelContainer.EXTENSION);
+            ModelContainer.write(embeddings, null, container);
+            model = Model.open(container, false);
+        } else {
+            model = new Model(embeddings, null);
+        }
+        final Random random = new Random(37);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = "w" + random.nextInt(vocabularySize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (container != null) {
+            container.delete();
+        }
+    }
+
+    @Benchmark
+    public List<String> findCloseWords() {
+        next = (next + 1) % QUERIES;
+        return model.findCloseWords(queries[next], 10);
+    }
+}
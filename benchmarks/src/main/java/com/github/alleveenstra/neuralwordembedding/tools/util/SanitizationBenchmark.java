@@ -0,0 +1,44 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Lines like the ones in data/raw, plain ASCII takes the fast path, the others need translating or normalizing
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizationBenchmark {
+    private static final String[] ASCII = {
+            "In het begin heeft God de hemelen en de aarde gemaakt.",
+            "Toen zei God: \"Laat er licht zijn.\" En toen was er licht.",
+            "Het licht noemde Hij 'dag' en het donker 'nacht'. Het werd avond en het werd weer morgen: de eerste dag.",
+            "Het werd avond en weer morgen: de derde dag."
+    };
+    private static final String[] ACCENTED = {
+            "Toen zei God: “Laat de watermassa uit elkaar gaan, zodat de wolkenhemel en de zeeën worden gevormd.”",
+            "God noemde het droge land ‘aarde’ en het samengestroomde water ‘zeeën’.",
+            "Naïef geïnteresseerd — één café voór het riële coördinatiepunt.",
+            "«Zo gebeurde het», zei hij tegen de reünie."
+    };
+
+    @Param({"ascii", "accented"})
+    public String text;
+
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lines = text.equals("ascii") ? ASCII : ACCENTED;
+    }
+
+    @Benchmark
+    public String sanitizeLine() {
+        next = (next + 1) % lines.length;
+        return Sanitization.sanitizeLine(lines[next]);
+    }
+}
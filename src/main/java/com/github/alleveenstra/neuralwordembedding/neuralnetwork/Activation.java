@@ -0,0 +1,16 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+// An activation function applied in place over a range of a primitive array. The derivative is computed from the
+// outputs of the function, which is what the network keeps after the forward pass. Implementations are stateless and
+// thread-safe.
+public interface Activation {
+
+    double apply(double value);
+
+    void apply(double[] values, int offset, int length);
+
+    // replaces every output by the derivative at the input that produced it
+    void derive(double[] outputs, int offset, int length);
+
+    String getName();
+}
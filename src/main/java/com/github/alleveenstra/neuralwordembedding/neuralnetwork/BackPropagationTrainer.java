@@ -4,11 +4,21 @@ import org.jblas.DoubleMatrix;
 
 public class BackPropagationTrainer {
     public double eta = 0.25, eta_bias = 0.0, eta_L1 = 0.0, eta_L2 = 0.0, eta_momentum = 0.0, eta_decay = 0.0;
+    public MatrixBackend backend;
+    public Activation activationFunction;
+    // with an adaptive optimizer the weight update is the plain gradient, its step is taken when it is applied
+    public OptimizerState optimizerState;
     private FeedForwardNetwork network;
 
 
     public BackPropagationTrainer(FeedForwardNetwork network) {
+        this(network, MatrixBackends.getDefault());
+    }
+
+    public BackPropagationTrainer(FeedForwardNetwork network, MatrixBackend backend) {
         this.network = network;
+        this.backend = backend;
+        this.activationFunction = network.getActivation();
     }
 
     public DoubleMatrix evaluate(DoubleMatrix inputs) {
@@ -18,9 +28,7 @@ public class BackPropagationTrainer {
         }
 
         // copy the input into the input network activation
-        for (int input = 0; input < inputs.length; input++) {
-            network.activations[0].put(input, inputs.get(input));
-        }
+        System.arraycopy(inputs.data, 0, network.activations[0].data, 0, inputs.length);
 
         this.feedForward();
 
@@ -30,7 +38,7 @@ public class BackPropagationTrainer {
     public void feedForward() {
         for (int layer = 1; layer < network.nLayers; layer++) {
             // network.activations[layer] = this.activation(network.activations[layer - 1] * network.weights[layer] + network.biases[layer]);
-            final DoubleMatrix incomingActivation = network.activations[layer - 1].mmul(network.weights[layer]);
+            final DoubleMatrix incomingActivation = backend.mmul(network.activations[layer - 1], network.weights[layer], null);
             if (eta_bias > 0.0) {
                 incomingActivation.addi(network.biases[layer]);
             }
@@ -58,7 +66,7 @@ public class BackPropagationTrainer {
                 // network.deltas[layer] = numpy.multiply(self.derivative(network.activations[layer]),
                 //                                       (network.deltas[layer + 1] * network.weights[layer + 1].T))
                 //logger.info(layer + " " + getDims(network.deltas[layer + 1]) + " " + getDims(network.weights[layer + 1].transpose()));
-                DoubleMatrix error = network.deltas[layer + 1].mmul(network.weights[layer + 1].transpose());
+                DoubleMatrix error = backend.mmulTransposed(network.deltas[layer + 1], network.weights[layer + 1], null);
                 DoubleMatrix deriv = network.activations[layer].dup();
                 derivation(deriv);
                 error.muli(deriv, network.deltas[layer]);
@@ -70,6 +78,7 @@ public class BackPropagationTrainer {
     }
 
     public DoubleMatrix[] calculateWeightUpdate() {
+        final boolean adaptive = optimizerState != null && optimizerState.isAdaptive();
         DoubleMatrix[] weightUpdate = new DoubleMatrix[network.nLayers];
         for (int layer = 1; layer < network.nLayers; ++layer) {
             // copy delta only if regularization is enabled
@@ -88,11 +97,10 @@ public class BackPropagationTrainer {
             }
 
             // update = (network.activations[layer - 1].T * (network.deltas[layer] + L1 + L2))
-            final DoubleMatrix activationT = network.activations[layer - 1].transpose();
-            weightUpdate[layer] = activationT.mmul(delta);
+            weightUpdate[layer] = backend.transposedMmul(network.activations[layer - 1], delta, null);
 
             // update += network.previousUpdate[layer] * this.eta_momentum
-            if (eta_momentum > 0.0) {
+            if (eta_momentum > 0.0 && !adaptive) {
                 network.previousUpdate[layer].muli(this.eta_momentum);
                 weightUpdate[layer].addi(network.previousUpdate[layer]);
             }
@@ -103,6 +111,10 @@ public class BackPropagationTrainer {
                 weightUpdate[layer].subi(decay);
             }
 
+            if (adaptive) {
+                continue;
+            }
+
             // * eta
             weightUpdate[layer].muli(eta);
 
@@ -115,6 +127,9 @@ public class BackPropagationTrainer {
     public void applyWeightUpdate(DoubleMatrix[] biasUpdate, DoubleMatrix[] weightUpdate) {
         if (weightUpdate != null) {
             assert weightUpdate.length == network.nLayers;
+            if (optimizerState != null && optimizerState.isAdaptive()) {
+                optimizerState.stepNetwork(eta, weightUpdate);
+            }
             for (int layer = 1; layer < network.nLayers; ++layer) {
                 network.weights[layer].addi(weightUpdate[layer]);
             }
@@ -128,29 +143,18 @@ public class BackPropagationTrainer {
     }
 
     private DoubleMatrix signi(DoubleMatrix matrix) {
+        final double[] data = matrix.data;
         for (int index = 0; index < matrix.length; ++index) {
-            matrix.put(index, Math.signum(matrix.get(index)));
+            data[index] = Math.signum(data[index]);
         }
         return matrix;
     }
 
     public void activation(DoubleMatrix matrix) {
-        for (int index = 0; index < matrix.length; index++) {
-            matrix.put(index, activationFunction(matrix.get(index)));
-        }
-    }
-
-    private double activationFunction(double value) {
-        return Math.tanh(value);
+        activationFunction.apply(matrix.data, 0, matrix.length);
     }
 
     public void derivation(DoubleMatrix matrix) {
-        for (int index = 0; index < matrix.length; index++) {
-            matrix.put(index, derivedActivationFunction(matrix.get(index)));
-        }
-    }
-
-    public double derivedActivationFunction(double value) {
-        return 1.0 - value * value;
+        activationFunction.derive(matrix.data, 0, matrix.length);
     }
 }
@@ -2,6 +2,9 @@ package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
 
 import org.jblas.DoubleMatrix;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 public class FeedForwardNetwork implements Serializable {
@@ -22,6 +25,8 @@ public class FeedForwardNetwork implements Serializable {
     protected DoubleMatrix[] deltas;
 
     private double beta;
+    // the name of the activation of the hidden units, models without one were trained with tanh
+    private String activation;
 
     public FeedForwardNetwork(int inputSize, int... shape) {
         this(false, inputSize, shape);
@@ -38,6 +43,7 @@ public class FeedForwardNetwork implements Serializable {
         this.hiddenShape = shape;
 
         this.nLayers = 1 + this.hiddenSize;
+        this.activation = Activations.getDefault().getName();
 
         this.size = new int[nLayers];
         this.activations = new DoubleMatrix[nLayers];
@@ -72,6 +78,67 @@ public class FeedForwardNetwork implements Serializable {
         }
     }
 
+    public Activation getActivation() {
+        return activation == null ? Activations.TANH : Activations.byName(activation);
+    }
+
+    public void setActivation(Activation activation) {
+        this.activation = activation.getName();
+    }
+
+    // only the shape, weights and biases, the activation and delta buffers are rebuilt by the constructor
+    public void writeParameters(DataOutput output) throws IOException {
+        output.writeBoolean(extraInput);
+        output.writeInt(extraInput ? inputSize - 1 : inputSize);
+        output.writeInt(hiddenShape.length);
+        for (int layerSize : hiddenShape) {
+            output.writeInt(layerSize);
+        }
+        for (int layer = 1; layer < nLayers; layer++) {
+            writeMatrix(output, weights[layer]);
+            writeMatrix(output, biases[layer]);
+        }
+    }
+
+    public static FeedForwardNetwork readParameters(DataInput input) throws IOException {
+        final boolean extraInput = input.readBoolean();
+        final int inputSize = input.readInt();
+        final int[] shape = new int[input.readInt()];
+        for (int layer = 0; layer < shape.length; layer++) {
+            shape[layer] = input.readInt();
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(extraInput, inputSize, shape);
+        for (int layer = 1; layer < network.nLayers; layer++) {
+            readMatrix(input, network.weights[layer]);
+            readMatrix(input, network.biases[layer]);
+        }
+        return network;
+    }
+
+    public void writeOptimizerState(DataOutput output) throws IOException {
+        for (int layer = 1; layer < nLayers; layer++) {
+            writeMatrix(output, previousUpdate[layer]);
+        }
+    }
+
+    public void readOptimizerState(DataInput input) throws IOException {
+        for (int layer = 1; layer < nLayers; layer++) {
+            readMatrix(input, previousUpdate[layer]);
+        }
+    }
+
+    private static void writeMatrix(DataOutput output, DoubleMatrix matrix) throws IOException {
+        for (int index = 0; index < matrix.length; index++) {
+            output.writeDouble(matrix.data[index]);
+        }
+    }
+
+    private static void readMatrix(DataInput input, DoubleMatrix matrix) throws IOException {
+        for (int index = 0; index < matrix.length; index++) {
+            matrix.data[index] = input.readDouble();
+        }
+    }
+
     private DoubleMatrix rand(DoubleMatrix matrix, int layer) {
         for (int index = 0; index < matrix.length; ++index) {
             matrix.put(index, (Math.random() - 0.5) * 2);
@@ -0,0 +1,43 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+import org.jblas.NativeBlas;
+
+// Native BLAS through jblas, the transposes are handed to dgemm instead of being copied
+public class JBlasBackend implements MatrixBackend {
+
+    @Override
+    public DoubleMatrix mmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.columns != b.rows) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.rows, b.columns);
+        NativeBlas.dgemm('N', 'N', a.rows, b.columns, a.columns, 1.0, a.data, 0, a.rows, b.data, 0, b.rows, 0.0, result.data, 0, result.rows);
+        return result;
+    }
+
+    @Override
+    public DoubleMatrix mmulTransposed(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.columns != b.columns) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.rows, b.rows);
+        NativeBlas.dgemm('N', 'T', a.rows, b.rows, a.columns, 1.0, a.data, 0, a.rows, b.data, 0, b.rows, 0.0, result.data, 0, result.rows);
+        return result;
+    }
+
+    @Override
+    public DoubleMatrix transposedMmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.rows != b.rows) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.columns, b.columns);
+        NativeBlas.dgemm('T', 'N', a.columns, b.columns, a.rows, 1.0, a.data, 0, a.rows, b.data, 0, b.rows, 0.0, result.data, 0, result.rows);
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "jblas";
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+import java.util.Arrays;
+
+// Plain Java loops over the column-major arrays of the matrices. Every inner loop either walks one array with a fixed
+// stride of one, which the JIT unrolls and vectorizes, or is a dot product split over four sums to break the dependency
+// on a single accumulator. Meant for the single rows and narrow layers of the training, where it saves the JNI call.
+public class JavaBackend implements MatrixBackend {
+
+    @Override
+    public DoubleMatrix mmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.columns != b.rows) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.rows, b.columns);
+        final int rows = a.rows, inner = a.columns, columns = b.columns;
+        final double[] left = a.data, right = b.data, out = result.data;
+        if (rows == 1) {
+            // a column of b after the other, both contiguous
+            for (int column = 0; column < columns; column++) {
+                out[column] = dot(left, 0, right, column * inner, inner);
+            }
+            return result;
+        }
+        Arrays.fill(out, 0, rows * columns, 0.0);
+        for (int column = 0; column < columns; column++) {
+            final int outOffset = column * rows;
+            for (int k = 0; k < inner; k++) {
+                axpy(right[k + column * inner], left, k * rows, out, outOffset, rows);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleMatrix mmulTransposed(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.columns != b.columns) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.rows, b.rows);
+        final int rows = a.rows, inner = a.columns, columns = b.rows;
+        final double[] left = a.data, right = b.data, out = result.data;
+        Arrays.fill(out, 0, rows * columns, 0.0);
+        if (rows == 1) {
+            // column k of b scaled by element k of a, summed
+            for (int k = 0; k < inner; k++) {
+                axpy(left[k], right, k * columns, out, 0, columns);
+            }
+            return result;
+        }
+        for (int k = 0; k < inner; k++) {
+            for (int column = 0; column < columns; column++) {
+                axpy(right[column + k * columns], left, k * rows, out, column * rows, rows);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleMatrix transposedMmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result) {
+        if (a.rows != b.rows) {
+            throw new IllegalArgumentException("Matrices of incompatible sizes");
+        }
+        result = MatrixBackends.result(result, a.columns, b.columns);
+        final int inner = a.rows, rows = a.columns, columns = b.columns;
+        final double[] left = a.data, right = b.data, out = result.data;
+        if (inner == 1) {
+            // the outer product, a scaled copy of a per column
+            for (int column = 0; column < columns; column++) {
+                final double scale = right[column];
+                final int offset = column * rows;
+                for (int row = 0; row < rows; row++) {
+                    out[offset + row] = left[row] * scale;
+                }
+            }
+            return result;
+        }
+        // columns of a against columns of b, both contiguous
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                out[row + column * rows] = dot(left, row * inner, right, column * inner, inner);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "java";
+    }
+
+    private static double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double sum0 = 0.0, sum1 = 0.0, sum2 = 0.0, sum3 = 0.0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += x[xOffset + i] * y[yOffset + i];
+            sum1 += x[xOffset + i + 1] * y[yOffset + i + 1];
+            sum2 += x[xOffset + i + 2] * y[yOffset + i + 2];
+            sum3 += x[xOffset + i + 3] * y[yOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += x[xOffset + i] * y[yOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    // y += alpha * x
+    private static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+// The matrix products of the network. The training multiplies a single row at a time, where the call overhead of native
+// BLAS outweighs the arithmetic, while scoring multiplies batches of rows. Each product writes into result, which is
+// allocated when null, and never aliases its operands. Implementations are stateless and thread-safe.
+public interface MatrixBackend {
+
+    // a * b
+    DoubleMatrix mmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result);
+
+    // a * b^T, without transposing b
+    DoubleMatrix mmulTransposed(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result);
+
+    // a^T * b, without transposing a, the outer product when both are row vectors
+    DoubleMatrix transposedMmul(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result);
+
+    String getName();
+}
@@ -0,0 +1,46 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+// The backend a trainer or scorer uses unless it is given one, picked with the system property
+// neuralwordembedding.backend or setDefault before the network is built
+public class MatrixBackends {
+    public static final String PROPERTY = "neuralwordembedding.backend";
+
+    public static final MatrixBackend JBLAS = new JBlasBackend();
+    public static final MatrixBackend JAVA = new JavaBackend();
+
+    private static volatile MatrixBackend defaultBackend = byName(System.getProperty(PROPERTY, "jblas"));
+
+    private MatrixBackends() {
+    }
+
+    public static MatrixBackend byName(String name) {
+        switch (name) {
+            case "jblas":
+                return JBLAS;
+            case "java":
+                return JAVA;
+            default:
+                throw new IllegalArgumentException("Unknown matrix backend \"" + name + "\", use jblas or java");
+        }
+    }
+
+    public static MatrixBackend getDefault() {
+        return defaultBackend;
+    }
+
+    public static void setDefault(MatrixBackend backend) {
+        defaultBackend = backend;
+    }
+
+    static DoubleMatrix result(DoubleMatrix result, int rows, int columns) {
+        if (result == null) {
+            return new DoubleMatrix(rows, columns);
+        }
+        if (result.rows != rows || result.columns != columns) {
+            throw new IllegalArgumentException("Result matrix of incorrect size");
+        }
+        return result;
+    }
+}
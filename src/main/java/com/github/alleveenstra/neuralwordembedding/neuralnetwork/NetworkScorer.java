@@ -0,0 +1,107 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NetworkScorer {
+    public static final int BATCH_SIZE = 256;
+
+    private final FeedForwardNetwork network;
+    private final MatrixBackend backend;
+    private final Activation activation;
+    private final int windowInputSize;
+
+    // every thread gets its own activations, keyed by the number of rows in the batch
+    private final ThreadLocal<Map<Integer, DoubleMatrix[]>> buffers = new ThreadLocal<Map<Integer, DoubleMatrix[]>>() {
+        @Override
+        protected Map<Integer, DoubleMatrix[]> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    public NetworkScorer(FeedForwardNetwork network) {
+        this(network, MatrixBackends.getDefault(), network.getActivation());
+    }
+
+    public NetworkScorer(FeedForwardNetwork network, MatrixBackend backend, Activation activation) {
+        if (network.outputSize != 1) {
+            throw new IllegalArgumentException("Scoring requires a network with a single output");
+        }
+        this.network = network;
+        this.backend = backend;
+        this.activation = activation;
+        this.windowInputSize = network.extraInput ? network.inputSize - 1 : network.inputSize;
+    }
+
+    public int getInputSize() {
+        return windowInputSize;
+    }
+
+    // scores one window per row, safe to call from multiple threads as long as the weights are not being trained
+    public double[] score(DoubleMatrix windows) {
+        if (windows.getColumns() != windowInputSize) {
+            throw new IllegalArgumentException("Input matrix of incorrect width");
+        }
+        final double[] scores = new double[windows.getRows()];
+        for (int start = 0; start < windows.getRows(); start += BATCH_SIZE) {
+            final int rows = Math.min(BATCH_SIZE, windows.getRows() - start);
+            final DoubleMatrix[] activations = activations(rows);
+            final DoubleMatrix input = activations[0];
+            for (int column = 0; column < windowInputSize; column++) {
+                System.arraycopy(windows.data, column * windows.rows + start, input.data, column * rows, rows);
+            }
+            final DoubleMatrix output = feedForward(activations);
+            System.arraycopy(output.data, 0, scores, start, rows);
+        }
+        return scores;
+    }
+
+    // fill the thread's input buffer with fillWindow and score it with scoreBuffer to skip the extra copy
+    public DoubleMatrix inputBuffer(int rows) {
+        if (rows < 1 || rows > BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size needs to be between 1 and " + BATCH_SIZE);
+        }
+        return activations(rows)[0];
+    }
+
+    public static void fillWindow(DoubleMatrix input, int row, int offset, double[] values) {
+        int index = offset * input.rows + row;
+        for (double value : values) {
+            input.data[index] = value;
+            index += input.rows;
+        }
+    }
+
+    public double[] scoreBuffer(int rows) {
+        final DoubleMatrix output = feedForward(activations(rows));
+        final double[] scores = new double[rows];
+        System.arraycopy(output.data, 0, scores, 0, rows);
+        return scores;
+    }
+
+    private DoubleMatrix feedForward(DoubleMatrix[] activations) {
+        for (int layer = 1; layer < network.nLayers; layer++) {
+            backend.mmul(activations[layer - 1], network.weights[layer], activations[layer]);
+            activations[layer].addiRowVector(network.biases[layer]);
+            activation.apply(activations[layer].data, 0, activations[layer].length);
+        }
+        return activations[network.nLayers - 1];
+    }
+
+    private DoubleMatrix[] activations(int rows) {
+        final Map<Integer, DoubleMatrix[]> threadBuffers = buffers.get();
+        DoubleMatrix[] activations = threadBuffers.get(rows);
+        if (activations == null) {
+            activations = new DoubleMatrix[network.nLayers];
+            // the ones stay in place for the extra input
+            activations[0] = DoubleMatrix.ones(rows, network.inputSize);
+            for (int layer = 1; layer < network.nLayers; layer++) {
+                activations[layer] = DoubleMatrix.zeros(rows, network.size[layer]);
+            }
+            threadBuffers.put(rows, activations);
+        }
+        return activations;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+// Turns the summed negative gradient of a block of parameters into the step that is added to them. The state holds
+// getStateSize() values per parameter, slot after slot, and steps counts the steps of the block including this one.
+// Implementations are stateless and thread-safe, the state is owned by the caller.
+public interface Optimizer {
+
+    int getStateSize();
+
+    void step(double rate, double[] gradient, int offset, int length, double[] state, long steps);
+
+    String getName();
+}
@@ -0,0 +1,178 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The state of the optimizer of the network weights and the embeddings, written to a model container so a run can be
+// continued without losing it. An embedding row only gets state when it is first updated and is only touched when a
+// batch updates it, so an update costs the rows of the batch and not the whole table. The L2 decay of the embeddings is
+// lazy as well: the clock counts the windows learned and a row catches up on the decay it missed since it was last
+// brought up to date when it is updated again, or when flushDecay brings every row up to date.
+public class OptimizerState {
+    private final Optimizer optimizer;
+    private final double embeddingDecay;
+
+    private final double[][] layers;
+    private long networkSteps;
+
+    private final Map<String, Row> rows = new ConcurrentHashMap<>();
+    private long clock;
+    // the clock of the last flushDecay, the rows without state are up to date until then
+    private long flushed;
+
+    private static class Row {
+        private final double[] state;
+        private long steps;
+        private long clock;
+
+        private Row(int length, long clock) {
+            this.state = new double[length];
+            this.clock = clock;
+        }
+    }
+
+    public OptimizerState(Optimizer optimizer, double embeddingDecay, FeedForwardNetwork network) {
+        this.optimizer = optimizer;
+        this.embeddingDecay = embeddingDecay;
+        this.layers = new double[network.nLayers][];
+        for (int layer = 1; layer < network.nLayers; layer++) {
+            layers[layer] = new double[optimizer.getStateSize() * network.weights[layer].length];
+        }
+    }
+
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    public double getEmbeddingDecay() {
+        return embeddingDecay;
+    }
+
+    // SGD keeps no state, the network is then left to the momentum of the trainer
+    public boolean isAdaptive() {
+        return optimizer.getStateSize() > 0;
+    }
+
+    // the number of embedding rows with state of their own
+    public int getRows() {
+        return rows.size();
+    }
+
+    // turns the summed negative gradients of the weights into the update, in place
+    public void stepNetwork(double rate, DoubleMatrix[] gradients) {
+        networkSteps++;
+        for (int layer = 1; layer < layers.length; layer++) {
+            optimizer.step(rate, gradients[layer].data, 0, gradients[layer].length, layers[layer], networkSteps);
+        }
+    }
+
+    // moves the clock by the windows learned since the last update
+    public void advance(long windows) {
+        clock += windows;
+    }
+
+    // decays the row for the windows it missed and adds the step of the summed negative gradient, which is overwritten
+    public void stepEmbedding(String word, DoubleMatrix embedding, DoubleMatrix gradient, double rate) {
+        Row row = rows.get(word);
+        if (row == null) {
+            row = new Row(optimizer.getStateSize() * embedding.length, flushed);
+            rows.put(word, row);
+        }
+        decay(embedding, rate, clock - row.clock);
+        row.clock = clock;
+        row.steps++;
+        optimizer.step(rate, gradient.data, 0, gradient.length, row.state, row.steps);
+        embedding.addi(gradient);
+    }
+
+    // brings every row up to date with the decay, before the embeddings are saved or used
+    public void flushDecay(Map<String, DoubleMatrix> embeddings, double rate) {
+        if (embeddingDecay > 0.0) {
+            for (Map.Entry<String, DoubleMatrix> entry : embeddings.entrySet()) {
+                final Row row = rows.get(entry.getKey());
+                decay(entry.getValue(), rate, clock - (row == null ? flushed : row.clock));
+            }
+        }
+        for (Row row : rows.values()) {
+            row.clock = clock;
+        }
+        flushed = clock;
+    }
+
+    // the decay of the missed windows at once, the same as decaying the row after every window
+    private void decay(DoubleMatrix embedding, double rate, long windows) {
+        if (embeddingDecay > 0.0 && windows > 0) {
+            embedding.muli(Math.pow(1.0 - rate * embeddingDecay, windows));
+        }
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeUTF(optimizer.getName());
+        output.writeDouble(embeddingDecay);
+        output.writeLong(networkSteps);
+        output.writeLong(clock);
+        output.writeLong(flushed);
+        output.writeInt(layers.length);
+        for (int layer = 1; layer < layers.length; layer++) {
+            writeArray(output, layers[layer]);
+        }
+        output.writeInt(rows.size());
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            final Row row = entry.getValue();
+            output.writeUTF(entry.getKey());
+            output.writeLong(row.steps);
+            output.writeLong(row.clock);
+            writeArray(output, row.state);
+        }
+    }
+
+    public static OptimizerState read(DataInput input, FeedForwardNetwork network) throws IOException {
+        final Optimizer optimizer = Optimizers.byName(input.readUTF());
+        final OptimizerState state = new OptimizerState(optimizer, input.readDouble(), network);
+        state.networkSteps = input.readLong();
+        state.clock = input.readLong();
+        state.flushed = input.readLong();
+        if (input.readInt() != state.layers.length) {
+            throw new IOException("Optimizer state of a network with a different number of layers");
+        }
+        for (int layer = 1; layer < state.layers.length; layer++) {
+            final double[] layerState = readArray(input);
+            if (layerState.length != state.layers[layer].length) {
+                throw new IOException("Optimizer state of a network of a different shape");
+            }
+            state.layers[layer] = layerState;
+        }
+        final int rows = input.readInt();
+        for (int index = 0; index < rows; index++) {
+            final String word = input.readUTF();
+            final long steps = input.readLong();
+            final long clock = input.readLong();
+            final double[] rowState = readArray(input);
+            final Row row = new Row(rowState.length, clock);
+            System.arraycopy(rowState, 0, row.state, 0, rowState.length);
+            row.steps = steps;
+            state.rows.put(word, row);
+        }
+        return state;
+    }
+
+    private static void writeArray(DataOutput output, double[] array) throws IOException {
+        output.writeInt(array.length);
+        for (double value : array) {
+            output.writeDouble(value);
+        }
+    }
+
+    private static double[] readArray(DataInput input) throws IOException {
+        final double[] array = new double[input.readInt()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = input.readDouble();
+        }
+        return array;
+    }
+}
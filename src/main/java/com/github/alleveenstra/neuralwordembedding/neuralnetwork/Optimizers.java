@@ -0,0 +1,99 @@
+package com.github.alleveenstra.neuralwordembedding.neuralnetwork;
+
+// Plain SGD, AdaGrad and Adam with the usual constants. The adaptive ones scale the step of every parameter by its own
+// gradient history, so the rate needs little tuning, Adam works with a rate around 0.001.
+public class Optimizers {
+    public static final Optimizer SGD = new Sgd();
+    public static final Optimizer ADAGRAD = new AdaGrad();
+    public static final Optimizer ADAM = new Adam();
+
+    private static final double EPSILON = 1e-8;
+
+    private Optimizers() {
+    }
+
+    public static Optimizer byName(String name) {
+        switch (name) {
+            case "sgd":
+                return SGD;
+            case "adagrad":
+                return ADAGRAD;
+            case "adam":
+                return ADAM;
+            default:
+                throw new IllegalArgumentException("Unknown optimizer \"" + name + "\", use sgd, adagrad or adam");
+        }
+    }
+
+    private static class Sgd implements Optimizer {
+        @Override
+        public int getStateSize() {
+            return 0;
+        }
+
+        @Override
+        public void step(double rate, double[] gradient, int offset, int length, double[] state, long steps) {
+            for (int index = offset; index < offset + length; index++) {
+                gradient[index] *= rate;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "sgd";
+        }
+    }
+
+    // the step shrinks with the square root of the summed squared gradients
+    private static class AdaGrad implements Optimizer {
+        @Override
+        public int getStateSize() {
+            return 1;
+        }
+
+        @Override
+        public void step(double rate, double[] gradient, int offset, int length, double[] state, long steps) {
+            for (int index = 0; index < length; index++) {
+                final double g = gradient[offset + index];
+                state[index] += g * g;
+                gradient[offset + index] = rate * g / (Math.sqrt(state[index]) + EPSILON);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "adagrad";
+        }
+    }
+
+    // moving averages of the gradient and its square, corrected for starting at zero
+    private static class Adam implements Optimizer {
+        private static final double BETA1 = 0.9;
+        private static final double BETA2 = 0.999;
+
+        @Override
+        public int getStateSize() {
+            return 2;
+        }
+
+        @Override
+        public void step(double rate, double[] gradient, int offset, int length, double[] state, long steps) {
+            final double correction1 = 1.0 - Math.pow(BETA1, steps);
+            final double correction2 = 1.0 - Math.pow(BETA2, steps);
+            final double correctedRate = rate * Math.sqrt(correction2) / correction1;
+            for (int index = 0; index < length; index++) {
+                final double g = gradient[offset + index];
+                final double m = BETA1 * state[index] + (1.0 - BETA1) * g;
+                final double v = BETA2 * state[length + index] + (1.0 - BETA2) * g * g;
+                state[index] = m;
+                state[length + index] = v;
+                gradient[offset + index] = correctedRate * m / (Math.sqrt(v) + EPSILON);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "adam";
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class ZealousWordEmbeddingTrainingStrategy {
     private final static Logger log = LoggerFactory.getLogger(ZealousWordEmbeddingTrainingStrategy.class);
@@ -32,6 +34,7 @@ public class ZealousWordEmbeddingTrainingStrategy {
     private final ExecutorService executorService;
     private int next;
     private int[] counter;
+    private final Counters counters;
 
 
     public ZealousWordEmbeddingTrainingStrategy(
@@ -50,6 +53,7 @@ public class ZealousWordEmbeddingTrainingStrategy {
         this.executorService = Executors.newFixedThreadPool(this.concurrency);
         this.next = 0;
         this.counter = new int[this.concurrency];
+        this.counters = new Counters(this.concurrency);
     }
 
     public void setEta(double eta) {
@@ -60,6 +64,23 @@ public class ZealousWordEmbeddingTrainingStrategy {
         this.etaEmbedding = eta_embedding;
     }
 
+    // the words that corrupt the windows, with one worker the same seed gives the same training
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    // null trains with plain SGD, the embedding updates are then scaled by the rate before they are summed
+    public void setOptimizerState(OptimizerState optimizerState) {
+        trainer.optimizerState = optimizerState;
+    }
+
+    // brings the lazily decayed embedding rows up to date, call it before the embeddings are saved or validated
+    public void flushDecay() {
+        if (trainer.optimizerState != null) {
+            trainer.optimizerState.flushDecay(embeddings, etaEmbedding);
+        }
+    }
+
     public double validate(List<Vector<String>> dataSet) {
         final Mean mean = new Mean();
         for (Vector<String> correctPoint : dataSet) {
@@ -117,20 +138,111 @@ public class ZealousWordEmbeddingTrainingStrategy {
         final int subSetSize = (int) Math.ceil((double) dataSet.size() / (double) concurrency);
         final List<List<Vector<String>>> subSets = Lists.partition(dataSet, subSetSize);
         final CountDownLatch latch = new CountDownLatch(concurrency);
+        final MiniBatchTrainingTask[] tasks = new MiniBatchTrainingTask[concurrency];
         for (int pid = 0; pid < this.concurrency; pid++) {
-            executorService.execute(new MiniBatchTrainingTask(latch, pid, subSets.get(pid)));
+            // a small data set has fewer subsets than workers
+            tasks[pid] = new MiniBatchTrainingTask(latch, pid, pid < subSets.size() ? subSets.get(pid) : Collections.<Vector<String>>emptyList());
+            executorService.execute(tasks[pid]);
         }
         try {
             latch.await();
         } catch (InterruptedException e) {
             log.error("interrupted!", e);
         }
+        final long end = System.nanoTime();
+        for (MiniBatchTrainingTask task : tasks) {
+            counters.idleNanos.addAndGet(Math.max(0, end - task.finished));
+        }
+    }
+
+    public Counters getCounters() {
+        return counters;
+    }
+
+    // the windows every worker learned since it last held the token, read without synchronisation so only an estimate
+    public int[] getPendingWindows() {
+        return counter.clone();
     }
 
     public void shutdown() {
         executorService.shutdown();
     }
 
+    // Totals since the strategy was created, read them before and after a run to measure it. A worker never blocks on
+    // the update token, it keeps learning and accumulating its updates until the token comes by, so the time an update
+    // waits for the token is the price of the zealous scheme. Idle time is spent by the workers that finished their part
+    // of a data set waiting for the slowest one. The counters are brought up to date every time a worker holds the token,
+    // so they can be read while a data set is being trained on.
+    public static class Counters {
+        private final AtomicLong windows = new AtomicLong();
+        private final AtomicLongArray workerWindows;
+        private final AtomicLong lossyWindows = new AtomicLong();
+        private final AtomicLong loss = new AtomicLong(Double.doubleToLongBits(0.0));
+        private final AtomicLong embeddingRows = new AtomicLong();
+        private final AtomicLong updates = new AtomicLong();
+        private final AtomicLong tokenWaitNanos = new AtomicLong();
+        private final AtomicLong updateNanos = new AtomicLong();
+        private final AtomicLong idleNanos = new AtomicLong();
+
+        private Counters(int concurrency) {
+            this.workerWindows = new AtomicLongArray(concurrency);
+        }
+
+        public long getWindows() {
+            return windows.get();
+        }
+
+        public long[] getWorkerWindows() {
+            final long[] result = new long[workerWindows.length()];
+            for (int pid = 0; pid < result.length; pid++) {
+                result[pid] = workerWindows.get(pid);
+            }
+            return result;
+        }
+
+        // the windows whose corrupted version scored within the margin of the correct one, only these are learned from
+        public long getLossyWindows() {
+            return lossyWindows.get();
+        }
+
+        // the hinge loss summed over all windows
+        public double getLoss() {
+            return Double.longBitsToDouble(loss.get());
+        }
+
+        // the embedding rows changed by the updates, a row changed by two updates is counted twice
+        public long getEmbeddingRows() {
+            return embeddingRows.get();
+        }
+
+        // the number of times a worker held the token and applied its accumulated updates
+        public long getUpdates() {
+            return updates.get();
+        }
+
+        // from the first window a worker learned after its last update until it gets the token, summed over workers
+        public long getTokenWaitNanos() {
+            return tokenWaitNanos.get();
+        }
+
+        // applying the updates while holding the token, summed over workers
+        public long getUpdateNanos() {
+            return updateNanos.get();
+        }
+
+        public long getIdleNanos() {
+            return idleNanos.get();
+        }
+
+        private void addLoss(double value) {
+            long current, next;
+            do {
+                current = loss.get();
+                next = Double.doubleToLongBits(Double.longBitsToDouble(current) + value);
+            } while (!loss.compareAndSet(current, next));
+        }
+    }
+
     private static class Context {
         private FeedForwardNetwork network;
         private BackPropagationTrainer trainer;
@@ -140,7 +252,7 @@ public class ZealousWordEmbeddingTrainingStrategy {
             } else {
                 this.network = new FeedForwardNetwork(originNetwork.extraInput, originNetwork.inputSize, originNetwork.hiddenShape);
             }
-            this.trainer = new BackPropagationTrainer(network);
+            this.trainer = new BackPropagationTrainer(network, originTrainer.backend);
 
             // copy all parameters
             this.trainer.eta = originTrainer.eta;
@@ -149,6 +261,8 @@ public class ZealousWordEmbeddingTrainingStrategy {
             this.trainer.eta_L2 = originTrainer.eta_L2;
             this.trainer.eta_momentum = originTrainer.eta_momentum;
             this.trainer.eta_decay = originTrainer.eta_decay;
+            this.trainer.activationFunction = originTrainer.activationFunction;
+            this.trainer.optimizerState = originTrainer.optimizerState;
 
             // inject all weights by reference, don't copy them
             for (int index = 1; index < this.network.weights.length; index++) {
@@ -166,6 +280,9 @@ public class ZealousWordEmbeddingTrainingStrategy {
         private DoubleMatrix cumulativeBiasUpdate[] = null;
         private Map<String, DoubleMatrix> cumulativeEmbeddingUpdate;
         private CountDownLatch latch;
+        private volatile long finished;
+        private long lossyWindows;
+        private double loss;
 
         public MiniBatchTrainingTask(CountDownLatch latch, int pid, List<Vector<String>> batch) {
             this.latch = latch;
@@ -177,27 +294,66 @@ public class ZealousWordEmbeddingTrainingStrategy {
 
         @Override
         public void run() {
+            // counted locally, the shared counters are updated when the worker holds the token and at the end of the batch
+            long windows = 0, updates = 0, tokenWait = 0, update = 0, rows = 0;
+            long pendingSince = -1;
             try {
                 for (final Vector<String> dataPoint : batch) {
                     final Vector<String> corruptedPoint = (Vector<String>) dataPoint.clone();
                     corruptedPoint.set(corruptElement, randomWord());
                     learn(dataPoint, corruptedPoint);
+                    windows++;
+                    if (pendingSince < 0) {
+                        pendingSince = System.nanoTime();
+                    }
                     if (trylock(pid)) {
+                        final long acquired = System.nanoTime();
                         trainer.applyWeightUpdate(cumulativeBiasUpdate, cumulativeWeightUpdate);
                         cumulativeWeightUpdate = null;
                         cumulativeBiasUpdate = null;
-                        for (Map.Entry<String, DoubleMatrix> entry : cumulativeEmbeddingUpdate.entrySet()) {
-                            embeddings.get(entry.getKey()).addi(entry.getValue());
+                        final OptimizerState optimizerState = trainer.optimizerState;
+                        if (optimizerState == null) {
+                            for (Map.Entry<String, DoubleMatrix> entry : cumulativeEmbeddingUpdate.entrySet()) {
+                                embeddings.get(entry.getKey()).addi(entry.getValue());
+                            }
+                        } else {
+                            optimizerState.advance(windows);
+                            for (Map.Entry<String, DoubleMatrix> entry : cumulativeEmbeddingUpdate.entrySet()) {
+                                optimizerState.stepEmbedding(entry.getKey(), embeddings.get(entry.getKey()), entry.getValue(), etaEmbedding);
+                            }
                         }
+                        rows += this.cumulativeEmbeddingUpdate.size();
                         this.cumulativeEmbeddingUpdate.clear();
                         next(pid);
+                        final long released = System.nanoTime();
+                        tokenWait += acquired - pendingSince;
+                        update += released - acquired;
+                        updates++;
+                        pendingSince = -1;
+                        flush(windows, updates, tokenWait, update, rows);
+                        windows = updates = tokenWait = update = rows = 0;
                     }
                 }
             } finally {
+                flush(windows, updates, tokenWait, update, rows);
+                finished = System.nanoTime();
                 latch.countDown();
             }
         }
 
+        private void flush(long windows, long updates, long tokenWait, long update, long rows) {
+            counters.windows.addAndGet(windows);
+            counters.workerWindows.addAndGet(pid, windows);
+            counters.updates.addAndGet(updates);
+            counters.tokenWaitNanos.addAndGet(tokenWait);
+            counters.updateNanos.addAndGet(update);
+            counters.embeddingRows.addAndGet(rows);
+            counters.lossyWindows.addAndGet(lossyWindows);
+            counters.addLoss(loss);
+            lossyWindows = 0;
+            loss = 0.0;
+        }
+
         private void learn(final Vector<String> correctPoint, final Vector<String> corruptedPoint) {
             final DoubleMatrix correctData = concatenateEmbeddings(correctPoint);
             final DoubleMatrix corruptedData = concatenateEmbeddings(corruptedPoint);
@@ -205,6 +361,8 @@ public class ZealousWordEmbeddingTrainingStrategy {
             double corruptedScore = this.context.trainer.evaluate(corruptedData).scalar();
             double rankingCriterium = Math.max(0.0, 1.0 - correctScore + corruptedScore);
             if (rankingCriterium != 0.0) {
+                lossyWindows++;
+                loss += rankingCriterium;
                 double distance = (1 - (correctScore - corruptedScore)) / 2.0;
                 double correctTarget = correctScore + distance;
                 double corruptTarget = corruptedScore - distance;
@@ -250,11 +408,13 @@ public class ZealousWordEmbeddingTrainingStrategy {
             }
 
             // specialz
-            final DoubleMatrix error = this.context.network.deltas[1].mmul(this.context.network.weights[1].transpose());
+            final DoubleMatrix error = this.context.trainer.backend.mmulTransposed(this.context.network.deltas[1], this.context.network.weights[1], null);
             final DoubleMatrix deriv = this.context.network.activations[0].dup();
             this.context.trainer.derivation(deriv);
             this.context.network.deltas[0] = error.mul(deriv);
-            this.context.network.deltas[0].muli(etaEmbedding);
+            if (this.context.trainer.optimizerState == null) {
+                this.context.network.deltas[0].muli(etaEmbedding);
+            }
             return this.context.network.deltas[0];
             // /specialz
         }
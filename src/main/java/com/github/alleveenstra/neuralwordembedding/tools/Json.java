@@ -0,0 +1,74 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// One line JSON objects for the benchmark results and the training metrics, so runs can be appended to one file and
+// compared
+public class Json {
+
+    private Json() {
+    }
+
+    // names and values alternate, the names and string values are quoted and escaped
+    public static String object(Object... fields) {
+        final StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < fields.length; i += 2) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            final Object value = fields[i + 1];
+            string(builder, String.valueOf(fields[i])).append(": ");
+            if (value instanceof String) {
+                string(builder, (String) value);
+            } else if (value instanceof Double) {
+                number(builder, (Double) value);
+            } else if (value instanceof double[]) {
+                builder.append('[');
+                final double[] values = (double[]) value;
+                for (int j = 0; j < values.length; j++) {
+                    number(builder.append(j > 0 ? ", " : ""), values[j]);
+                }
+                builder.append(']');
+            } else if (value instanceof long[]) {
+                builder.append(Arrays.toString((long[]) value));
+            } else if (value instanceof int[]) {
+                builder.append(Arrays.toString((int[]) value));
+            } else {
+                builder.append(value);
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    // quotes, backslashes and control characters are escaped, a file name may hold any of them
+    private static StringBuilder string(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c == '\r') {
+                builder.append("\\r");
+            } else if (c == '\t') {
+                builder.append("\\t");
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"');
+    }
+
+    // JSON has no NaN or infinity
+    private static void number(StringBuilder builder, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            builder.append("null");
+        } else {
+            builder.append(String.format(Locale.ROOT, "%.6g", value));
+        }
+    }
+}
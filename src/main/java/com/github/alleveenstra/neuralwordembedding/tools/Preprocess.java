@@ -0,0 +1,281 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Instrumentation;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import com.github.alleveenstra.neuralwordembedding.tools.util.ParserPool;
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
+import com.google.common.io.Closeables;
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Step1, Step2 and Step3 in one go: every raw file is tokenized once, its tokens are counted and written as chunk local
+// ids, after which the merged vocabulary is written and the local ids are remapped into the '.numbered' files. Words that
+// are pruned from the vocabulary are written as *RARE*.
+public class Preprocess {
+    private static final Logger log = LoggerFactory.getLogger(Preprocess.class);
+
+    private static final ForkJoinPool forkJoinPool = new ForkJoinPool(8);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("r", "raw", true, "The directory containing the raw '.txt' files, default: ./data/raw");
+        options.addOption("n", "numbered", true, "The directory to write the '.numbered' files to, default: ./data/numbered");
+        options.addOption("v", "vocabulary", true, "The vocabulary file to write, default: ./data/vocab.txt");
+        options.addOption(null, "min-count", true, "Words that occur less often are written as *RARE*, default: 1");
+        options.addOption(null, "max-size", true, "The most words the vocabulary holds including the reserved ones, the least frequent are written as *RARE*");
+        options.addOption("rules", false, "Tokenize with the rule-based tokenizer instead of OpenNLP");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Preprocess", options);
+            return;
+        }
+        ParserPool.setRuleTokenizer(cmd.hasOption("rules"));
+        final File raw = new File(cmd.getOptionValue("raw", "./data/raw"));
+        final File numbered = new File(cmd.getOptionValue("numbered", "./data/numbered"));
+        final String vocabularyFile = cmd.getOptionValue("vocabulary", "./data/vocab.txt");
+        final long minCount = Long.parseLong(cmd.getOptionValue("min-count", "1"));
+        final int maxSize = Integer.parseInt(cmd.getOptionValue("max-size", Integer.toString(Integer.MAX_VALUE)));
+        preprocess(raw, numbered, vocabularyFile, minCount, maxSize, Step1ConvertRaw.CHUNK_SIZE);
+    }
+
+    // the raw files are tokenized in paragraph aligned chunks of about chunkSize bytes
+    static void preprocess(File raw, File numbered, String vocabularyFile, long minCount, int maxSize, long chunkSize) throws IOException {
+        long start = System.currentTimeMillis();
+        final List<File> files = new ArrayList<>((Collection<File>) FileUtils.listFiles(raw, new SuffixFileFilter(".txt"), TrueFileFilter.TRUE));
+        Collections.sort(files);
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        Instrumentation.start("Preprocess", bytes, forkJoinPool);
+        final List<List<Chunk>> chunks = forkJoinPool.invoke(new TokenizeFolderTask(files, raw, numbered, chunkSize));
+        Instrumentation.finish();
+        log.info("Tokenized {} files in {} ms", files.size(), System.currentTimeMillis() - start);
+        log.info("Parser models loaded in {} ms, {} parsers created", Parser.getModelLoadTime(), ParserPool.getCreated());
+
+        start = System.currentTimeMillis();
+        final WordCounter vocabulary = new WordCounter();
+        for (List<Chunk> fileChunks : chunks) {
+            for (Chunk chunk : fileChunks) {
+                chunk.remap = new int[chunk.words.size()];
+                for (int local = 0; local < chunk.remap.length; local++) {
+                    chunk.remap[local] = vocabulary.add(chunk.words, local);
+                }
+                // only the remap is needed from here on
+                chunk.words = null;
+            }
+        }
+        final int[] ids = Vocabulary.write(vocabulary, vocabularyFile, minCount, maxSize);
+        for (List<Chunk> fileChunks : chunks) {
+            for (Chunk chunk : fileChunks) {
+                for (int local = 0; local < chunk.remap.length; local++) {
+                    chunk.remap[local] = ids[chunk.remap[local]];
+                }
+            }
+        }
+        log.info("Merged and wrote {} words in {} ms", vocabulary.size(), System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        forkJoinPool.invoke(new RemapFolderTask(chunks, Vocabulary.END_ID));
+        log.info("Wrote numbered files in {} ms", System.currentTimeMillis() - start);
+    }
+
+    // the tokens of a paragraph aligned part of a raw file, as ids into the words of this part only
+    private static class Chunk implements Step1ConvertRaw.SentenceSink {
+        private final File ids;
+        private final File numbered;
+        private WordCounter words = new WordCounter();
+        private int[] remap;
+        private DataOutputStream output;
+
+        Chunk(File ids, File numbered) {
+            this.ids = ids;
+            this.numbered = numbered;
+        }
+
+        @Override
+        public void token(char[] buffer, int offset, int length) {
+            try {
+                output.writeInt(words.add(buffer, offset, length));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void endSentence() {
+        }
+    }
+
+    private static class TokenizeChunkTask extends RecursiveTask<Chunk> {
+        private final File file;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final boolean last;
+        private final Chunk chunk;
+
+        TokenizeChunkTask(File file, long[] boundaries, int index, Chunk chunk) {
+            this.file = file;
+            this.start = boundaries[index];
+            this.end = boundaries[index + 1];
+            this.first = index == 0;
+            this.last = index == boundaries.length - 2;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Chunk compute() {
+            final Parser parser = ParserPool.borrow();
+            try {
+                chunk.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(chunk.ids), BUFFER_SIZE));
+                Step1ConvertRaw.tokenizeChunk(parser, file, start, end, first, last, chunk);
+            } catch (IOException e) {
+                log.error("Unable to tokenize " + file + " from " + start + " to " + end, e);
+            } finally {
+                IOUtils.closeQuietly(chunk.output);
+                ParserPool.release(parser);
+            }
+            return chunk;
+        }
+    }
+
+    private static class TokenizeFolderTask extends RecursiveTask<List<List<Chunk>>> {
+        private final List<File> files;
+        private final File raw;
+        private final File numbered;
+        private final long chunkSize;
+
+        TokenizeFolderTask(List<File> files, File raw, File numbered, long chunkSize) {
+            this.files = files;
+            this.raw = raw;
+            this.numbered = numbered;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<List<Chunk>> compute() {
+            final List<List<TokenizeChunkTask>> forks = new ArrayList<>();
+            for (File file : files) {
+                final List<TokenizeChunkTask> fileForks = new ArrayList<>();
+                try {
+                    log.debug("Processing {}", file.getAbsolutePath());
+                    Instrumentation.count(Instrumentation.Count.FILES, 1);
+                    final String relative = raw.toURI().relativize(file.toURI()).getPath();
+                    final File numberedFile = new File(numbered, relative.substring(0, relative.length() - ".txt".length()) + ".numbered");
+                    numberedFile.getParentFile().mkdirs();
+                    final long[] boundaries = Step1ConvertRaw.findParagraphBoundaries(file, chunkSize);
+                    for (int index = 0; index < boundaries.length - 1; index++) {
+                        final Chunk chunk = new Chunk(new File(numberedFile.getPath() + ".part" + index + ".ids"), numberedFile);
+                        final TokenizeChunkTask task = new TokenizeChunkTask(file, boundaries, index, chunk);
+                        fileForks.add(task);
+                        task.fork();
+                    }
+                } catch (IOException e) {
+                    log.error("Unable to split " + file, e);
+                }
+                forks.add(fileForks);
+            }
+            final List<List<Chunk>> chunks = new ArrayList<>();
+            for (List<TokenizeChunkTask> fileForks : forks) {
+                final List<Chunk> fileChunks = new ArrayList<>();
+                for (TokenizeChunkTask task : fileForks) {
+                    fileChunks.add(task.join());
+                }
+                chunks.add(fileChunks);
+            }
+            return chunks;
+        }
+    }
+
+    // writes one id per line and eeeoddd after every end of paragraph, like Step3
+    private static class RemapFileTask extends RecursiveTask<File> {
+        private final List<Chunk> chunks;
+        private final int endOfParagraph;
+
+        RemapFileTask(List<Chunk> chunks, int endOfParagraph) {
+            this.chunks = chunks;
+            this.endOfParagraph = endOfParagraph;
+        }
+
+        @Override
+        protected File compute() {
+            final File numbered = chunks.get(0).numbered;
+            BufferedWriter writer = null;
+            try {
+                writer = Files.newBufferedWriter(numbered.toPath(), CHARSET);
+                for (Chunk chunk : chunks) {
+                    final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(chunk.ids), BUFFER_SIZE));
+                    try {
+                        final long tokens = chunk.ids.length() / 4;
+                        for (long token = 0; token < tokens; token++) {
+                            final int id = chunk.remap[input.readInt()];
+                            writer.write(Integer.toString(id));
+                            writer.write('\n');
+                            if (id == endOfParagraph) {
+                                writer.write("eeeoddd\n");
+                            }
+                        }
+                    } finally {
+                        IOUtils.closeQuietly(input);
+                    }
+                    chunk.ids.delete();
+                }
+            } catch (IOException e) {
+                log.error("Unable to write " + numbered, e);
+            } finally {
+                Closeables.closeQuietly(writer);
+            }
+            return numbered;
+        }
+    }
+
+    private static class RemapFolderTask extends RecursiveTask<String> {
+        private final List<List<Chunk>> chunks;
+        private final int endOfParagraph;
+
+        RemapFolderTask(List<List<Chunk>> chunks, int endOfParagraph) {
+            this.chunks = chunks;
+            this.endOfParagraph = endOfParagraph;
+        }
+
+        @Override
+        protected String compute() {
+            final List<RemapFileTask> forks = new ArrayList<>();
+            for (List<Chunk> fileChunks : chunks) {
+                if (!fileChunks.isEmpty()) {
+                    final RemapFileTask task = new RemapFileTask(fileChunks, endOfParagraph);
+                    forks.add(task);
+                    task.fork();
+                }
+            }
+            for (RemapFileTask task : forks) {
+                task.join();
+            }
+            return "ready";
+        }
+    }
+}
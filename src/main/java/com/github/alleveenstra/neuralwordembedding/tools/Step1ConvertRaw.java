@@ -1,7 +1,12 @@
 package com.github.alleveenstra.neuralwordembedding.tools;
 
-import com.google.common.base.Joiner;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Instrumentation;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Manifest;
 import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import com.github.alleveenstra.neuralwordembedding.tools.util.ParserPool;
+import com.github.alleveenstra.neuralwordembedding.tools.util.RuleTokenizer;
+import com.google.common.io.Closeables;
+import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.*;
@@ -9,6 +14,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
@@ -19,104 +29,362 @@ public class Step1ConvertRaw {
     private static final ForkJoinPool forkJoinPool = new ForkJoinPool(8);
     public static final String[] EMPTY_STRING_ARRAY = new String[0];
 
-    public static void main(String[] args) {
+    // files are split into chunks of about this size, on paragraph boundaries
+    static final long CHUNK_SIZE = 512 * 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("rules", false, "Tokenize with the rule-based tokenizer instead of OpenNLP");
+        options.addOption("full", false, "Convert every file, instead of only the files that are new or changed since the last run");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Step1ConvertRaw", options);
+            return;
+        }
+        ParserPool.setRuleTokenizer(cmd.hasOption("rules"));
         final String directory = "./data/raw";
-        forkJoinPool.invoke(new FolderSearchTask(directory));
+        final Manifest manifest = Manifest.load(new File(Manifest.DIRECTORY, "step1.tsv"), "rules=" + cmd.hasOption("rules"));
+        forkJoinPool.invoke(new FolderSearchTask(directory, manifest, cmd.hasOption("full")));
+        Instrumentation.finish();
+        manifest.save();
+        log.info("Parser models loaded in {} ms, {} parsers created", Parser.getModelLoadTime(), ParserPool.getCreated());
     }
 
     private static class ProcessFileTask extends RecursiveTask<String> {
         private File file;
+        private Manifest manifest;
 
-        public ProcessFileTask(File file) {
+        public ProcessFileTask(File file, Manifest manifest) {
             this.file = file;
+            this.manifest = manifest;
         }
 
         @Override
         protected String compute() {
             long startTime = System.currentTimeMillis();
-            System.out.println("Processing " + file.getAbsolutePath());
-            final Parser parser = new Parser();
-            FileWriter fileWriter = null;
+            log.debug("Processing {}", file.getAbsolutePath());
             try {
                 final String writeFilename = file.getAbsolutePath().replace(".txt", ".dataset").replace("/raw/", "/dataset/");
                 final File writeFile = new File(writeFilename);
-                if (!writeFile.exists()) {
-                    writeFile.createNewFile();
+                final long[] boundaries = findParagraphBoundaries(file);
+                final int chunks = boundaries.length - 1;
+                boolean converted = true;
+                if (chunks == 1) {
+                    converted = new ProcessChunkTask(file, boundaries, 0, writeFile).compute() != null;
                 } else {
-                    writeFile.delete();
-                    writeFile.createNewFile();
-                }
-                fileWriter = new FileWriter(writeFile, true);
-
-                final List<String> sentences = new ArrayList<>();
-                int newlineCounter = 0;
-                sentences.add("<s>");
-                for (String line : loadFile(file)) {
-                    if (line.isEmpty()) {
-                        newlineCounter++;
-                    } else {
-                        if (newlineCounter > 2) {
-                            sentences.add("</s>");
-                            sentences.add("<s>");
-                            sentences.addAll(parser.extractSentences(line));
-                        } else {
-                            sentences.addAll(parser.extractSentences(line));
-                        }
-                        newlineCounter = 0;
+                    final List<ProcessChunkTask> forks = new ArrayList<>();
+                    for (int chunk = 0; chunk < chunks; chunk++) {
+                        final ProcessChunkTask task = new ProcessChunkTask(file, boundaries, chunk, new File(writeFilename + ".part" + chunk));
+                        forks.add(task);
+                        task.fork();
+                    }
+                    for (ProcessChunkTask task : forks) {
+                        converted &= task.join() != null;
                     }
+                    final long begin = Instrumentation.begin();
+                    stitch(forks, writeFile);
+                    Instrumentation.end(Instrumentation.Stage.WRITE, begin);
                 }
-                sentences.add("</s>");
-                for (String sentence : sentences) {
-                    final List<String> words = parser.tokenize(sentence);
-                    final String newSentence = Joiner.on(" ").join(words.toArray(EMPTY_STRING_ARRAY));
-                    fileWriter.write(newSentence + "\n");
+                if (converted) {
+                    manifest.record(file, writeFile);
                 }
             } catch(Exception e) {
                 log.error("Unable to create new file", e);
-            } finally {
-                IOUtils.closeQuietly(fileWriter);
             }
+            Instrumentation.count(Instrumentation.Count.FILES, 1);
             long endTime = System.currentTimeMillis();
             long totalTime = endTime - startTime;
-            log.info("Ran task for {}", totalTime);
+            log.debug("Converted {} bytes of {} in {} ms", new Object[]{file.length(), file.getName(), totalTime});
             return "ready";
         }
     }
 
+    // every chunk after the first starts with a paragraph, the first one opens the document and the last one closes it
+    private static class ProcessChunkTask extends RecursiveTask<File> {
+        private final File file;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final boolean last;
+        private final File writeFile;
+
+        public ProcessChunkTask(File file, long[] boundaries, int chunk, File writeFile) {
+            this.file = file;
+            this.start = boundaries[chunk];
+            this.end = boundaries[chunk + 1];
+            this.first = chunk == 0;
+            this.last = chunk == boundaries.length - 2;
+            this.writeFile = writeFile;
+        }
+
+        // null when the chunk could not be converted
+        @Override
+        protected File compute() {
+            final Parser parser = ParserPool.borrow();
+            BufferedWriter writer = null;
+            try {
+                writer = Files.newBufferedWriter(writeFile.toPath(), CHARSET);
+                tokenizeChunk(parser, file, start, end, first, last, new LineSink(writer));
+            } catch (IOException e) {
+                log.error("Unable to convert " + file + " from " + start + " to " + end, e);
+                return null;
+            } finally {
+                Closeables.closeQuietly(writer);
+                ParserPool.release(parser);
+            }
+            return writeFile;
+        }
+    }
+
+    // receives the tokens of one sentence after the other, every sentence is closed with endSentence
+    interface SentenceSink extends RuleTokenizer.TokenSink {
+        void endSentence() throws IOException;
+    }
+
+    // tokenizes the sentences of a paragraph aligned byte range, the way the sequential conversion would for the file
+    static void tokenizeChunk(Parser parser, File file, long start, long end, boolean first, boolean last, SentenceSink sink) throws IOException {
+        FileInputStream fileInputStream = null;
+        BufferedReader reader = null;
+        try {
+            fileInputStream = new FileInputStream(file);
+            final FileChannel channel = fileInputStream.getChannel();
+            channel.position(start);
+            reader = new BufferedReader(new InputStreamReader(Instrumentation.counting(new RangeInputStream(Channels.newInputStream(channel), end - start)), CHARSET), BUFFER_SIZE);
+            int newlineCounter = 0;
+            write(parser, sink, first ? "<s>" : "</s>");
+            if (!first) {
+                write(parser, sink, "<s>");
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                Instrumentation.count(Instrumentation.Count.LINES, 1);
+                if (line.isEmpty()) {
+                    newlineCounter++;
+                } else {
+                    if (newlineCounter > 2) {
+                        write(parser, sink, "</s>");
+                        write(parser, sink, "<s>");
+                    }
+                    for (String sentence : parser.extractSentences(line)) {
+                        write(parser, sink, sentence);
+                    }
+                    newlineCounter = 0;
+                }
+                line = reader.readLine();
+            }
+            if (last) {
+                write(parser, sink, "</s>");
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+            IOUtils.closeQuietly(fileInputStream);
+        }
+    }
+
+    private static void write(Parser parser, SentenceSink sink, String sentence) throws IOException {
+        parser.tokenize(sentence, sink);
+        sink.endSentence();
+    }
+
+    // joins the tokens of a sentence with spaces without creating a string per token
+    private static class LineSink implements SentenceSink {
+        private final StringBuilder builder = new StringBuilder(256);
+        private final Writer writer;
+
+        LineSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void token(char[] buffer, int offset, int length) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(buffer, offset, length);
+        }
+
+        @Override
+        public void endSentence() throws IOException {
+            final long begin = Instrumentation.begin();
+            writer.append(builder);
+            writer.write('\n');
+            Instrumentation.end(Instrumentation.Stage.WRITE, begin);
+            builder.setLength(0);
+        }
+    }
+
+    private static void stitch(List<ProcessChunkTask> chunks, File writeFile) throws IOException {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(writeFile);
+            final FileChannel output = fileOutputStream.getChannel();
+            for (ProcessChunkTask chunk : chunks) {
+                FileInputStream part = null;
+                try {
+                    part = new FileInputStream(chunk.writeFile);
+                    final FileChannel input = part.getChannel();
+                    long position = 0;
+                    final long size = input.size();
+                    while (position < size) {
+                        position += input.transferTo(position, size - position, output);
+                    }
+                } finally {
+                    IOUtils.closeQuietly(part);
+                }
+                chunk.writeFile.delete();
+            }
+        } finally {
+            IOUtils.closeQuietly(fileOutputStream);
+        }
+    }
+
+    // Chunk boundaries are placed at the start of a line that follows more than two empty lines, that is where the
+    // sequential conversion would start a new paragraph anyway. Returns the start offsets plus the file length.
+    static long[] findParagraphBoundaries(File file) throws IOException {
+        return findParagraphBoundaries(file, CHUNK_SIZE);
+    }
+
+    static long[] findParagraphBoundaries(File file, long chunkSize) throws IOException {
+        final List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        final long length = file.length();
+        FileInputStream fileInputStream = null;
+        try {
+            fileInputStream = new FileInputStream(file);
+            final FileChannel channel = fileInputStream.getChannel();
+            long target = chunkSize;
+            while (target < length) {
+                final long boundary = findParagraphBoundary(channel, target);
+                if (boundary < 0) {
+                    break;
+                }
+                boundaries.add(boundary);
+                target = boundary + chunkSize;
+            }
+        } finally {
+            IOUtils.closeQuietly(fileInputStream);
+        }
+        boundaries.add(length);
+        final long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    // only "\n" and "\r\n" count as empty lines, anything more exotic never becomes a boundary
+    private static long findParagraphBoundary(FileChannel channel, long start) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = start;
+        // start as if in the middle of a line, the line we landed in can not be trusted
+        int lineLength = 1, emptyLines = 0;
+        boolean carriageReturn = false;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte next = buffer.get();
+                if (next == '\n') {
+                    final boolean empty = lineLength == 0 || (lineLength == 1 && carriageReturn);
+                    emptyLines = empty ? emptyLines + 1 : 0;
+                    lineLength = 0;
+                    carriageReturn = false;
+                } else {
+                    if (lineLength == 0 && next != '\r' && emptyLines > 2) {
+                        return position;
+                    }
+                    carriageReturn = next == '\r';
+                    lineLength++;
+                }
+                position++;
+            }
+            buffer.clear();
+        }
+        return -1;
+    }
+
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream input, long length) {
+            super(input);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int result = super.read();
+            if (result != -1) {
+                remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int result = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (result > 0) {
+                remaining -= result;
+            }
+            return result;
+        }
+    }
+
     private static class FolderSearchTask extends RecursiveTask<String> {
         private String directory;
+        private Manifest manifest;
+        private boolean full;
 
-        public FolderSearchTask(String directory) {
+        public FolderSearchTask(String directory, Manifest manifest, boolean full) {
             this.directory = directory;
+            this.manifest = manifest;
+            this.full = full;
         }
         @Override
         protected String compute() {
             final List<RecursiveTask<String>> forks = new LinkedList<>();
             final Collection<File> files = (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(".txt"), TrueFileFilter.TRUE);
+            // the datasets of raw files that were removed are removed as well
+            for (File output : manifest.retain(files)) {
+                log.info("Removing {}", output);
+                output.delete();
+            }
+            int unchanged = 0;
+            final List<File> changed = new ArrayList<>();
+            long bytes = 0;
             for (File file : files) {
-                ProcessFileTask task = new ProcessFileTask(file);
+                if (!full && manifest.isCurrent(file)) {
+                    unchanged++;
+                    continue;
+                }
+                changed.add(file);
+                bytes += file.length();
+            }
+            Instrumentation.start("Step1", bytes, forkJoinPool);
+            for (File file : changed) {
+                ProcessFileTask task = new ProcessFileTask(file, manifest);
                 forks.add(task);
                 task.fork();
             }
             for (RecursiveTask<String> task : forks) {
                 task.join();
             }
+            log.info("Converted {} files, {} were unchanged", forks.size(), unchanged);
             return "ready";
         }
     }
-
-    private static List<String> loadFile(File file) {
-        FileInputStream fileInputStream = null;
-        try {
-            fileInputStream = new FileInputStream(file);
-            return IOUtils.readLines(fileInputStream);
-        } catch (FileNotFoundException e) {
-            log.error("File not found", e);
-        } catch (IOException e) {
-            log.error("Can not read file", e);
-        } finally {
-            IOUtils.closeQuietly(fileInputStream);
-        }
-        return null;
-    }
 }
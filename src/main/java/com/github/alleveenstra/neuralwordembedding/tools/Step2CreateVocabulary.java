@@ -1,7 +1,15 @@
 package com.github.alleveenstra.neuralwordembedding.tools;
 
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Instrumentation;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Manifest;
 import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import com.github.alleveenstra.neuralwordembedding.tools.util.ParserPool;
+import com.github.alleveenstra.neuralwordembedding.tools.util.RuleTokenizer;
 import com.github.alleveenstra.neuralwordembedding.tools.util.Sanitization;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularySketch;
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
+import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
@@ -10,95 +18,388 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class Step2CreateVocabulary {
     private static final Logger log = LoggerFactory.getLogger(Step2CreateVocabulary.class);
 
     private static final ForkJoinPool forkJoinPool = new ForkJoinPool();
 
-    public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException {
-        final Map<String, AtomicInteger> vocabulary = forkJoinPool.invoke(new FolderSearchTask("./data/dataset"));
-        writeToVocab(vocabulary, "./data/vocab.txt");
+    public static void main(String[] args) throws IOException {
+        final Options options = new Options();
+        options.addOption("d", "dataset", true, "The dataset directory containing '.dataset' files, default: ./data/dataset");
+        options.addOption("v", "vocabulary", true, "The vocabulary file to write, default: ./data/vocab.txt");
+        options.addOption("merge", false, "Add the counts to the existing vocabulary file, new words are appended with new ids");
+        options.addOption(null, "min-count", true, "Words that occur less often are counted as *RARE*, default: 1");
+        options.addOption(null, "max-size", true, "The most words the vocabulary holds including the reserved ones, the least frequent are counted as *RARE*");
+        options.addOption("rules", false, "Tokenize with the rule-based tokenizer instead of OpenNLP");
+        options.addOption("budget", true, "Build an approximate vocabulary in about this many MB for each of the " + forkJoinPool.getParallelism() + " worker threads, instead of counting every word");
+        options.addOption("size", true, "The number of words an approximate vocabulary keeps, default: half of what fits in the budget");
+        options.addOption("recount", false, "Count the words of an approximate vocabulary exactly in a second pass");
+        options.addOption("full", false, "Count every file, instead of only the files that are new or changed since the last run");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Step2CreateVocabulary", options);
+            return;
+        }
+        ParserPool.setRuleTokenizer(cmd.hasOption("rules"));
+        final String dataSet = cmd.getOptionValue("dataset", "./data/dataset");
+        final String vocabularyFile = cmd.getOptionValue("vocabulary", "./data/vocab.txt");
+        final long minCount = Long.parseLong(cmd.getOptionValue("min-count", "1"));
+        final int maxSize = Integer.parseInt(cmd.getOptionValue("max-size", Integer.toString(Integer.MAX_VALUE)));
+        final List<File> files = new ArrayList<>((Collection<File>) FileUtils.listFiles(new File(dataSet), TrueFileFilter.TRUE, TrueFileFilter.TRUE));
+        final WordCounter vocabulary;
+        Instrumentation.start("Step2", totalLength(files), forkJoinPool);
+        if (cmd.hasOption("budget")) {
+            final long budget = Long.parseLong(cmd.getOptionValue("budget")) << 20;
+            final SketchCounting counting = new SketchCounting(budget);
+            forkJoinPool.invoke(new CountFilesTask<>(counting, files, 0, files.size()));
+            final VocabularySketch sketch = counting.merged();
+            final int size = Integer.parseInt(cmd.getOptionValue("size", Integer.toString(Math.min(maxSize, sketch.getCapacity() / 2))));
+            log.info(String.format("Sketched %d tokens, counts are at most %d below the truth", sketch.getTokens(), sketch.getError()));
+            final WordCounter top = sketch.top(size);
+            vocabulary = cmd.hasOption("recount") ? forkJoinPool.invoke(new CountFilesTask<>(new RecountCounting(top), files, 0, files.size())) : top;
+        } else if (cmd.hasOption("merge")) {
+            vocabulary = forkJoinPool.invoke(new CountFilesTask<>(new ExactCounting(), files, 0, files.size()));
+        } else {
+            vocabulary = countIncrementally(new File(dataSet), files, "rules=" + cmd.hasOption("rules"), cmd.hasOption("full"));
+        }
+        Instrumentation.finish();
+        log.info("Parser models loaded in {} ms, {} parsers created", Parser.getModelLoadTime(), ParserPool.getCreated());
+        if (cmd.hasOption("merge") && new File(vocabularyFile).exists()) {
+            mergeIntoVocab(vocabulary, vocabularyFile, minCount, maxSize);
+            Vocabulary.compile(vocabularyFile);
+        } else {
+            Vocabulary.write(vocabulary, vocabularyFile, minCount, maxSize);
+        }
+    }
+
+    // the progress is relative to reading every file once, an approximate vocabulary that is recounted reads them twice
+    private static long totalLength(List<File> files) {
+        long length = 0;
+        for (File file : files) {
+            length += file.length();
+        }
+        return length;
+    }
+
+    // Only counts the files that are new or changed since the last run. The counts of every file and the unpruned totals
+    // are kept next to the manifest, the counts of a changed or removed file are subtracted from the totals before its
+    // new counts are added. The result is the same as counting every file.
+    private static WordCounter countIncrementally(File dataSet, List<File> files, String settings, boolean full) throws IOException {
+        final File totalsFile = new File(Manifest.DIRECTORY, "step2.counts");
+        final File manifestFile = new File(Manifest.DIRECTORY, "step2.tsv");
+        final Manifest manifest = Manifest.load(manifestFile, settings);
+        // without a manifest the totals are left by a run that did not finish
+        final boolean fresh = full || !totalsFile.exists() || !manifestFile.exists();
+        final WordCounter totals = fresh ? new WordCounter() : WordCounter.read(totalsFile);
+        if (fresh) {
+            for (File counts : manifest.retain(Collections.<File>emptyList())) {
+                counts.delete();
+            }
+        }
+        final List<File> changed = new ArrayList<>();
+        for (File file : files) {
+            if (manifest.isCurrent(file)) {
+                continue;
+            }
+            if (manifest.contains(file) && !countsFile(dataSet, file).exists()) {
+                log.warn("The counts of {} are missing, every file is counted again", file);
+                return countIncrementally(dataSet, files, settings, true);
+            }
+            changed.add(file);
+        }
+        // from here on the totals and the counts on disk do not match the manifest until it is saved
+        manifest.invalidate();
+        for (File counts : manifest.retain(files)) {
+            subtract(totals, counts);
+            counts.delete();
+        }
+        for (File file : changed) {
+            if (manifest.contains(file)) {
+                subtract(totals, countsFile(dataSet, file));
+            }
+        }
+        log.info("Counting {} new or changed files, {} are unchanged", changed.size(), files.size() - changed.size());
+        totals.addAll(forkJoinPool.invoke(new CountFilesTask<>(new IncrementalCounting(manifest, dataSet), changed, 0, changed.size())));
+        totalsFile.getAbsoluteFile().getParentFile().mkdirs();
+        totals.write(totalsFile);
+        manifest.save();
+        // words of removed files can be left at zero
+        final WordCounter counted = new WordCounter(totals.size());
+        for (int id = 0; id < totals.size(); id++) {
+            if (totals.count(id) > 0) {
+                counted.add(totals, id);
+            }
+        }
+        return counted;
+    }
+
+    private static void subtract(WordCounter totals, File countsFile) throws IOException {
+        final WordCounter counts = WordCounter.read(countsFile);
+        for (int id = 0; id < counts.size(); id++) {
+            totals.add(counts.word(id), -counts.count(id));
+        }
+    }
+
+    // the counts of a dataset file are kept under the same relative path
+    private static File countsFile(File dataSet, File file) {
+        final String relative = dataSet.getAbsoluteFile().toPath().normalize().relativize(file.getAbsoluteFile().toPath().normalize()).toString();
+        return new File(new File(Manifest.DIRECTORY, "counts"), relative + ".counts");
+    }
+
+    // keeps the ids of the existing words, so a trained model stays valid for them, new words are appended by frequency
+    static void mergeIntoVocab(final WordCounter vocabulary, String filename, long minCount, int maxSize) throws IOException {
+        final List<String[]> entries = new ArrayList<>();
+        final boolean[] existing = new boolean[vocabulary.size()];
+        int maxId = 0;
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                final String[] split = line.trim().split("[\t ]+");
+                if (split.length >= 3) {
+                    final int id = vocabulary.id(split[0]);
+                    if (id >= 0) {
+                        split[2] = Long.toString(Long.parseLong(split[2]) + vocabulary.count(id));
+                        existing[id] = true;
+                    }
+                    maxId = Math.max(maxId, Integer.parseInt(split[1]));
+                    entries.add(split);
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        final List<Integer> added = new ArrayList<>();
+        for (int id = 0; id < vocabulary.size(); id++) {
+            if (!existing[id]) {
+                added.add(id);
+            }
+        }
+        Collections.sort(added, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                // like Vocabulary.write, words with the same count in alphabetical order
+                final int order = Long.compare(vocabulary.count(o2), vocabulary.count(o1));
+                return order != 0 ? order : vocabulary.word(o1).compareTo(vocabulary.word(o2));
+            }
+        });
+        long rare = 0;
+        final PrintWriter writer = new PrintWriter(filename, "UTF-8");
+        try {
+            int counter = maxId + 1;
+            final StringBuilder appended = new StringBuilder();
+            for (int id : added) {
+                if (vocabulary.count(id) >= minCount && entries.size() + counter - maxId - 1 < maxSize) {
+                    appended.append(String.format("%s\t%d\t%d\n", vocabulary.word(id), counter, vocabulary.count(id)));
+                    counter++;
+                } else {
+                    rare += vocabulary.count(id);
+                }
+            }
+            for (String[] entry : entries) {
+                if (Vocabulary.RARE.equals(entry[0])) {
+                    entry[2] = Long.toString(Long.parseLong(entry[2]) + rare);
+                }
+                writer.printf("%s\t%s\t%s\n", entry[0], entry[1], entry[2]);
+            }
+            writer.print(appended);
+            log.info("Merged vocabulary, {} existing and {} new words", entries.size(), counter - maxId - 1);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static <T extends RuleTokenizer.TokenSink> T countFile(File file, T vocabulary) {
+        long startTime = System.currentTimeMillis();
+        log.debug("Processing {}", file.getAbsolutePath());
+        Parser parser = null;
+        try {
+            parser = ParserPool.borrow();
+            appendWordsFromFile(parser, file, vocabulary);
+        } catch (Exception e) {
+            log.error("Pool fault", e);
+        } finally {
+            ParserPool.release(parser);
+        }
+        Instrumentation.count(Instrumentation.Count.FILES, 1);
+        long endTime = System.currentTimeMillis();
+        long totalTime = endTime - startTime;
+        log.debug("Counted {} bytes of {} in {} ms", new Object[]{file.length(), file.getName(), totalTime});
+        return vocabulary;
     }
 
-    private static void writeToVocab(Map<String, AtomicInteger> vocabulary, String filename) throws FileNotFoundException, UnsupportedEncodingException {
-        PrintWriter writer = new PrintWriter(filename, "UTF-8");
-        writer.printf("UUUNKKK\t1\t1\n");
-        int counter = 2;
-        for (Map.Entry<String, AtomicInteger> entry : vocabulary.entrySet()) {
-            writer.printf("%s\t%d\t%d\n", entry.getKey(), counter, entry.getValue().get());
-            counter++;
+    // how the words of a single file are counted and how two of those counts are combined
+    private static abstract class Counting<T extends RuleTokenizer.TokenSink> {
+        abstract T create();
+
+        abstract T merge(T left, T right);
+
+        T count(File file) {
+            return countFile(file, create());
         }
     }
 
-    private static class ProcessFileTask extends RecursiveTask<Map<String, AtomicInteger>> {
-        private File file;
+    private static class ExactCounting extends Counting<WordCounter> {
+        @Override
+        public WordCounter create() {
+            return new WordCounter();
+        }
 
-        public ProcessFileTask(File file) {
-            this.file = file;
+        // the smaller counter is merged into the larger one
+        @Override
+        public WordCounter merge(WordCounter left, WordCounter right) {
+            if (left.size() >= right.size()) {
+                left.addAll(right);
+                return left;
+            }
+            right.addAll(left);
+            return right;
         }
+    }
+
+    // counts exactly and keeps the counts of every file, and the file itself, in the manifest
+    private static class IncrementalCounting extends ExactCounting {
+        private final Manifest manifest;
+        private final File dataSet;
+
+        IncrementalCounting(Manifest manifest, File dataSet) {
+            this.manifest = manifest;
+            this.dataSet = dataSet;
+        }
+
         @Override
-        protected Map<String, AtomicInteger> compute() {
-            long startTime = System.currentTimeMillis();
-            System.out.println("Processing " + file.getAbsolutePath());
-            final Map<String, AtomicInteger> vocabulary = new HashMap<>();
+        WordCounter count(File file) {
+            final WordCounter counts = super.count(file);
+            final File countsFile = countsFile(dataSet, file);
             try {
-                final Parser parser = new Parser();
-                appendWordsFromFile(parser, file, vocabulary);
-            } catch (Exception e) {
-                log.error("Pool fault", e);
+                countsFile.getParentFile().mkdirs();
+                counts.write(countsFile);
+                manifest.record(file, countsFile);
+            } catch (IOException e) {
+                // the totals would no longer match the counts on disk, the manifest stays invalidated
+                throw new IllegalStateException("Unable to keep the counts of " + file, e);
             }
-            long endTime = System.currentTimeMillis();
-            long totalTime = endTime - startTime;
-            System.out.println("Ran task for " + totalTime);
-            return vocabulary;
+            return counts;
         }
     }
 
-    private static class FolderSearchTask extends RecursiveTask<Map<String, AtomicInteger>> {
-        private String directory;
+    // every worker thread counts its files into a sketch of its own, they are merged once all files are counted, so no
+    // more than one budget per worker is in use however many files there are
+    private static class SketchCounting extends Counting<VocabularySketch> {
+        private final long budget;
+        private final ConcurrentMap<Thread, VocabularySketch> sketches = new ConcurrentHashMap<>();
 
-        public FolderSearchTask(String directory) {
-            this.directory = directory;
+        SketchCounting(long budget) {
+            this.budget = budget;
         }
+
         @Override
-        protected Map<String, AtomicInteger> compute() {
-            final Map<String, AtomicInteger> vocabulary = new HashMap<>();
-            final List<RecursiveTask<Map<String, AtomicInteger>>> forks = new LinkedList<>();
-            final Collection<File> files = (Collection<File>) FileUtils.listFiles(new File(directory), TrueFileFilter.TRUE, TrueFileFilter.TRUE);
-            for (File file : files) {
-                ProcessFileTask task = new ProcessFileTask(file);
-                forks.add(task);
-                task.fork();
-            }
-            for (RecursiveTask<Map<String, AtomicInteger>> task : forks) {
-                final Map<String, AtomicInteger> subResult = task.join();
-                for (Map.Entry<String, AtomicInteger> entry : subResult.entrySet()) {
-                    if (vocabulary.containsKey(entry.getKey())) {
-                        vocabulary.get(entry.getKey()).addAndGet(entry.getValue().intValue());
-                    } else {
-                        vocabulary.put(entry.getKey(), entry.getValue());
-                    }
+        public VocabularySketch create() {
+            final Thread thread = Thread.currentThread();
+            VocabularySketch sketch = sketches.get(thread);
+            if (sketch == null) {
+                sketch = new VocabularySketch(budget);
+                sketches.put(thread, sketch);
+            }
+            return sketch;
+        }
+
+        // the counts are already in the sketches of the workers
+        @Override
+        public VocabularySketch merge(VocabularySketch left, VocabularySketch right) {
+            return left;
+        }
+
+        VocabularySketch merged() {
+            VocabularySketch merged = null;
+            for (VocabularySketch sketch : sketches.values()) {
+                if (merged == null) {
+                    merged = sketch;
+                } else {
+                    merged.merge(sketch);
                 }
             }
-            return vocabulary;
+            return merged == null ? new VocabularySketch(budget) : merged;
+        }
+    }
+
+    // counts only the words of an earlier approximate vocabulary, every file starts from a copy without counts
+    private static class RecountCounting extends Counting<WordCounter> {
+        private final WordCounter words;
+
+        RecountCounting(WordCounter words) {
+            this.words = words;
+        }
+
+        @Override
+        public WordCounter create() {
+            return words.restrictedCopy();
+        }
+
+        @Override
+        public WordCounter merge(WordCounter left, WordCounter right) {
+            left.addAll(right);
+            return left;
         }
     }
 
-    private static void appendWordsFromFile(Parser parser, File file, Map<String, AtomicInteger> vocabulary) {
+    // counts the files of a range, halves are counted in parallel and merged on the way up
+    private static class CountFilesTask<T extends RuleTokenizer.TokenSink> extends RecursiveTask<T> {
+        private final Counting<T> counting;
+        private final List<File> files;
+        private final int from;
+        private final int to;
+
+        public CountFilesTask(Counting<T> counting, List<File> files, int from, int to) {
+            this.counting = counting;
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from == 0) {
+                return counting.create();
+            }
+            if (to - from == 1) {
+                return counting.count(files.get(from));
+            }
+            final int middle = (from + to) >>> 1;
+            final CountFilesTask<T> right = new CountFilesTask<>(counting, files, middle, to);
+            right.fork();
+            final T left = new CountFilesTask<>(counting, files, from, middle).compute();
+            return counting.merge(left, right.join());
+        }
+    }
+
+    private static void appendWordsFromFile(Parser parser, File file, RuleTokenizer.TokenSink vocabulary) {
         FileInputStream fileInputStream = null;
         InputStreamReader inputStreamReader = null;
         BufferedReader bufferedReader = null;
         try {
             fileInputStream = new FileInputStream(file);
-            inputStreamReader = new InputStreamReader(fileInputStream);
+            inputStreamReader = new InputStreamReader(Instrumentation.counting(fileInputStream));
             bufferedReader = new BufferedReader(inputStreamReader);
             String line = bufferedReader.readLine();
             while (line != null) {
+                Instrumentation.count(Instrumentation.Count.LINES, 1);
+                final long begin = Instrumentation.begin();
                 line = Sanitization.sanitizeLine(line);
+                Instrumentation.end(Instrumentation.Stage.SANITIZATION, begin);
                 final List<String> sentences = parser.extractSentences(line);
                 for (String sentence : sentences) {
                     appendWordsFromString(parser, sentence, vocabulary);
@@ -116,17 +417,10 @@ public class Step2CreateVocabulary {
         }
     }
 
-    private static void appendWordsFromString(Parser parser, String input, Map<String, AtomicInteger> vocabulary) {
+    private static void appendWordsFromString(Parser parser, String input, RuleTokenizer.TokenSink vocabulary) {
         final List<String> sentences = parser.extractSentences(input);
         for (String sentence : sentences) {
-            final List<String> tokens = parser.tokenize(sentence);
-            for (String word : tokens) {
-                if (vocabulary.containsKey(word)) {
-                    vocabulary.get(word).addAndGet(1);
-                } else {
-                    vocabulary.put(word, new AtomicInteger(1));
-                }
-            }
+            parser.tokenize(sentence, vocabulary);
         }
     }
 
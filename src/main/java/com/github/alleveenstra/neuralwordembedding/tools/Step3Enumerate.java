@@ -1,6 +1,11 @@
 package com.github.alleveenstra.neuralwordembedding.tools;
 
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Instrumentation;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Manifest;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
 import com.google.common.base.Splitter;
+import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
@@ -20,100 +25,131 @@ public class Step3Enumerate {
     private static final ForkJoinPool forkJoinPool = new ForkJoinPool();
 
     public static void main(String[] args) throws IOException {
-        Map<String, VocabularyItem> vocabulary = loadVocabulary("./data/vocab.txt");
-        final String directory = "./data/dataset";
-        forkJoinPool.invoke(new FolderSearchTask(directory, vocabulary));
-    }
-
-    private static Map<String, VocabularyItem> loadVocabulary(String filename) throws IOException {
-        Map<String, VocabularyItem> vocabulary = new HashMap<>();
-        File file = new File(filename);
-        FileInputStream inputStream = new FileInputStream(file);
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-        final BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-        String line = bufferedReader.readLine();
-        while (line != null) {
-            final String[] split = line.split("[\t ]+");
-            if (split.length >= 3) {
-                vocabulary.put(split[0], new VocabularyItem(Long.parseLong(split[1]), Long.parseLong(split[2])));
-            }
-            line = bufferedReader.readLine();
+        final Options options = new Options();
+        options.addOption("full", false, "Enumerate every file, instead of only the files that are new or changed since the last run");
+        options.addOption("help", false, "Shows this help");
+        final CommandLine cmd;
+        try {
+            cmd = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            log.error("Unable to parse command line arguments", e);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("Step3Enumerate", options);
+            return;
         }
-        IOUtils.closeQuietly(inputStream);
-        return vocabulary;
+        final String vocabularyFile = "./data/vocab.txt";
+        long start = System.currentTimeMillis();
+        final VocabularyIndex vocabulary = Vocabulary.index(vocabularyFile);
+        log.info("Opened a vocabulary of {} words in {} ms", vocabulary.size(), System.currentTimeMillis() - start);
+        final String directory = "./data/dataset";
+        // every file is enumerated again when the vocabulary changed
+        final Manifest manifest = Manifest.load(new File(Manifest.DIRECTORY, "step3.tsv"), "vocabulary=" + Manifest.digest(new File(vocabularyFile)));
+        forkJoinPool.invoke(new FolderSearchTask(directory, vocabulary, manifest, cmd.hasOption("full")));
+        Instrumentation.finish();
+        manifest.save();
     }
 
     private static class ProcessFileTask extends RecursiveTask<String> {
         private File file;
-        private Map<String, VocabularyItem> vocabulary;
+        private VocabularyIndex vocabulary;
+        private Manifest manifest;
 
-        public ProcessFileTask(File file, Map<String, VocabularyItem> vocabulary) {
+        public ProcessFileTask(File file, VocabularyIndex vocabulary, Manifest manifest) {
             this.file = file;
             this.vocabulary = vocabulary;
+            this.manifest = manifest;
         }
 
         @Override
         protected String compute() {
             long startTime = System.currentTimeMillis();
-            System.out.println("Processing " + file.getAbsolutePath());
+            log.debug("Processing {}", file.getAbsolutePath());
             FileWriter fileWriter = null;
             try {
                 final String writeFilename = file.getAbsolutePath().replace(".dataset", ".numbered").replace("/dataset/", "/numbered/");
                 final File writeFile = new File(writeFilename);
-                if (!writeFile.exists()) {
-                    writeFile.createNewFile();
-                } else {
-                    writeFile.delete();
-                    writeFile.createNewFile();
-                }
-                fileWriter = new FileWriter(writeFile, true);
+                fileWriter = new FileWriter(writeFile);
+                // words pruned from a vocabulary with a *RARE* entry are rare, not unknown
+                final int rare = vocabulary.id(Vocabulary.RARE);
+                final int missing = rare >= 0 ? rare : Vocabulary.UNKNOWN_ID;
                 for (String line : loadFile(file)) {
                     if (line.startsWith("<s>")) {
                         line = "<s>";
                     }
+                    final long begin = Instrumentation.begin();
+                    long tokens = 0;
                     for (String word : Splitter.on(" ").split(line)) {
-                        if (vocabulary.containsKey(word)) {
-                            fileWriter.write(vocabulary.get(word).index + "\n");
-                        } else {
-                            fileWriter.write("1\n"); // unknown
-                        }
+                        final int id = vocabulary.id(word);
+                        fileWriter.write((id >= 0 ? id : missing) + "\n");
                         if ("</s>".equals(word)) {
                             fileWriter.write("eeeoddd\n");
                         }
+                        tokens++;
                     }
+                    Instrumentation.end(Instrumentation.Stage.WRITE, begin);
+                    // a dataset holds one sentence per line
+                    Instrumentation.count(Instrumentation.Count.LINES, 1);
+                    Instrumentation.count(Instrumentation.Count.SENTENCES, 1);
+                    Instrumentation.count(Instrumentation.Count.TOKENS, tokens);
                 }
+                fileWriter.close();
+                manifest.record(file, writeFile);
             } catch(Exception e) {
                 log.error("Unable to create new file", e);
             } finally {
                 IOUtils.closeQuietly(fileWriter);
             }
+            Instrumentation.count(Instrumentation.Count.FILES, 1);
             long endTime = System.currentTimeMillis();
             long totalTime = endTime - startTime;
-            log.info("Ran task for {}", totalTime);
+            log.debug("Enumerated {} bytes of {} in {} ms", new Object[]{file.length(), file.getName(), totalTime});
             return "ready";
         }
     }
 
     private static class FolderSearchTask extends RecursiveTask<String> {
         private String directory;
-        private Map<String, VocabularyItem> vocabulary;
+        private VocabularyIndex vocabulary;
+        private Manifest manifest;
+        private boolean full;
 
-        public FolderSearchTask(String directory, Map<String, VocabularyItem> vocabulary) {
+        public FolderSearchTask(String directory, VocabularyIndex vocabulary, Manifest manifest, boolean full) {
             this.directory = directory;
             this.vocabulary = vocabulary;
+            this.manifest = manifest;
+            this.full = full;
         }
         @Override
         protected String compute() {
             final List<RecursiveTask<String>> forks = new LinkedList<>();
             final Collection<File> files = (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(".dataset"), TrueFileFilter.TRUE);
+            for (File output : manifest.retain(files)) {
+                log.info("Removing {}", output);
+                output.delete();
+            }
+            int unchanged = 0;
+            final List<File> changed = new ArrayList<>();
+            long bytes = 0;
             for (File file : files) {
-                ProcessFileTask task = new ProcessFileTask(file, vocabulary);
+                if (!full && manifest.isCurrent(file)) {
+                    unchanged++;
+                    continue;
+                }
+                changed.add(file);
+                bytes += file.length();
+            }
+            Instrumentation.start("Step3", bytes, forkJoinPool);
+            for (File file : changed) {
+                ProcessFileTask task = new ProcessFileTask(file, vocabulary, manifest);
                 forks.add(task);
                 task.fork();
             }
             for (RecursiveTask<String> task : forks) {
                 task.join();
             }
+            log.info("Enumerated {} files, {} were unchanged", forks.size(), unchanged);
             return "ready";
         }
     }
@@ -122,7 +158,7 @@ public class Step3Enumerate {
         FileInputStream fileInputStream = null;
         try {
             fileInputStream = new FileInputStream(file);
-            return IOUtils.readLines(fileInputStream);
+            return IOUtils.readLines(Instrumentation.counting(fileInputStream));
         } catch (FileNotFoundException e) {
             log.error("File not found", e);
         } catch (IOException e) {
@@ -133,13 +169,4 @@ public class Step3Enumerate {
         return null;
     }
 
-    static class VocabularyItem {
-        long index;
-        long occurrences;
-        VocabularyItem(long index, long occurrences) {
-            this.index = index;
-            this.occurrences = occurrences;
-        }
-    }
-
 }
@@ -1,30 +1,63 @@
 package com.github.alleveenstra.neuralwordembedding.tools;
 
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Activations;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.MatrixBackends;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Optimizer;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Optimizers;
 import com.github.alleveenstra.neuralwordembedding.tools.training.Model;
+import com.github.alleveenstra.neuralwordembedding.tools.training.ModelContainer;
+import com.github.alleveenstra.neuralwordembedding.tools.training.QuantizationReport;
+import com.github.alleveenstra.neuralwordembedding.tools.training.QuantizedEmbeddings;
+import com.github.alleveenstra.neuralwordembedding.tools.training.SentenceScorer;
 import com.github.alleveenstra.neuralwordembedding.tools.training.Training;
+import com.github.alleveenstra.neuralwordembedding.tools.training.TrainingMetrics;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import org.apache.commons.cli.*;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 
 public class Step4LearnWordEmbeddings {
     private static final Logger log = LoggerFactory.getLogger(Step4LearnWordEmbeddings.class);
 
+    private static final int SCORE_BLOCK_SIZE = 65536;
+    private static final int QUANTIZATION_REPORT_QUERIES = 200;
+
     public static void main(String[] args) {
         final Options options = new Options();
         options.addOption("d", "dataset", true, "The dataset directory containing '.dataset' files (required)");
         options.addOption("v", "vocabulary", true, "The vocabulary file (required)");
         options.addOption("c", "concurrency", true, "The number of processes");
         options.addOption("read", true, "The model file to read");
-        options.addOption("save", true, "The model file to save");
+        options.addOption("save", true, "The model file to save, files ending in " + ModelContainer.EXTENSION + " are written as sectioned containers");
         options.addOption("validate", true, "Validate on the .dataset files in this directory");
+        options.addOption("vectors", true, "word2vec vectors to initialize the embeddings of a new model with, binary when ending in .bin");
+        options.addOption("replay", true, "Directory with '.dataset' files the model was trained on before, a sample of it is replayed every epoch");
+        options.addOption(null, "replay-fraction", true, "Fraction of the replay windows to train on every epoch, default: 0.1");
+        options.addOption("i", "input", true, "File with one tokenized sentence per line to score");
+        options.addOption("quantized", true, "The quantized embeddings file to write or search");
+        options.addOption("subspaces", true, "Number of product quantization subspaces, 0 disables product quantization, default: 10");
+        options.addOption("rerank", false, "Re-rank quantized search results with the exact vectors of the read model");
+        options.addOption("pq", false, "Search on the product quantization codes instead of the int8 codes");
         options.addOption("epochs", true, "Number of epochs to run for, default: 1");
         options.addOption("s", "start", true, "Start epoch, default: 0");
         options.addOption("l", "learning-rate", true, "Learning rate for the neural network, default: 0.000001");
         options.addOption("m", "embedding-rate", true, "Learning rate for the word embeddings, default: 0.000320");
         options.addOption("r", "decrease-rate", true, "Rate to decrease learning rates, expression: E(t) = E(0) / (1 + r * t), default: 0");
+        options.addOption(null, "metrics-interval", true, "Seconds between the training metrics log lines, 0 disables the metrics, default: 60");
+        options.addOption(null, "backend", true, "Matrix products with native BLAS (jblas) or plain Java loops (java), default: jblas");
+        options.addOption(null, "activation", true, "Activation of the hidden units: tanh, tabulated, rational or hard, only chosen for a new model, a read model keeps the one it was trained with, default: tanh");
+        options.addOption(null, "optimizer", true, "Optimizer of the weights and the embeddings: sgd, adagrad or adam, the adaptive ones want much larger rates, around 0.001 for adam, default: sgd");
+        options.addOption(null, "embedding-decay", true, "L2 decay of the embeddings per window, applied lazily to the rows a batch touches, default: 0");
+        options.addOption(null, "subsample", true, "Discard frequent words like word2vec, a word with frequency f is kept with probability (sqrt(f / t) + 1) * t / f, 1e-3 to 1e-5 are common, default: 0 (disabled)");
+        options.addOption(null, "shuffle-buffer", true, "Megabytes of windows to shuffle the windows of all files through every epoch, 0 trains file by file, default: 0");
+        options.addOption(null, "seed", true, "Seed of the file and window order, the subsampling, the replay sample and the corrupted words, default: random");
         options.addOption("help", false, "Shows this help");
         final CommandLineParser parser = new GnuParser();
         try {
@@ -33,10 +66,12 @@ public class Step4LearnWordEmbeddings {
                 help(options);
                 return;
             }
-            int epochs = 1, startEpoch = 0;
+            int epochs = 1, startEpoch = 0, subspaces = 10, metricsInterval = 60, shuffleBuffer = 0;
+            Long seed = null;
             int concurrency = defaultConcurrency();
-            String readFileName = "no-such-file", saveFileName = null, dataSet = null, vocabulary = null, validate = null;
-            double eta = 0.000001, etaEmbedding = 0.000320, decreaseRate = 0.0;
+            String readFileName = "no-such-file", saveFileName = null, dataSet = null, vocabulary = null, validate = null, input = null, quantized = null, vectors = null, replay = null;
+            double eta = 0.000001, etaEmbedding = 0.000320, decreaseRate = 0.0, replayFraction = 0.1, embeddingDecay = 0.0, subsample = 0.0;
+            Optimizer optimizer = Optimizers.SGD;
             if (cmd.hasOption("epochs")) {
                 epochs = Integer.parseInt(cmd.getOptionValue("epochs"));
             }
@@ -55,12 +90,33 @@ public class Step4LearnWordEmbeddings {
             if (cmd.hasOption("validate")) {
                 validate = cmd.getOptionValue("validate");
             }
+            if (cmd.hasOption("replay")) {
+                replay = cmd.getOptionValue("replay");
+            }
+            if (cmd.hasOption("replay-fraction")) {
+                replayFraction = Double.parseDouble(cmd.getOptionValue("replay-fraction"));
+            }
+            if (cmd.hasOption("vectors")) {
+                vectors = cmd.getOptionValue("vectors");
+            }
+            if (cmd.hasOption("quantized")) {
+                quantized = cmd.getOptionValue("quantized");
+            }
+            if (cmd.hasOption("subspaces")) {
+                subspaces = Integer.parseInt(cmd.getOptionValue("subspaces"));
+            }
+            if (cmd.hasOption("input")) {
+                input = cmd.getOptionValue("input");
+            }
             if (cmd.hasOption("dataset")) {
                 dataSet = cmd.getOptionValue("dataset");
             }
             if (cmd.hasOption("vocabulary")) {
                 vocabulary = cmd.getOptionValue("vocabulary");
             }
+            if (cmd.hasOption("metrics-interval")) {
+                metricsInterval = Integer.parseInt(cmd.getOptionValue("metrics-interval"));
+            }
             if (cmd.hasOption("learning-rate")) {
                 eta = Double.parseDouble(cmd.getOptionValue("learning-rate"));
             }
@@ -70,6 +126,27 @@ public class Step4LearnWordEmbeddings {
             if (cmd.hasOption("decrease-rate")) {
                 decreaseRate = Double.parseDouble(cmd.getOptionValue("decrease-rate"));
             }
+            if (cmd.hasOption("backend")) {
+                MatrixBackends.setDefault(MatrixBackends.byName(cmd.getOptionValue("backend")));
+            }
+            if (cmd.hasOption("activation")) {
+                Activations.setDefault(Activations.byName(cmd.getOptionValue("activation")));
+            }
+            if (cmd.hasOption("optimizer")) {
+                optimizer = Optimizers.byName(cmd.getOptionValue("optimizer"));
+            }
+            if (cmd.hasOption("embedding-decay")) {
+                embeddingDecay = Double.parseDouble(cmd.getOptionValue("embedding-decay"));
+            }
+            if (cmd.hasOption("subsample")) {
+                subsample = Double.parseDouble(cmd.getOptionValue("subsample"));
+            }
+            if (cmd.hasOption("shuffle-buffer")) {
+                shuffleBuffer = Integer.parseInt(cmd.getOptionValue("shuffle-buffer"));
+            }
+            if (cmd.hasOption("seed")) {
+                seed = Long.parseLong(cmd.getOptionValue("seed"));
+            }
             final String action = cmd.getArgs()[0];
             switch (action) {
                 case "learn":
@@ -77,7 +154,11 @@ public class Step4LearnWordEmbeddings {
                         log.error("The dataset, vocabulary and save parameters are mandatory for learning.");
                         return;
                     }
-                    learn(epochs, startEpoch, readFileName, saveFileName, validate, dataSet, vocabulary, eta, etaEmbedding, decreaseRate, concurrency);
+                    if (vectors != null && new File(readFileName).exists()) {
+                        log.error("The vectors parameter only initializes a new model, {} holds a trained one.", readFileName);
+                        return;
+                    }
+                    learn(epochs, startEpoch, readFileName, saveFileName, validate, dataSet, vocabulary, vectors, replay, replayFraction, eta, etaEmbedding, decreaseRate, optimizer, embeddingDecay, subsample, shuffleBuffer, seed, concurrency, metricsInterval);
                     log.info("Finished learning...");
                     break;
                 case "search":
@@ -85,7 +166,32 @@ public class Step4LearnWordEmbeddings {
                         log.error("Please specify a search term");
                         return;
                     }
-                    search(cmd.getArgs()[1], readFileName);
+                    if (quantized != null) {
+                        searchQuantized(cmd.getArgs()[1], quantized, cmd.hasOption("read") ? readFileName : null, cmd.hasOption("rerank"), cmd.hasOption("pq"));
+                    } else {
+                        search(cmd.getArgs()[1], readFileName);
+                    }
+                    break;
+                case "convert":
+                    if (!cmd.hasOption("read") || saveFileName == null) {
+                        log.error("The read and save parameters are required for conversion.");
+                        return;
+                    }
+                    convert(readFileName, saveFileName);
+                    break;
+                case "export":
+                    if (!cmd.hasOption("read") || saveFileName == null) {
+                        log.error("The read and save parameters are required for exporting.");
+                        return;
+                    }
+                    export(readFileName, saveFileName);
+                    break;
+                case "quantize":
+                    if (quantized == null || !cmd.hasOption("read")) {
+                        log.error("The read and quantized parameters are required for quantization.");
+                        return;
+                    }
+                    quantize(readFileName, quantized, subspaces);
                     break;
                 case "validate":
                     if (dataSet == null || readFileName == null || vocabulary == null) {
@@ -94,6 +200,13 @@ public class Step4LearnWordEmbeddings {
                     }
                     validate(dataSet, readFileName, vocabulary);
                     break;
+                case "score":
+                    if (input == null || !cmd.hasOption("read")) {
+                        log.error("The input and read parameters are required for scoring.");
+                        return;
+                    }
+                    score(input, readFileName, concurrency);
+                    break;
                 default:
                     log.error("Unknown action \"{}\"", action);
                     help(options);
@@ -111,7 +224,7 @@ public class Step4LearnWordEmbeddings {
     }
 
     private static void search(String term, String readFileName) {
-        Model model = Model.load(new File(readFileName));
+        Model model = Model.open(new File(readFileName), false);
         model.findCloseWords(term, 10);
         final List<String> closeWords = model.findCloseWords(term, 10);
         for (String closeWord : closeWords) {
@@ -119,15 +232,153 @@ public class Step4LearnWordEmbeddings {
         }
     }
 
-    private static void learn(int epochs, int startEpoch, String readFileName, String saveFileName, String validate, String dataset, String vocabulary, double eta0, double etaEmbedding0, double decreaseRate, int concurrency) {
+    private static void convert(String readFileName, String saveFileName) {
+        final Model model = Model.load(new File(readFileName));
+        if (model == null) {
+            log.error("Unable to load model {}", readFileName);
+            return;
+        }
+        model.save(saveFileName);
+    }
+
+    private static void export(String readFileName, String saveFileName) {
+        final Model model = Model.open(new File(readFileName), false);
+        if (model == null) {
+            log.error("Unable to load model {}", readFileName);
+            return;
+        }
+        try {
+            model.exportWord2Vec(saveFileName);
+        } catch (IOException e) {
+            log.error("Unable to export word2vec vectors", e);
+        }
+    }
+
+    private static void quantize(String readFileName, String quantizedFileName, int subspaces) {
+        final Model model = Model.load(new File(readFileName));
+        if (model == null) {
+            log.error("Unable to load model {}", readFileName);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        final QuantizedEmbeddings quantized = model.quantize(subspaces);
+        long stop = System.currentTimeMillis();
+        log.info(String.format("Quantization took %.2f sec.", (stop - start) / 1000.0));
+        quantized.save(quantizedFileName);
+        new QuantizationReport(model, quantized).print(QUANTIZATION_REPORT_QUERIES, 10);
+    }
+
+    private static void searchQuantized(String term, String quantizedFileName, String readFileName, boolean rerank, boolean product) {
+        final QuantizedEmbeddings quantized = QuantizedEmbeddings.load(new File(quantizedFileName));
+        if (quantized == null) {
+            return;
+        }
+        if (product && !quantized.hasProductCodes()) {
+            log.error("{} has no product quantization codes, quantize with -subspaces above 0 to search with -pq", quantizedFileName);
+            return;
+        }
+        final int count = rerank ? 40 : 10;
+        List<String> closeWords = product ? quantized.findCloseWordsProduct(term, count) : quantized.findCloseWords(term, count);
+        if (rerank) {
+            if (readFileName == null) {
+                log.error("Re-ranking requires the read parameter");
+                return;
+            }
+            closeWords = Model.open(new File(readFileName), false).rerank(term, closeWords, 10);
+        }
+        for (String closeWord : closeWords) {
+            System.out.println(closeWord);
+        }
+    }
+
+    private static void score(String inputFileName, String readFileName, int concurrency) {
+        final Model model = Model.open(new File(readFileName), true);
+        if (model == null) {
+            log.error("Unable to load model {}", readFileName);
+            return;
+        }
+        final SentenceScorer scorer = new SentenceScorer(model);
+        final ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+        BufferedReader reader = null;
+        long start = System.currentTimeMillis(), sentences = 0;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFileName), "UTF-8"));
+            final List<String> block = new ArrayList<>();
+            String line = reader.readLine();
+            while (line != null) {
+                block.add(line);
+                if (block.size() == SCORE_BLOCK_SIZE) {
+                    scoreBlock(scorer, block, executorService, concurrency);
+                    sentences += block.size();
+                    block.clear();
+                }
+                line = reader.readLine();
+            }
+            scoreBlock(scorer, block, executorService, concurrency);
+            sentences += block.size();
+        } catch (IOException e) {
+            log.error("Unable to read input file", e);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Scoring failed", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+            executorService.shutdown();
+        }
+        long stop = System.currentTimeMillis();
+        log.info(String.format("Scored %d sentences in %.2f sec.", sentences, (stop - start) / 1000.0));
+    }
+
+    private static void scoreBlock(final SentenceScorer scorer, final List<String> block, ExecutorService executorService, int concurrency) throws InterruptedException, ExecutionException {
+        if (block.isEmpty()) {
+            return;
+        }
+        final int subSetSize = (int) Math.ceil((double) block.size() / (double) concurrency);
+        final List<Future<double[]>> futures = new ArrayList<>();
+        for (final List<String> subSet : Lists.partition(block, subSetSize)) {
+            futures.add(executorService.submit(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    final List<List<String>> sentences = new ArrayList<>();
+                    for (String line : subSet) {
+                        sentences.add(scorer.filter(Splitter.on(" ").omitEmptyStrings().split(line)));
+                    }
+                    return scorer.scoreSentences(sentences);
+                }
+            }));
+        }
+        int index = 0;
+        for (Future<double[]> future : futures) {
+            for (double score : future.get()) {
+                System.out.println(String.format("%.6f\t%s", score, block.get(index++)));
+            }
+        }
+    }
+
+    private static void learn(int epochs, int startEpoch, String readFileName, String saveFileName, String validate, String dataset, String vocabulary, String vectors, String replay, double replayFraction, double eta0, double etaEmbedding0, double decreaseRate, Optimizer optimizer, double embeddingDecay, double subsample, int shuffleBuffer, Long seed, int concurrency, int metricsInterval) {
         long start, stop;
         final Training training = new Training(vocabulary, dataset, readFileName, concurrency);
+        training.setOptimizer(optimizer, embeddingDecay);
+        training.setSubsampling(subsample);
+        if (seed != null) {
+            training.setSeed(seed);
+        }
+        training.setShuffleBuffer(shuffleBuffer);
+        if (vectors != null) {
+            training.initializeFromWord2Vec(vectors);
+        }
+        if (replay != null) {
+            training.setReplay(replay, replayFraction);
+        }
+        final TrainingMetrics metrics = metricsInterval > 0 ? training.startMetrics(metricsInterval) : null;
         start = System.currentTimeMillis();
         double eta, etaEmbedding;
         for (int i = startEpoch; i < startEpoch + epochs; i++) {
             eta = eta0 / (1.0 + decreaseRate * i);
             etaEmbedding = etaEmbedding0 / (1.0 + decreaseRate * i);
             log.info(String.format("*** epoch %d eta %.8f eta embedding %.8f concurrency %d", i, eta, etaEmbedding, concurrency));
+            if (metrics != null) {
+                metrics.setEpoch(i);
+            }
             training.trainOneEpoch(eta, etaEmbedding);
             if (validate != null) {
                 log.info(String.format("Validation %.08f", training.validate(validate)));
@@ -151,6 +402,6 @@ public class Step4LearnWordEmbeddings {
 
     private static void help(Options options) {
         HelpFormatter formatter = new HelpFormatter();
-        formatter.printHelp("Step4LearnWordEmbeddings [learn | validate | search *term*]", options);
+        formatter.printHelp("Step4LearnWordEmbeddings [learn | validate | score | quantize | convert | export | search *term*]", options);
     }
 }
@@ -0,0 +1,128 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import com.github.alleveenstra.neuralwordembedding.tools.util.RuleTokenizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+// Compares the rule-based tokenizer with OpenNLP on the sentences of the raw files: token agreement is the longest
+// common subsequence of both token lists over the OpenNLP token count.
+public class TokenizerAgreement {
+    private static final int DIFFERENCES = 25;
+
+    public static void main(String[] args) throws IOException {
+        final String directory = args.length > 0 ? args[0] : "./data/raw";
+        final Parser openNlp = new Parser(false);
+        final Parser rules = new Parser(true);
+
+        final List<String> sentences = new ArrayList<>();
+        for (File file : (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(".txt"), TrueFileFilter.TRUE)) {
+            for (String line : (List<String>) FileUtils.readLines(file)) {
+                if (!line.isEmpty()) {
+                    sentences.addAll(openNlp.extractSentences(line));
+                }
+            }
+        }
+
+        // one warm-up round each, then the timed round, the token lists for the comparison are collected afterwards
+        countTokens(openNlp, sentences);
+        countTokens(rules, sentences);
+        final long openNlpStart = System.nanoTime();
+        countTokens(openNlp, sentences);
+        final long openNlpTime = System.nanoTime() - openNlpStart;
+        final long rulesStart = System.nanoTime();
+        countTokens(rules, sentences);
+        final long rulesTime = System.nanoTime() - rulesStart;
+        final List<List<String>> expected = tokenize(openNlp, sentences);
+        final List<List<String>> actual = tokenize(rules, sentences);
+
+        long expectedTokens = 0, actualTokens = 0, common = 0;
+        int identical = 0;
+        final Map<String, Integer> differences = new HashMap<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            final List<String> a = expected.get(i), b = actual.get(i);
+            expectedTokens += a.size();
+            actualTokens += b.size();
+            if (a.equals(b)) {
+                identical++;
+                common += a.size();
+            } else {
+                common += commonSubsequence(a, b);
+                final String difference = difference(a, b);
+                final Integer count = differences.get(difference);
+                differences.put(difference, count == null ? 1 : count + 1);
+            }
+        }
+
+        System.out.println(String.format("sentences          %d", sentences.size()));
+        System.out.println(String.format("tokens opennlp     %d", expectedTokens));
+        System.out.println(String.format("tokens rules       %d", actualTokens));
+        System.out.println(String.format("identical          %.4f", (double) identical / sentences.size()));
+        System.out.println(String.format("token agreement    %.4f", (double) common / expectedTokens));
+        System.out.println(String.format("opennlp            %.1f ms", openNlpTime / 1e6));
+        System.out.println(String.format("rules              %.1f ms (%.1fx)", rulesTime / 1e6, (double) openNlpTime / rulesTime));
+        System.out.println("most frequent differences, opennlp => rules:");
+        final List<Map.Entry<String, Integer>> sorted = new ArrayList<>(differences.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        for (Map.Entry<String, Integer> entry : sorted.subList(0, Math.min(DIFFERENCES, sorted.size()))) {
+            System.out.println(String.format("%8d  %s", entry.getValue(), entry.getKey()));
+        }
+    }
+
+    private static List<List<String>> tokenize(Parser parser, List<String> sentences) {
+        final List<List<String>> result = new ArrayList<>(sentences.size());
+        for (String sentence : sentences) {
+            result.add(parser.tokenize(sentence));
+        }
+        return result;
+    }
+
+    // both timed rounds go through the sink, the way Step1 and Preprocess use either tokenizer
+    private static long countTokens(Parser parser, List<String> sentences) {
+        final long[] count = new long[1];
+        final RuleTokenizer.TokenSink sink = new RuleTokenizer.TokenSink() {
+            @Override
+            public void token(char[] buffer, int offset, int length) {
+                count[0]++;
+            }
+        };
+        for (String sentence : sentences) {
+            parser.tokenize(sentence, sink);
+        }
+        return count[0];
+    }
+
+    private static int commonSubsequence(List<String> a, List<String> b) {
+        final int[][] table = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i++) {
+            for (int j = 1; j <= b.size(); j++) {
+                table[i][j] = a.get(i - 1).equals(b.get(j - 1)) ? table[i - 1][j - 1] + 1 : Math.max(table[i - 1][j], table[i][j - 1]);
+            }
+        }
+        return table[a.size()][b.size()];
+    }
+
+    // the tokens between the first and the last position where the lists differ
+    private static String difference(List<String> a, List<String> b) {
+        int start = 0;
+        while (start < a.size() && start < b.size() && a.get(start).equals(b.get(start))) {
+            start++;
+        }
+        int endA = a.size(), endB = b.size();
+        while (endA > start && endB > start && a.get(endA - 1).equals(b.get(endB - 1))) {
+            endA--;
+            endB--;
+        }
+        return a.subList(start, endA) + " => " + b.subList(start, endB);
+    }
+}
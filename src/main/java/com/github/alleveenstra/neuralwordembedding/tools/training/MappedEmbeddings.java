@@ -0,0 +1,145 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import org.jblas.DoubleMatrix;
+
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+// Read-only view on the embeddings section of a model container. Every get copies the row out of the mapping into a
+// new matrix, which the caller owns and may change; a loop over many rows can copy into one matrix of its own with
+// get(word, into) instead.
+public class MappedEmbeddings extends AbstractMap<String, DoubleMatrix> {
+    private final VocabularyIndex index;
+    private final int dimension;
+    private final DoubleBuffer[] buffers;
+    private final int rowsPerChunk;
+
+    // the ids of the index are the rows
+    MappedEmbeddings(VocabularyIndex index, int dimension, DoubleBuffer[] buffers, int rowsPerChunk) {
+        this.index = index;
+        this.dimension = dimension;
+        this.buffers = buffers;
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && index.contains((String) key);
+    }
+
+    @Override
+    public DoubleMatrix get(Object key) {
+        final int id = key instanceof String ? index.id((String) key) : -1;
+        return id < 0 ? null : row(id);
+    }
+
+    // copies the row of the word into a 1 x dimension matrix and returns it, null when the word has no row
+    public DoubleMatrix get(String word, DoubleMatrix into) {
+        final int id = index.id(word);
+        return id < 0 ? null : row(id, into);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public VocabularyIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int id = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < index.size();
+                    }
+
+                    @Override
+                    public String next() {
+                        if (id >= index.size()) {
+                            throw new NoSuchElementException();
+                        }
+                        return index.word(id++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, DoubleMatrix>> entrySet() {
+        return new AbstractSet<Entry<String, DoubleMatrix>>() {
+            @Override
+            public Iterator<Entry<String, DoubleMatrix>> iterator() {
+                return new Iterator<Entry<String, DoubleMatrix>>() {
+                    private int id = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return id < index.size();
+                    }
+
+                    @Override
+                    public Entry<String, DoubleMatrix> next() {
+                        if (id >= index.size()) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, DoubleMatrix> entry = new SimpleImmutableEntry<>(index.word(id), row(id));
+                        id++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    public DoubleMatrix row(int id) {
+        return row(id, new DoubleMatrix(1, dimension));
+    }
+
+    public DoubleMatrix row(int id, DoubleMatrix into) {
+        final DoubleBuffer buffer = buffers[id / rowsPerChunk];
+        final int offset = (id % rowsPerChunk) * dimension;
+        for (int k = 0; k < dimension; k++) {
+            into.data[k] = buffer.get(offset + k);
+        }
+        return into;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.alleveenstra.neuralwordembedding.tools.training;
 
 import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.OptimizerState;
 import org.apache.commons.io.IOUtils;
 import org.jblas.DoubleMatrix;
 import org.slf4j.Logger;
@@ -16,6 +17,8 @@ public class Model implements Serializable {
 
     protected final Map<String, DoubleMatrix> embeddings;
     protected final FeedForwardNetwork network;
+    // only kept by model containers, a serialized model loses it
+    protected transient OptimizerState optimizerState;
 
     protected Model(Map<String, DoubleMatrix> embeddings, FeedForwardNetwork network) {
         this.embeddings = embeddings;
@@ -23,6 +26,18 @@ public class Model implements Serializable {
     }
 
     public static Model load(File file) {
+        if (ModelContainer.isContainer(file)) {
+            try {
+                final ModelContainer container = ModelContainer.open(file);
+                final Map<String, DoubleMatrix> embeddings = new HashMap<>(container.mapEmbeddings());
+                final Model model = new Model(embeddings, container.readNetwork(true));
+                model.optimizerState = container.readOptimizerState(model.network);
+                return model;
+            } catch (IOException e) {
+                log.error("Unable to read model container", e);
+                return null;
+            }
+        }
         FileInputStream fileInputStream = null;
         ObjectInputStream objectInputStream = null;
         try {
@@ -41,8 +56,33 @@ public class Model implements Serializable {
         return null;
     }
 
+    // maps the embeddings of a model container instead of reading them, the network is only read when asked for
+    public static Model open(File file, boolean withNetwork) {
+        if (!ModelContainer.isContainer(file)) {
+            return load(file);
+        }
+        try {
+            final ModelContainer container = ModelContainer.open(file);
+            return new Model(container.mapEmbeddings(), withNetwork ? container.readNetwork(false) : null);
+        } catch (IOException e) {
+            log.error("Unable to read model container", e);
+        }
+        return null;
+    }
+
     public void save(String fileName) {
         log.info("Model.save({})", fileName);
+        if (fileName.endsWith(ModelContainer.EXTENSION)) {
+            try {
+                ModelContainer.write(embeddings, network, optimizerState, new File(fileName));
+            } catch (IOException e) {
+                log.error("Unable to save model container", e);
+            }
+            return;
+        }
+        if (optimizerState != null) {
+            log.warn("The {} state is only kept by {} model containers, {} is saved without it", new Object[]{optimizerState.getOptimizer().getName(), ModelContainer.EXTENSION, fileName});
+        }
         final File embeddingsFile = new File(fileName);
         FileOutputStream fileOutputStream = null;
         ObjectOutputStream objectOutputStream = null;
@@ -66,6 +106,18 @@ public class Model implements Serializable {
         }
     }
 
+    public void exportWord2Vec(String fileName) throws IOException {
+        Word2Vec.export(embeddings, fileName);
+    }
+
+    public QuantizedEmbeddings quantize(int subspaces) {
+        return QuantizedEmbeddings.quantize(embeddings, subspaces);
+    }
+
+    public List<String> rerank(String query, List<String> candidates, int count) {
+        return QuantizedEmbeddings.rerank(embeddings, query, candidates, count);
+    }
+
     private class WordDistance implements Comparable<WordDistance> {
         String word;
         double distance;
@@ -90,10 +142,20 @@ public class Model implements Serializable {
         }
         List<WordDistance> distances = new ArrayList<>();
         final DoubleMatrix queryVector = embeddings.get(query);
-        for (Map.Entry<String, DoubleMatrix> entry : embeddings.entrySet()) {
-            final DoubleMatrix row = entry.getValue();
-            final double dist = row.squaredDistance(queryVector);
-            distances.add(new WordDistance(entry.getKey(), dist));
+        if (embeddings instanceof MappedEmbeddings) {
+            // every mapped row is copied into the same matrix instead of a new one per word
+            final MappedEmbeddings mapped = (MappedEmbeddings) embeddings;
+            final DoubleMatrix row = new DoubleMatrix(1, mapped.getDimension());
+            for (int id = 0; id < mapped.size(); id++) {
+                final double dist = mapped.row(id, row).squaredDistance(queryVector);
+                distances.add(new WordDistance(mapped.getIndex().word(id), dist));
+            }
+        } else {
+            for (Map.Entry<String, DoubleMatrix> entry : embeddings.entrySet()) {
+                final DoubleMatrix row = entry.getValue();
+                final double dist = row.squaredDistance(queryVector);
+                distances.add(new WordDistance(entry.getKey(), dist));
+            }
         }
         Collections.sort(distances);
         final List<WordDistance> list = distances.subList(0, count);
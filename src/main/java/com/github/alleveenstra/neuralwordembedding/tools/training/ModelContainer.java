@@ -0,0 +1,271 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Activations;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.OptimizerState;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import com.google.common.io.Closeables;
+import org.apache.commons.io.IOUtils;
+import org.jblas.DoubleMatrix;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// Model file with a table of contents at the end, so every section can be read without touching the others:
+// magic, version, sections..., table of contents, offset of the table of contents
+public class ModelContainer {
+    public static final String EXTENSION = ".nwm";
+
+    static final int MAGIC = 0x4e57454d; // NWEM
+    private static final int VERSION = 1;
+
+    public static final String VOCABULARY = "vocabulary";
+    public static final String VOCABULARY_INDEX = "vocabulary-index";
+    public static final String EMBEDDINGS = "embeddings";
+    public static final String NETWORK = "network";
+    public static final String OPTIMIZER = "optimizer";
+    public static final String OPTIMIZER_STATE = "optimizer-state";
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private final File file;
+    private final Map<String, long[]> sections;
+
+    private ModelContainer(File file, Map<String, long[]> sections) {
+        this.file = file;
+        this.sections = sections;
+    }
+
+    public static boolean isContainer(File file) {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new FileInputStream(file));
+            return file.length() > 4 && input.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    public static ModelContainer open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            if (randomAccessFile.readInt() != MAGIC) {
+                throw new IOException(file + " is not a model container");
+            }
+            if (randomAccessFile.readInt() != VERSION) {
+                throw new IOException(file + " has an unsupported version");
+            }
+            randomAccessFile.seek(randomAccessFile.length() - 8);
+            randomAccessFile.seek(randomAccessFile.readLong());
+            final Map<String, long[]> sections = new HashMap<>();
+            final int count = randomAccessFile.readInt();
+            for (int section = 0; section < count; section++) {
+                final String name = randomAccessFile.readUTF();
+                final long offset = randomAccessFile.readLong();
+                final long length = randomAccessFile.readLong();
+                sections.put(name, new long[]{offset, length});
+            }
+            return new ModelContainer(file, sections);
+        } finally {
+            Closeables.closeQuietly(randomAccessFile);
+        }
+    }
+
+    public boolean hasSection(String name) {
+        return sections.containsKey(name);
+    }
+
+    // Embedding rows are memory mapped and only read when they are asked for, the words are looked up in the mapped
+    // vocabulary index. Containers written before the index existed get one built from their vocabulary section.
+    public MappedEmbeddings mapEmbeddings() throws IOException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            final FileChannel channel = randomAccessFile.getChannel();
+            final VocabularyIndex index;
+            if (hasSection(VOCABULARY_INDEX)) {
+                final long[] section = sections.get(VOCABULARY_INDEX);
+                index = VocabularyIndex.map(channel, section[0], section[1]);
+            } else {
+                index = buildIndex(readWords());
+            }
+            final long[] section = sections.get(EMBEDDINGS);
+            final int dimension = index.size() == 0 ? 0 : (int) (section[1] / 8 / index.size());
+            final int rowBytes = dimension * 8;
+            final int rowsPerChunk = (int) Math.max(1, MAX_CHUNK_SIZE / Math.max(8, rowBytes));
+            final int chunks = (index.size() + rowsPerChunk - 1) / rowsPerChunk;
+            final DoubleBuffer[] buffers = new DoubleBuffer[chunks];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                final long rows = Math.min(rowsPerChunk, index.size() - (long) chunk * rowsPerChunk);
+                final long offset = section[0] + (long) chunk * rowsPerChunk * rowBytes;
+                buffers[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, offset, rows * rowBytes).asDoubleBuffer();
+            }
+            return new MappedEmbeddings(index, dimension, buffers, rowsPerChunk);
+        } finally {
+            Closeables.closeQuietly(randomAccessFile);
+        }
+    }
+
+    private String[] readWords() throws IOException {
+        final DataInputStream input = section(VOCABULARY);
+        try {
+            final String[] words = new String[input.readInt()];
+            input.readInt();
+            for (int id = 0; id < words.length; id++) {
+                words[id] = input.readUTF();
+            }
+            return words;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    // the row of a word is its id
+    private static VocabularyIndex buildIndex(String[] words) {
+        final int[] ids = new int[words.length];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        return VocabularyIndex.build(Arrays.asList(words), ids, new long[words.length], null);
+    }
+
+    // The activation follows the parameters in the network section, containers written before it was stored have none
+    // and were trained with tanh. The section is read at once to know where it ends.
+    public FeedForwardNetwork readNetwork(boolean withOptimizerState) throws IOException {
+        DataInputStream input = section(NETWORK);
+        final byte[] bytes = new byte[(int) sections.get(NETWORK)[1]];
+        try {
+            input.readFully(bytes);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        final DataInputStream networkInput = new DataInputStream(new ByteArrayInputStream(bytes));
+        final FeedForwardNetwork network = FeedForwardNetwork.readParameters(networkInput);
+        network.setActivation(networkInput.available() > 0 ? Activations.byName(networkInput.readUTF()) : Activations.TANH);
+        if (withOptimizerState && hasSection(OPTIMIZER)) {
+            input = section(OPTIMIZER);
+            try {
+                network.readOptimizerState(input);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+        return network;
+    }
+
+    // the state of the adaptive optimizer, null when the model was trained without one
+    public OptimizerState readOptimizerState(FeedForwardNetwork network) throws IOException {
+        if (!hasSection(OPTIMIZER_STATE)) {
+            return null;
+        }
+        final DataInputStream input = section(OPTIMIZER_STATE);
+        try {
+            return OptimizerState.read(input, network);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    public static void write(Map<String, DoubleMatrix> embeddings, FeedForwardNetwork network, File file) throws IOException {
+        write(embeddings, network, null, file);
+    }
+
+    public static void write(Map<String, DoubleMatrix> embeddings, FeedForwardNetwork network, OptimizerState optimizerState, File file) throws IOException {
+        final FileOutputStream fileOutputStream = new FileOutputStream(file);
+        final FileChannel channel = fileOutputStream.getChannel();
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutputStream, WRITE_BUFFER_SIZE));
+        final Map<String, long[]> sections = new LinkedHashMap<>();
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            final String[] words = embeddings.keySet().toArray(new String[embeddings.size()]);
+            final int dimension = words.length == 0 ? 0 : embeddings.get(words[0]).length;
+
+            long start = position(output, channel);
+            output.writeInt(words.length);
+            output.writeInt(dimension);
+            for (String word : words) {
+                output.writeUTF(word);
+            }
+            sections.put(VOCABULARY, new long[]{start, position(output, channel) - start});
+
+            start = position(output, channel);
+            buildIndex(words).write(output);
+            sections.put(VOCABULARY_INDEX, new long[]{start, position(output, channel) - start});
+
+            start = position(output, channel);
+            final ByteBuffer buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, dimension * 8));
+            final DoubleBuffer doubles = buffer.asDoubleBuffer();
+            for (String word : words) {
+                if (doubles.remaining() < dimension) {
+                    flush(buffer, doubles, channel);
+                }
+                doubles.put(embeddings.get(word).data, 0, dimension);
+            }
+            flush(buffer, doubles, channel);
+            sections.put(EMBEDDINGS, new long[]{start, position(output, channel) - start});
+
+            if (network != null) {
+                start = position(output, channel);
+                network.writeParameters(output);
+                output.writeUTF(network.getActivation().getName());
+                sections.put(NETWORK, new long[]{start, position(output, channel) - start});
+
+                start = position(output, channel);
+                network.writeOptimizerState(output);
+                sections.put(OPTIMIZER, new long[]{start, position(output, channel) - start});
+
+                if (optimizerState != null) {
+                    start = position(output, channel);
+                    optimizerState.write(output);
+                    sections.put(OPTIMIZER_STATE, new long[]{start, position(output, channel) - start});
+                }
+            }
+
+            final long tableOfContents = position(output, channel);
+            output.writeInt(sections.size());
+            for (Map.Entry<String, long[]> entry : sections.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeLong(entry.getValue()[0]);
+                output.writeLong(entry.getValue()[1]);
+            }
+            output.writeLong(tableOfContents);
+            output.flush();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private DataInputStream section(String name) throws IOException {
+        final long[] section = sections.get(name);
+        if (section == null) {
+            throw new IOException(file + " has no " + name + " section");
+        }
+        final FileInputStream fileInputStream = new FileInputStream(file);
+        fileInputStream.getChannel().position(section[0]);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(fileInputStream.getChannel()), WRITE_BUFFER_SIZE));
+    }
+
+    private static long position(DataOutputStream output, FileChannel channel) throws IOException {
+        output.flush();
+        return channel.position();
+    }
+
+    private static void flush(ByteBuffer buffer, DoubleBuffer doubles, FileChannel channel) throws IOException {
+        buffer.position(0);
+        buffer.limit(doubles.position() * 8);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        doubles.clear();
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import org.jblas.DoubleMatrix;
+
+import java.util.*;
+
+public class QuantizationReport {
+    private static final int RERANK_FACTOR = 4;
+
+    private final Model model;
+    private final Map<String, DoubleMatrix> embeddings;
+    private final QuantizedEmbeddings quantized;
+
+    public QuantizationReport(Model model, QuantizedEmbeddings quantized) {
+        this.model = model;
+        this.embeddings = model.embeddings;
+        this.quantized = quantized;
+    }
+
+    public void print(int queries, int count) {
+        final List<String> words = new ArrayList<>(embeddings.keySet());
+        Collections.shuffle(words, new Random(queries));
+        final List<String> sample = words.subList(0, Math.min(queries, words.size()));
+        final int dimension = embeddings.get(sample.get(0)).length;
+
+        // DoubleMatrix payload only, the object and map overhead comes on top of this
+        final long fullBytes = 8L * dimension * embeddings.size();
+        System.out.println(String.format("%-16s %12s %10s %10s", "method", "bytes", "ms/query", "recall@" + count));
+        final Map<String, List<String>> truth = new HashMap<>();
+        long start = System.nanoTime();
+        for (String query : sample) {
+            truth.put(query, model.findCloseWords(query, count));
+        }
+        print("double", fullBytes, System.nanoTime() - start, sample.size(), 1.0);
+
+        print("int8", quantized.int8Bytes(), sample, truth, count, false, false);
+        print("int8+rerank", quantized.int8Bytes() + fullBytes, sample, truth, count, false, true);
+        if (quantized.hasProductCodes()) {
+            print("pq", quantized.productBytes(), sample, truth, count, true, false);
+            print("pq+rerank", quantized.productBytes() + fullBytes, sample, truth, count, true, true);
+        }
+    }
+
+    private void print(String method, long bytes, List<String> sample, Map<String, List<String>> truth, int count, boolean product, boolean rerank) {
+        final int fetch = rerank ? count * RERANK_FACTOR : count;
+        double recall = 0.0;
+        final long start = System.nanoTime();
+        for (String query : sample) {
+            List<String> result = product ? quantized.findCloseWordsProduct(query, fetch) : quantized.findCloseWords(query, fetch);
+            if (rerank) {
+                result = QuantizedEmbeddings.rerank(embeddings, query, result, count);
+            }
+            final Set<String> found = new HashSet<>(result);
+            found.retainAll(truth.get(query));
+            recall += (double) found.size() / truth.get(query).size();
+        }
+        print(method, bytes, System.nanoTime() - start, sample.size(), recall / sample.size());
+    }
+
+    private static void print(String method, long bytes, long nanos, int queries, double recall) {
+        System.out.println(String.format("%-16s %12d %10.3f %10.3f", method, bytes, nanos / 1e6 / queries, recall));
+    }
+}
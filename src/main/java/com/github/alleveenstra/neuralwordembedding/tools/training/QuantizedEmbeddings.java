@@ -0,0 +1,406 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import org.apache.commons.io.IOUtils;
+import org.jblas.DoubleMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+public class QuantizedEmbeddings {
+    private static final Logger log = LoggerFactory.getLogger(QuantizedEmbeddings.class);
+
+    private static final int MAGIC = 0x4e574551; // NWEQ
+    private static final int CENTROIDS = 256;
+    private static final int KMEANS_ITERATIONS = 15;
+    private static final int KMEANS_SAMPLE = 65536;
+
+    private final String[] words;
+    private final Map<String, Integer> index;
+    private final int dimension;
+
+    // int8 codes, one scale per row
+    private final byte[] codes;
+    private final float[] scales;
+    private final float[] squaredNorms;
+
+    // product quantization, absent when subspaces == 0
+    private final int subspaces;
+    private final int subDimension;
+    private final float[] centroids;
+    private final byte[] pqCodes;
+
+    private QuantizedEmbeddings(String[] words, int dimension, byte[] codes, float[] scales, float[] squaredNorms,
+                                int subspaces, float[] centroids, byte[] pqCodes) {
+        this.words = words;
+        this.dimension = dimension;
+        this.codes = codes;
+        this.scales = scales;
+        this.squaredNorms = squaredNorms;
+        this.subspaces = subspaces;
+        this.subDimension = subspaces == 0 ? 0 : dimension / subspaces;
+        this.centroids = centroids;
+        this.pqCodes = pqCodes;
+        this.index = new HashMap<>(words.length * 2);
+        for (int id = 0; id < words.length; id++) {
+            index.put(words[id], id);
+        }
+    }
+
+    public static QuantizedEmbeddings quantize(Map<String, DoubleMatrix> embeddings, int subspaces) {
+        if (embeddings.isEmpty()) {
+            throw new IllegalArgumentException("The model does not contain any embeddings");
+        }
+        final int n = embeddings.size();
+        final String[] words = embeddings.keySet().toArray(new String[n]);
+        final int dimension = embeddings.get(words[0]).length;
+        if (subspaces < 0 || (subspaces > 0 && dimension % subspaces != 0)) {
+            throw new IllegalArgumentException("The number of subspaces needs to divide the embedding size " + dimension);
+        }
+        final byte[] codes = new byte[n * dimension];
+        final float[] scales = new float[n];
+        final float[] squaredNorms = new float[n];
+        for (int id = 0; id < n; id++) {
+            final double[] row = embeddings.get(words[id]).data;
+            scales[id] = quantizeRow(row, codes, id * dimension);
+            squaredNorms[id] = squaredNorm(codes, id * dimension, dimension, scales[id]);
+        }
+        float[] centroids = null;
+        byte[] pqCodes = null;
+        if (subspaces > 0) {
+            final int subDimension = dimension / subspaces;
+            centroids = new float[subspaces * CENTROIDS * subDimension];
+            pqCodes = new byte[n * subspaces];
+            final Random random = new Random(n);
+            for (int subspace = 0; subspace < subspaces; subspace++) {
+                trainSubspace(embeddings, words, subspace, subDimension, centroids, pqCodes, subspaces, random);
+            }
+        }
+        return new QuantizedEmbeddings(words, dimension, codes, scales, squaredNorms, subspaces, centroids, pqCodes);
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public boolean hasProductCodes() {
+        return subspaces > 0;
+    }
+
+    public long int8Bytes() {
+        return codes.length + 4L * scales.length + 4L * squaredNorms.length;
+    }
+
+    public long productBytes() {
+        return subspaces == 0 ? 0 : pqCodes.length + 4L * centroids.length;
+    }
+
+    // int8 search: the query is quantised as well so the inner loop is a pure integer dot product
+    public List<String> findCloseWords(String query, int count) {
+        final Integer queryId = index.get(query);
+        if (queryId == null) {
+            return Collections.emptyList();
+        }
+        final int offset = queryId * dimension;
+        final float queryScale = scales[queryId];
+        final float queryNorm = squaredNorms[queryId];
+        final TopK topK = new TopK(count);
+        for (int id = 0; id < words.length; id++) {
+            final int dot = dot(codes, offset, codes, id * dimension, dimension);
+            topK.offer(id, queryNorm + squaredNorms[id] - 2.0f * queryScale * scales[id] * dot);
+        }
+        return topK.words(words);
+    }
+
+    // product quantization search through an asymmetric distance table
+    public List<String> findCloseWordsProduct(String query, int count) {
+        if (subspaces == 0) {
+            throw new IllegalStateException("No product quantization codes available");
+        }
+        final Integer queryId = index.get(query);
+        if (queryId == null) {
+            return Collections.emptyList();
+        }
+        final float[] table = distanceTable(dequantize(queryId));
+        final TopK topK = new TopK(count);
+        for (int id = 0; id < words.length; id++) {
+            float distance = 0.0f;
+            final int offset = id * subspaces;
+            for (int subspace = 0; subspace < subspaces; subspace++) {
+                distance += table[subspace * CENTROIDS + (pqCodes[offset + subspace] & 0xff)];
+            }
+            topK.offer(id, distance);
+        }
+        return topK.words(words);
+    }
+
+    // re-rank an over-fetched candidate list with the exact vectors
+    public static List<String> rerank(Map<String, DoubleMatrix> embeddings, String query, List<String> candidates, int count) {
+        final DoubleMatrix queryVector = embeddings.get(query);
+        final TopK topK = new TopK(count);
+        for (int candidate = 0; candidate < candidates.size(); candidate++) {
+            final DoubleMatrix row = embeddings.get(candidates.get(candidate));
+            topK.offer(candidate, (float) row.squaredDistance(queryVector));
+        }
+        return topK.words(candidates.toArray(new String[candidates.size()]));
+    }
+
+    public void save(String fileName) {
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+            output.writeInt(MAGIC);
+            output.writeInt(words.length);
+            output.writeInt(dimension);
+            output.writeInt(subspaces);
+            for (int id = 0; id < words.length; id++) {
+                output.writeUTF(words[id]);
+                output.writeFloat(scales[id]);
+                output.writeFloat(squaredNorms[id]);
+            }
+            output.write(codes);
+            if (subspaces > 0) {
+                for (float centroid : centroids) {
+                    output.writeFloat(centroid);
+                }
+                output.write(pqCodes);
+            }
+        } catch (IOException e) {
+            log.error("Unable to save quantized embeddings", e);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    public static QuantizedEmbeddings load(File file) {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC) {
+                log.error("{} does not contain quantized embeddings", file);
+                return null;
+            }
+            final int n = input.readInt();
+            final int dimension = input.readInt();
+            final int subspaces = input.readInt();
+            final String[] words = new String[n];
+            final float[] scales = new float[n];
+            final float[] squaredNorms = new float[n];
+            for (int id = 0; id < n; id++) {
+                words[id] = input.readUTF();
+                scales[id] = input.readFloat();
+                squaredNorms[id] = input.readFloat();
+            }
+            final byte[] codes = new byte[n * dimension];
+            input.readFully(codes);
+            float[] centroids = null;
+            byte[] pqCodes = null;
+            if (subspaces > 0) {
+                centroids = new float[subspaces * CENTROIDS * (dimension / subspaces)];
+                for (int i = 0; i < centroids.length; i++) {
+                    centroids[i] = input.readFloat();
+                }
+                pqCodes = new byte[n * subspaces];
+                input.readFully(pqCodes);
+            }
+            return new QuantizedEmbeddings(words, dimension, codes, scales, squaredNorms, subspaces, centroids, pqCodes);
+        } catch (IOException e) {
+            log.error("Unable to read quantized embeddings", e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        return null;
+    }
+
+    private float[] dequantize(int id) {
+        final float[] row = new float[dimension];
+        for (int k = 0; k < dimension; k++) {
+            row[k] = scales[id] * codes[id * dimension + k];
+        }
+        return row;
+    }
+
+    private float[] distanceTable(float[] query) {
+        final float[] table = new float[subspaces * CENTROIDS];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+                final int offset = (subspace * CENTROIDS + centroid) * subDimension;
+                float distance = 0.0f;
+                for (int k = 0; k < subDimension; k++) {
+                    final float difference = query[subspace * subDimension + k] - centroids[offset + k];
+                    distance += difference * difference;
+                }
+                table[subspace * CENTROIDS + centroid] = distance;
+            }
+        }
+        return table;
+    }
+
+    private static float quantizeRow(double[] row, byte[] codes, int offset) {
+        double max = 0.0;
+        for (double value : row) {
+            max = Math.max(max, Math.abs(value));
+        }
+        final float scale = max == 0.0 ? 1.0f : (float) (max / 127.0);
+        for (int k = 0; k < row.length; k++) {
+            codes[offset + k] = (byte) Math.round(row[k] / scale);
+        }
+        return scale;
+    }
+
+    private static float squaredNorm(byte[] codes, int offset, int length, float scale) {
+        return scale * scale * dot(codes, offset, codes, offset, length);
+    }
+
+    private static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int k = 0; k < length; k++) {
+            sum += a[aOffset + k] * b[bOffset + k];
+        }
+        return sum;
+    }
+
+    private static void trainSubspace(Map<String, DoubleMatrix> embeddings, String[] words, int subspace, int subDimension,
+                                      float[] centroids, byte[] pqCodes, int subspaces, Random random) {
+        final int n = words.length;
+        final int start = subspace * subDimension;
+        final int centroidOffset = subspace * CENTROIDS * subDimension;
+        final int k = Math.min(CENTROIDS, n);
+        for (int centroid = 0; centroid < k; centroid++) {
+            final double[] row = embeddings.get(words[random.nextInt(n)]).data;
+            for (int d = 0; d < subDimension; d++) {
+                centroids[centroidOffset + centroid * subDimension + d] = (float) row[start + d];
+            }
+        }
+        final int sampleSize = Math.min(n, KMEANS_SAMPLE);
+        final int[] sample = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            sample[i] = sampleSize == n ? i : random.nextInt(n);
+        }
+        final double[] sums = new double[k * subDimension];
+        final int[] counts = new int[k];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            Arrays.fill(sums, 0.0);
+            Arrays.fill(counts, 0);
+            for (int id : sample) {
+                final double[] row = embeddings.get(words[id]).data;
+                final int nearest = nearestCentroid(row, start, centroids, centroidOffset, k, subDimension);
+                counts[nearest]++;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[nearest * subDimension + d] += row[start + d];
+                }
+            }
+            for (int centroid = 0; centroid < k; centroid++) {
+                if (counts[centroid] > 0) {
+                    for (int d = 0; d < subDimension; d++) {
+                        centroids[centroidOffset + centroid * subDimension + d] = (float) (sums[centroid * subDimension + d] / counts[centroid]);
+                    }
+                }
+            }
+        }
+        for (int id = 0; id < n; id++) {
+            final double[] row = embeddings.get(words[id]).data;
+            pqCodes[id * subspaces + subspace] = (byte) nearestCentroid(row, start, centroids, centroidOffset, k, subDimension);
+        }
+    }
+
+    private static int nearestCentroid(double[] row, int start, float[] centroids, int centroidOffset, int k, int subDimension) {
+        int nearest = 0;
+        double best = Double.MAX_VALUE;
+        for (int centroid = 0; centroid < k; centroid++) {
+            double distance = 0.0;
+            for (int d = 0; d < subDimension; d++) {
+                final double difference = row[start + d] - centroids[centroidOffset + centroid * subDimension + d];
+                distance += difference * difference;
+            }
+            if (distance < best) {
+                best = distance;
+                nearest = centroid;
+            }
+        }
+        return nearest;
+    }
+
+    // bounded max-heap on distance, keeps the count smallest
+    private static class TopK {
+        private final int count;
+        private final int[] ids;
+        private final float[] distances;
+        private int size;
+
+        TopK(int count) {
+            this.count = count;
+            this.ids = new int[count];
+            this.distances = new float[count];
+        }
+
+        void offer(int id, float distance) {
+            if (size < count) {
+                ids[size] = id;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (count > 0 && distance < distances[0]) {
+                ids[0] = id;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        List<String> words(String[] words) {
+            final Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Float.compare(distances[a], distances[b]);
+                }
+            });
+            final List<String> result = new ArrayList<>(size);
+            for (Integer i : order) {
+                result.add(words[ids[i]]);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                final int left = 2 * i + 1, right = left + 1;
+                int largest = i;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            final int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            final float distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Spreads the windows sampled from earlier data over the data sets of an epoch. Every data set gets an equal share of
+// them merged in at random positions, keeping the order of the data set itself, so the model sees the old windows
+// among the new ones instead of in a separate pass at the end.
+public class ReplayMixer<T> {
+    private final List<T> replay;
+    private final int dataSets;
+    private final Random random;
+    private int mixed;
+    private int offset;
+
+    public ReplayMixer(List<T> replay, int dataSets, Random random) {
+        this.replay = new ArrayList<>(replay);
+        this.dataSets = Math.max(1, dataSets);
+        this.random = random;
+        // the sample is read file by file, every share should hold windows of all of them
+        Collections.shuffle(this.replay, random);
+    }
+
+    // the data set with the next share merged in, the last data set gets whatever is left
+    public List<T> mix(List<T> dataSet) {
+        mixed++;
+        final int end = mixed >= dataSets ? replay.size() : (int) ((long) replay.size() * mixed / dataSets);
+        final List<T> share = replay.subList(Math.min(offset, end), end);
+        offset = end;
+        final List<T> result = new ArrayList<>(dataSet.size() + share.size());
+        int fromData = 0, fromShare = 0;
+        while (fromData < dataSet.size() || fromShare < share.size()) {
+            final int remaining = dataSet.size() - fromData;
+            if (random.nextInt(remaining + share.size() - fromShare) < remaining) {
+                result.add(dataSet.get(fromData++));
+            } else {
+                result.add(share.get(fromShare++));
+            }
+        }
+        return result;
+    }
+}
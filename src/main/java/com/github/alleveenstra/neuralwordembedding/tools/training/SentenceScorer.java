@@ -0,0 +1,116 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.NetworkScorer;
+import org.jblas.DoubleMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SentenceScorer {
+    private final Map<String, DoubleMatrix> embeddings;
+    private final NetworkScorer scorer;
+    private final int embeddingSize;
+    private final int windowSize;
+
+    public SentenceScorer(Model model) {
+        if (model.embeddings.isEmpty()) {
+            throw new IllegalArgumentException("The model does not contain any embeddings");
+        }
+        this.embeddings = model.embeddings;
+        this.scorer = new NetworkScorer(model.network);
+        this.embeddingSize = embeddings.values().iterator().next().length;
+        this.windowSize = scorer.getInputSize() / embeddingSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    // keeps the words the training would have used for its windows, words without an embedding become RARE like they do
+    // in the training, or are dropped when the model has no RARE either
+    public List<String> filter(Iterable<String> tokens) {
+        final boolean rare = embeddings.containsKey(Vocabulary.RARE);
+        final List<String> words = new ArrayList<>();
+        for (String token : tokens) {
+            if (Training.STOP_WORDS.contains(token)) {
+                continue;
+            }
+            if (embeddings.containsKey(token)) {
+                words.add(token);
+            } else if (rare) {
+                words.add(Vocabulary.RARE);
+            }
+        }
+        return words;
+    }
+
+    public double[] scoreWindows(List<List<String>> windows) {
+        final double[] scores = new double[windows.size()];
+        for (int start = 0; start < windows.size(); start += NetworkScorer.BATCH_SIZE) {
+            final int rows = Math.min(NetworkScorer.BATCH_SIZE, windows.size() - start);
+            final DoubleMatrix input = scorer.inputBuffer(rows);
+            for (int row = 0; row < rows; row++) {
+                final List<String> window = windows.get(start + row);
+                if (window.size() != windowSize) {
+                    throw new IllegalArgumentException("Window of incorrect size");
+                }
+                fillWindow(input, row, window, 0);
+            }
+            System.arraycopy(scorer.scoreBuffer(rows), 0, scores, start, rows);
+        }
+        return scores;
+    }
+
+    // the score of a sentence is the mean score of its sliding windows, NaN if it is shorter than one window
+    public double[] scoreSentences(List<List<String>> sentences) {
+        final double[] scores = new double[sentences.size()];
+        final double[] sums = new double[sentences.size()];
+        final int[] counts = new int[sentences.size()];
+        int rows = 0;
+        final int[] owners = new int[NetworkScorer.BATCH_SIZE];
+        final DoubleMatrix input = scorer.inputBuffer(NetworkScorer.BATCH_SIZE);
+        for (int sentence = 0; sentence < sentences.size(); sentence++) {
+            final List<String> words = sentences.get(sentence);
+            for (int start = 0; start + windowSize <= words.size(); start++) {
+                fillWindow(input, rows, words, start);
+                owners[rows++] = sentence;
+                if (rows == NetworkScorer.BATCH_SIZE) {
+                    accumulate(scorer.scoreBuffer(rows), owners, sums, counts);
+                    rows = 0;
+                }
+            }
+        }
+        if (rows > 0) {
+            // score the remainder in a smaller buffer instead of a partially filled one
+            final DoubleMatrix remainder = scorer.inputBuffer(rows);
+            for (int column = 0; column < scorer.getInputSize(); column++) {
+                System.arraycopy(input.data, column * input.rows, remainder.data, column * rows, rows);
+            }
+            accumulate(scorer.scoreBuffer(rows), owners, sums, counts);
+        }
+        for (int sentence = 0; sentence < scores.length; sentence++) {
+            scores[sentence] = counts[sentence] == 0 ? Double.NaN : sums[sentence] / counts[sentence];
+        }
+        return scores;
+    }
+
+    public double scoreSentence(List<String> words) {
+        final List<List<String>> sentences = new ArrayList<>();
+        sentences.add(words);
+        return scoreSentences(sentences)[0];
+    }
+
+    private void fillWindow(DoubleMatrix input, int row, List<String> words, int start) {
+        for (int offset = 0; offset < windowSize; offset++) {
+            NetworkScorer.fillWindow(input, row, offset * embeddingSize, embeddings.get(words.get(start + offset)).data);
+        }
+    }
+
+    private static void accumulate(double[] batchScores, int[] owners, double[] sums, int[] counts) {
+        for (int row = 0; row < batchScores.length; row++) {
+            sums[owners[row]] += batchScores[row];
+            counts[owners[row]]++;
+        }
+    }
+}
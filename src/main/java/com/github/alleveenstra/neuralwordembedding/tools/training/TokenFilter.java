@@ -0,0 +1,95 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+
+// What the training does with a token, compiled into one entry per vocabulary id: the word the token trains as, which is
+// the word itself or RARE for a word without an embedding, or nothing for a stop word, together with the probability
+// that the frequency subsampling of word2vec keeps it. Filtering a token costs the lookup of its id and one array
+// lookup, the words outside the vocabulary share the last entry.
+public class TokenFilter {
+    // high half the id the token trains as, negative when it is dropped, low half the threshold to keep it
+    private static final long DROP = -1L;
+    private static final long ALWAYS = 1L << 31;
+
+    private final VocabularyIndex vocabulary;
+    private final long[] table;
+    private final String[] words;
+    private final double sample;
+
+    private TokenFilter(VocabularyIndex vocabulary, long[] table, String[] words, double sample) {
+        this.vocabulary = vocabulary;
+        this.table = table;
+        this.words = words;
+        this.sample = sample;
+    }
+
+    // A word with frequency f among the counted tokens is kept with probability (sqrt(f / sample) + 1) * sample / f,
+    // so words below the sample frequency are always kept. A sample of 0 disables the subsampling, words without a
+    // count are never subsampled.
+    public static TokenFilter compile(VocabularyIndex vocabulary, Collection<String> stopWords, Map<String, ?> embeddings, double sample) {
+        final int size = vocabulary.getMaxId() + 1;
+        final long[] table = new long[size + 1];
+        final String[] words = new String[size];
+        long total = 0;
+        for (int id = 0; id < size; id++) {
+            total += vocabulary.count(id);
+        }
+        final int rare = embeddings.containsKey(Vocabulary.RARE) ? vocabulary.id(Vocabulary.RARE) : -1;
+        for (int id = 0; id < size; id++) {
+            final String word = vocabulary.word(id);
+            words[id] = word;
+            if (word == null || stopWords.contains(word)) {
+                table[id] = DROP;
+            } else if (embeddings.containsKey(word)) {
+                table[id] = entry(id, keep(vocabulary.count(id), total, sample));
+            } else {
+                table[id] = rare < 0 ? DROP : entry(rare, keep(vocabulary.count(rare), total, sample));
+            }
+        }
+        // pruned from the vocabulary
+        table[size] = rare < 0 || stopWords.contains(Vocabulary.RARE) ? DROP : table[rare];
+        return new TokenFilter(vocabulary, table, words, sample);
+    }
+
+    private static double keep(long count, long total, double sample) {
+        if (sample <= 0.0 || count <= 0) {
+            return 1.0;
+        }
+        final double frequency = (double) count / total;
+        return (Math.sqrt(frequency / sample) + 1.0) * sample / frequency;
+    }
+
+    private static long entry(int id, double keep) {
+        final long threshold = keep >= 1.0 ? ALWAYS : (long) (keep * ALWAYS);
+        return ((long) id << 32) | threshold;
+    }
+
+    public double getSample() {
+        return sample;
+    }
+
+    // the word the token trains as, or null when it is dropped, without a random nothing is subsampled
+    public String filter(String token, Random random) {
+        final int id = vocabulary.id(token);
+        final long entry = table[id < 0 ? table.length - 1 : id];
+        if (entry < 0) {
+            return null;
+        }
+        final long threshold = entry & 0xffffffffL;
+        if (threshold < ALWAYS && random != null && (random.nextInt() >>> 1) >= threshold) {
+            return null;
+        }
+        return words[(int) (entry >>> 32)];
+    }
+
+    // the probability that a token of this word is trained on
+    public double keepProbability(String token) {
+        final int id = vocabulary.id(token);
+        final long entry = table[id < 0 ? table.length - 1 : id];
+        return entry < 0 ? 0.0 : (double) (entry & 0xffffffffL) / ALWAYS;
+    }
+}
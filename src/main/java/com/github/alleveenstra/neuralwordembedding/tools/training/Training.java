@@ -1,10 +1,14 @@
 package com.github.alleveenstra.neuralwordembedding.tools.training;
 
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.github.alleveenstra.neuralwordembedding.neuralnetwork.BackPropagationTrainer;
 import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Optimizer;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.OptimizerState;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Optimizers;
 import com.github.alleveenstra.neuralwordembedding.neuralnetwork.ZealousWordEmbeddingTrainingStrategy;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
@@ -21,10 +25,10 @@ public class Training {
     private static final Logger log = LoggerFactory.getLogger(Training.class);
 
     private String dataSetDirectory;
-    private static final String RARE_WORD = "*RARE*";
-    private Map<String, Integer> vocabulary;
+    private VocabularyIndex vocabulary;
+    private TokenFilter filter;
 
-    private List<String> stopWords = new ImmutableList.Builder<String>()
+    static final Set<String> STOP_WORDS = new ImmutableSet.Builder<String>()
             .add("<s>", "</s>", "\"", "'", "(", ")", ",", "-", ".", ":", ";", "?", "!", "[", "]", "{", "}", "UUUNKKK", "aan", "achter", "alle", "alleen", "als", "andere", "anders", "ben", "bij", "bijna", "binnen", "d'r", "daar", "dan", "dat", "de", "den", "der", "des", "deed", "deze", "die", "dit", "doe", "doen", "dl", "echter", "een", "eerder", "elke", "en", "enige", "enkele", "enz", "er", "ervan", "etc", "evenmin", "haar", "hare", "hen", "het", "hierin", "hij", "hoe", "hun", "hunne", "iedere", "ik", "in", "inzake", "is", "ja", "je", "jouw", "jouwe", "juist", "jullie", "kan", "kun", "kon", "laat", "maar", "me", "meest", "met", "mijn", "mijne", "minst", "moet", "na", "nabij", "nee", "niet", "noch", "nog", "of", "om", "omdat", "onder", "ons", "onze", "ooit", "ook", "op", "over", "overheen", "sinds", "sommige", "te", "tegen", "ten", "ter", "tijdens", "tot", "uit", "uw", "uwe", "vaak", "van", "voor", "waar", "waarom", "wanneer", "waren", "was", "wat", "welke", "wie", "wij", "wilden", "willen", "z'n", "ze", "zij", "zijn", "zijne", "zo", "zou")
             .build();
 
@@ -32,16 +36,29 @@ public class Training {
     private final int WINDOW_SIZE      = 10;
     private final int HIDDEN_SIZE      = 100;
 
+    // the heap a window takes, a Vector and its array of shared words with compressed references
+    private static final int WINDOW_BYTES  = 96;
+    // windows of a file that stay together before they enter the shuffle buffer
+    private static final int CHUNK_WINDOWS = 1024;
+    // windows handed to the strategy at once when shuffling
+    private static final int BATCH_WINDOWS = 65536;
+
     private Model model;
 
+    private String replayDirectory;
+    private double replayFraction;
+    private final Random random = new Random();
+    private WindowShuffler<Vector<String>> shuffler;
+
     private BackPropagationTrainer trainer;
     private ZealousWordEmbeddingTrainingStrategy strategy;
+    private TrainingMetrics metrics;
 
     public Training(String vocabularyFile, String dataSetDirectory, String modelPath, int concurrency) {
         final File modelFile = new File(modelPath);
         try {
             this.dataSetDirectory = dataSetDirectory;
-            this.vocabulary = Vocabulary.load(vocabularyFile);
+            this.vocabulary = Vocabulary.index(vocabularyFile);
             if (!modelFile.exists()) {
                 final Map<String, DoubleMatrix> embeddings = initializeEmbeddings(vocabulary);
                 final FeedForwardNetwork network = new FeedForwardNetwork(EMBEDDING_SIZE * WINDOW_SIZE, HIDDEN_SIZE, 1);
@@ -52,7 +69,10 @@ public class Training {
                     throw new IllegalStateException("Failed to load specified model.");
                 }
                 this.model = loadedModel;
+                log.info("The model was trained with the {} activation", this.model.network.getActivation().getName());
+                extendEmbeddings(vocabulary);
             }
+            filter = TokenFilter.compile(vocabulary, STOP_WORDS, this.model.embeddings, 0.0);
             trainer = new BackPropagationTrainer(this.model.network);
             strategy = new ZealousWordEmbeddingTrainingStrategy(this.model.network, trainer, this.model.embeddings, concurrency);
         } catch (IOException e) {
@@ -60,26 +80,169 @@ public class Training {
         }
     }
     
+    // word2vec subsampling of the frequent words while training, 0 trains on every token, validation never subsamples
+    public void setSubsampling(double sample) {
+        filter = TokenFilter.compile(vocabulary, STOP_WORDS, this.model.embeddings, sample);
+    }
+
+    // SGD without decay keeps the original updates, anything else steps through an optimizer state that is saved with a
+    // model container and picked up again when the same optimizer continues the training
+    public void setOptimizer(Optimizer optimizer, double embeddingDecay) {
+        OptimizerState state = this.model.optimizerState;
+        if (state != null && (state.getOptimizer() != optimizer || state.getEmbeddingDecay() != embeddingDecay)) {
+            log.info("Dropping the saved {} state, training with {}", state.getOptimizer().getName(), optimizer.getName());
+            state = null;
+        }
+        if (state == null && (optimizer != Optimizers.SGD || embeddingDecay > 0.0)) {
+            state = new OptimizerState(optimizer, embeddingDecay, this.model.network);
+        } else if (state != null) {
+            log.info("Continuing with the saved {} state of {} embedding rows", optimizer.getName(), state.getRows());
+        }
+        this.model.optimizerState = state;
+        strategy.setOptimizerState(state);
+    }
+
+    // replaces the random initialization of every vocabulary word found in a word2vec file
+    public int initializeFromWord2Vec(String fileName) {
+        try {
+            return Word2Vec.load(fileName, vocabulary, this.model.embeddings, EMBEDDING_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read word2vec vectors", e);
+        }
+    }
+
     public void trainOneEpoch(double eta, double etaEmbedding) {
-        final Collection<File> files = (Collection<File>) FileUtils.listFiles(new File(dataSetDirectory), new SuffixFileFilter(".dataset"), TrueFileFilter.TRUE);
+        final Collection<File> files = listDataSets(dataSetDirectory);
+        final boolean replay = replayDirectory != null && replayFraction > 0.0;
+        if (shuffler != null) {
+            trainShuffled(files, replay ? listDataSets(replayDirectory) : Collections.<File>emptyList(), eta, etaEmbedding);
+        } else {
+            final ReplayMixer<Vector<String>> mixer = replay ? new ReplayMixer<>(sampleReplay(), files.size(), random) : null;
+            for (File file : files) {
+                strategy.setEta(eta);
+                strategy.setEtaEmbedding(etaEmbedding);
+                log.info("processing file {}", file.getAbsolutePath());
+                if (metrics != null) {
+                    metrics.setFile(file.getName());
+                }
+                List<Vector<String>> dataSet = extractDataSet(file, random, 1.0);
+                if (mixer != null) {
+                    dataSet = mixer.mix(dataSet);
+                }
+                strategy.train(dataSet);
+            }
+            if (mixer != null && files.isEmpty()) {
+                strategy.setEta(eta);
+                strategy.setEtaEmbedding(etaEmbedding);
+                strategy.train(mixer.mix(new ArrayList<Vector<String>>()));
+            }
+        }
+        strategy.flushDecay();
+    }
+
+    private static Collection<File> listDataSets(String directory) {
+        return (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(".dataset"), TrueFileFilter.TRUE);
+    }
+
+    // the replay files pass the shuffler together with the new ones, only their sample is read
+    private void trainShuffled(Collection<File> files, Collection<File> replayFiles, double eta, double etaEmbedding) {
+        strategy.setEta(eta);
+        strategy.setEtaEmbedding(etaEmbedding);
+        // listed in a fixed order, so the seed decides the shuffled one
+        final List<File> sorted = new ArrayList<>(files);
+        Collections.sort(sorted);
+        final List<File> replayed = new ArrayList<>(replayFiles);
+        Collections.sort(replayed);
+        sorted.addAll(replayed);
+        // by identity, a replay file that is also in the data set directory is read both in full and as replay
+        final Set<File> replaySet = Collections.newSetFromMap(new IdentityHashMap<File, Boolean>());
+        replaySet.addAll(replayed);
+        shuffler.shuffle(sorted, new WindowShuffler.Source<Vector<String>>() {
+            @Override
+            public List<Vector<String>> read(File file) {
+                final boolean replay = replaySet.contains(file);
+                log.info(replay ? "replaying file {}" : "reading file {}", file.getAbsolutePath());
+                if (metrics != null) {
+                    metrics.setFile(file.getName());
+                }
+                return extractDataSet(file, random, replay ? replayFraction : 1.0);
+            }
+        }, new WindowShuffler.Sink<Vector<String>>() {
+            @Override
+            public void accept(List<Vector<String>> batch) {
+                strategy.train(batch);
+            }
+        });
+    }
+
+    // seeds the order of the files and windows, the subsampling, the replay sample and the corrupted words
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+        strategy.setSeed(seed);
+    }
+
+    // shuffles the windows of all files of an epoch through a buffer of this size, 0 trains on them file by file
+    public void setShuffleBuffer(int megabytes) {
+        if (megabytes <= 0) {
+            shuffler = null;
+            return;
+        }
+        shuffler = new WindowShuffler<>((int) Math.min(Integer.MAX_VALUE, (long) megabytes * (1 << 20) / WINDOW_BYTES), CHUNK_WINDOWS, BATCH_WINDOWS, random);
+        log.info("Shuffling through a buffer of {} windows", shuffler.getCapacity());
+    }
+
+    // publishes the counters of the strategy as an MBean and logs them every interval
+    public TrainingMetrics startMetrics(int intervalSeconds) {
+        metrics = new TrainingMetrics(strategy);
+        metrics.start(intervalSeconds);
+        return metrics;
+    }
+
+    // mixes a sample of the data the model was trained on before into the epoch, so it does not forget it
+    public void setReplay(String replayDirectory, double replayFraction) {
+        this.replayDirectory = replayDirectory;
+        this.replayFraction = replayFraction;
+    }
+
+    // the sample of the replay files for one epoch, windows outside the sample are never created
+    private List<Vector<String>> sampleReplay() {
+        final Collection<File> files = listDataSets(replayDirectory);
+        final List<Vector<String>> sample = new ArrayList<>();
         for (File file : files) {
-            strategy.setEta(eta);
-            strategy.setEtaEmbedding(etaEmbedding);
-            log.info("processing file {}", file.getAbsolutePath());
-            final List<Vector<String>> dataSet = extractDataSet(file);
-            strategy.train(dataSet);
+            sample.addAll(extractDataSet(file, random, replayFraction));
         }
+        log.info("replaying {} windows of {} files", sample.size(), files.size());
+        return sample;
     }
 
-    private Map<String, DoubleMatrix> initializeEmbeddings(Map<String, Integer> vocabulary) {
-        Map<String, DoubleMatrix> embeddings = new HashMap<>();
-        for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) {
-            embeddings.put(entry.getKey(), DoubleMatrix.rand(1, EMBEDDING_SIZE).min(0.5));
+    // words added to the vocabulary after the model was trained get a random row, the existing rows are kept
+    private void extendEmbeddings(VocabularyIndex vocabulary) {
+        int added = 0;
+        for (int id = 0; id <= vocabulary.getMaxId(); id++) {
+            final String word = vocabulary.word(id);
+            if (word != null && !this.model.embeddings.containsKey(word)) {
+                this.model.embeddings.put(word, DoubleMatrix.rand(1, EMBEDDING_SIZE).min(0.5));
+                added++;
+            }
+        }
+        if (added > 0) {
+            log.info("Added {} new words to the loaded model", added);
+        }
+    }
+
+    private Map<String, DoubleMatrix> initializeEmbeddings(VocabularyIndex vocabulary) {
+        Map<String, DoubleMatrix> embeddings = new HashMap<>(vocabulary.size() * 2);
+        for (int id = 0; id <= vocabulary.getMaxId(); id++) {
+            final String word = vocabulary.word(id);
+            if (word != null) {
+                embeddings.put(word, DoubleMatrix.rand(1, EMBEDDING_SIZE).min(0.5));
+            }
         }
         return embeddings;
     }
 
-    private List<Vector<String>> extractDataSet(File file) {
+    // the windows of the file, subsampled when a random is given, of which every window is kept with the fraction
+    private List<Vector<String>> extractDataSet(File file, Random subsampling, double fraction) {
         final List<Vector<String>> dataSet = new ArrayList<>();
         FileInputStream fileInputStream = null;
         try {
@@ -88,17 +251,18 @@ public class Training {
             final List<String> words = new ArrayList<>();
             for (String sentence : sentences) {
                 if ("<s>".equals(sentence)) {
-                    appendWords(words, dataSet);
+                    appendWords(words, dataSet, fraction);
                     words.clear();
                 } else {
-                    for (String word : Splitter.on(" ").omitEmptyStrings().split(sentence)) {
-                        if (vocabulary.containsKey(word) && !stopWords.contains(word)) {
+                    for (String token : Splitter.on(" ").omitEmptyStrings().split(sentence)) {
+                        final String word = filter.filter(token, subsampling);
+                        if (word != null) {
                             words.add(word);
                         }
                     }
                 }
             }
-            appendWords(words, dataSet);
+            appendWords(words, dataSet, fraction);
         } catch (IOException e) {
             log.error("Unable to read file", e);
         } finally {
@@ -107,30 +271,29 @@ public class Training {
         return dataSet;
     }
 
-    private void appendWords(List<String> words, List<Vector<String>> dataSet) {
+    private void appendWords(List<String> words, List<Vector<String>> dataSet, double fraction) {
         if (words.size() >= WINDOW_SIZE) {
             for (int start = 0; start < words.size() - WINDOW_SIZE; start++) {
+                if (fraction < 1.0 && random.nextDouble() >= fraction) {
+                    continue;
+                }
                 final Vector<String> dataPoint = new Vector<>();
                 for (int offset = 0; offset < WINDOW_SIZE; ++offset) {
-                    dataPoint.add(mapWord(words.get(start + offset)));
+                    dataPoint.add(words.get(start + offset));
                 }
                 dataSet.add(dataPoint);
             }
         }
     }
 
-    private String mapWord(String data) {
-        if (this.model.embeddings.containsKey(data)) {
-            return data;
-        }
-        return RARE_WORD;
-    }
-
     public void saveModel(String modelFile) {
         this.model.save(modelFile);
     }
 
     public void shutdown() {
+        if (metrics != null) {
+            metrics.stop();
+        }
         strategy.shutdown();
     }
 
@@ -140,9 +303,8 @@ public class Training {
 
     public double validate(String directory) {
         Mean mean = new Mean();
-        final Collection<File> files = (Collection<File>) FileUtils.listFiles(new File(directory), new SuffixFileFilter(".dataset"), TrueFileFilter.TRUE);
-        for (File file : files) {
-            final List<Vector<String>> dataSet = extractDataSet(file);
+        for (File file : listDataSets(directory)) {
+            final List<Vector<String>> dataSet = extractDataSet(file, null, 1.0);
             mean.increment(strategy.validate(dataSet));
         }
         return mean.getResult();
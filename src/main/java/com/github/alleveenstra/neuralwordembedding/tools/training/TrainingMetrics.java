@@ -0,0 +1,256 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.ZealousWordEmbeddingTrainingStrategy;
+import com.github.alleveenstra.neuralwordembedding.tools.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Samples the counters of the training strategy at a fixed interval, publishes the sample as an MBean and logs it as a
+// one line JSON object. A stall shows as a drop of the window rate of one or all workers, a growing number of pending
+// windows or a jump in the GC time, divergence as a rising loss average while the lossy fraction stays high.
+public class TrainingMetrics implements TrainingMetricsMBean {
+    private static final Logger log = LoggerFactory.getLogger(TrainingMetrics.class);
+
+    public static final String NAME = "com.github.alleveenstra.neuralwordembedding:type=TrainingMetrics";
+
+    // weight of the newest interval in the moving average of the loss
+    private static final double SMOOTHING = 0.2;
+
+    private final ZealousWordEmbeddingTrainingStrategy strategy;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile int epoch;
+    private volatile String file = "";
+
+    // the totals of the previous sample
+    private long sampled, windows, lossyWindows, updates, tokenWaitNanos, embeddingRows;
+    private long[] workerWindows;
+    private double loss;
+
+    private volatile double windowsPerSecond, intervalLoss = Double.NaN, lossMovingAverage = Double.NaN, lossyFraction,
+            tokenWaitMillisPerUpdate, embeddingRowsPerSecond;
+    private volatile double[] workerWindowsPerSecond;
+
+    public TrainingMetrics(ZealousWordEmbeddingTrainingStrategy strategy) {
+        this.strategy = strategy;
+        final ZealousWordEmbeddingTrainingStrategy.Counters counters = strategy.getCounters();
+        this.sampled = System.nanoTime();
+        this.windows = counters.getWindows();
+        this.lossyWindows = counters.getLossyWindows();
+        this.updates = counters.getUpdates();
+        this.tokenWaitNanos = counters.getTokenWaitNanos();
+        this.embeddingRows = counters.getEmbeddingRows();
+        this.workerWindows = counters.getWorkerWindows();
+        this.loss = counters.getLoss();
+        this.workerWindowsPerSecond = new double[workerWindows.length];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "training-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void start(int intervalSeconds) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Unable to register the training metrics MBean", e);
+        }
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+                log.info(toJson());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(NAME));
+        } catch (JMException e) {
+            log.debug("The training metrics MBean was not registered", e);
+        }
+    }
+
+    public void setEpoch(int epoch) {
+        this.epoch = epoch;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public synchronized void sample() {
+        final ZealousWordEmbeddingTrainingStrategy.Counters counters = strategy.getCounters();
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1e-9, (now - sampled) / 1e9);
+
+        final long windows = counters.getWindows();
+        final long lossyWindows = counters.getLossyWindows();
+        final long updates = counters.getUpdates();
+        final long tokenWaitNanos = counters.getTokenWaitNanos();
+        final long embeddingRows = counters.getEmbeddingRows();
+        final long[] workerWindows = counters.getWorkerWindows();
+        final double loss = counters.getLoss();
+
+        final long intervalWindows = windows - this.windows;
+        final long intervalUpdates = updates - this.updates;
+        final double[] workerWindowsPerSecond = new double[workerWindows.length];
+        for (int pid = 0; pid < workerWindows.length; pid++) {
+            workerWindowsPerSecond[pid] = (workerWindows[pid] - this.workerWindows[pid]) / seconds;
+        }
+        this.windowsPerSecond = intervalWindows / seconds;
+        this.workerWindowsPerSecond = workerWindowsPerSecond;
+        this.embeddingRowsPerSecond = (embeddingRows - this.embeddingRows) / seconds;
+        this.tokenWaitMillisPerUpdate = intervalUpdates == 0 ? 0.0 : (tokenWaitNanos - this.tokenWaitNanos) / 1e6 / intervalUpdates;
+        if (intervalWindows > 0) {
+            this.intervalLoss = (loss - this.loss) / intervalWindows;
+            this.lossyFraction = (double) (lossyWindows - this.lossyWindows) / intervalWindows;
+            this.lossMovingAverage = Double.isNaN(lossMovingAverage) ? intervalLoss : SMOOTHING * intervalLoss + (1.0 - SMOOTHING) * lossMovingAverage;
+        }
+
+        this.sampled = now;
+        this.windows = windows;
+        this.lossyWindows = lossyWindows;
+        this.updates = updates;
+        this.tokenWaitNanos = tokenWaitNanos;
+        this.embeddingRows = embeddingRows;
+        this.workerWindows = workerWindows;
+        this.loss = loss;
+    }
+
+    public String toJson() {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return Json.object(
+                "epoch", epoch,
+                "file", file,
+                "windows", windows,
+                "windowsPerSecond", windowsPerSecond,
+                "workerWindowsPerSecond", workerWindowsPerSecond,
+                "loss", intervalLoss,
+                "lossAverage", lossMovingAverage,
+                "lossyFraction", lossyFraction,
+                "updates", updates,
+                "tokenWaitMillisPerUpdate", tokenWaitMillisPerUpdate,
+                "embeddingRowsPerSecond", embeddingRowsPerSecond,
+                "pendingWindows", getPendingWindows(),
+                "heapUsed", heap.getUsed(),
+                "heapMax", heap.getMax(),
+                "gcCount", getGcCount(),
+                "gcMillis", getGcMillis());
+    }
+
+    @Override
+    public int getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public String getFile() {
+        return file;
+    }
+
+    @Override
+    public long getWindows() {
+        return strategy.getCounters().getWindows();
+    }
+
+    @Override
+    public double getWindowsPerSecond() {
+        return windowsPerSecond;
+    }
+
+    @Override
+    public double[] getWorkerWindowsPerSecond() {
+        return workerWindowsPerSecond.clone();
+    }
+
+    @Override
+    public double getLoss() {
+        return intervalLoss;
+    }
+
+    @Override
+    public double getLossMovingAverage() {
+        return lossMovingAverage;
+    }
+
+    @Override
+    public double getLossyFraction() {
+        return lossyFraction;
+    }
+
+    @Override
+    public long getUpdates() {
+        return strategy.getCounters().getUpdates();
+    }
+
+    @Override
+    public double getTokenWaitMillisPerUpdate() {
+        return tokenWaitMillisPerUpdate;
+    }
+
+    @Override
+    public long getEmbeddingRows() {
+        return strategy.getCounters().getEmbeddingRows();
+    }
+
+    @Override
+    public double getEmbeddingRowsPerSecond() {
+        return embeddingRowsPerSecond;
+    }
+
+    @Override
+    public int[] getPendingWindows() {
+        return strategy.getPendingWindows();
+    }
+
+    @Override
+    public long getHeapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getHeapMax() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    }
+
+    @Override
+    public long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long getGcMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+// The rates and averages are over the last sampling interval, the totals are since training started
+public interface TrainingMetricsMBean {
+
+    int getEpoch();
+
+    String getFile();
+
+    long getWindows();
+
+    double getWindowsPerSecond();
+
+    double[] getWorkerWindowsPerSecond();
+
+    double getLoss();
+
+    double getLossMovingAverage();
+
+    double getLossyFraction();
+
+    long getUpdates();
+
+    double getTokenWaitMillisPerUpdate();
+
+    long getEmbeddingRows();
+
+    double getEmbeddingRowsPerSecond();
+
+    int[] getPendingWindows();
+
+    long getHeapUsed();
+
+    long getHeapMax();
+
+    long getGcCount();
+
+    long getGcMillis();
+}
@@ -1,27 +1,137 @@
 package com.github.alleveenstra.neuralwordembedding.tools.training;
 
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
 
 public class Vocabulary {
-    public static Map<String, Integer> load(String vocabularyFile) throws IOException {
-        final Map<String, Integer> vocabulary = new HashMap<>();
-        File file = new File(vocabularyFile);
-        FileInputStream inputStream = new FileInputStream(file);
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-        final BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-        String line = bufferedReader.readLine();
-        while (line != null) {
-            final String[] split = line.trim().split("[\t ]+");
-            if (split.length >= 2) {
-                final int index = Integer.parseInt(split[1]);
-                vocabulary.put(split[0], index);
-            }
-            line = bufferedReader.readLine();
-        }
-        IOUtils.closeQuietly(inputStream);
-        return vocabulary;
+    private static final Logger log = LoggerFactory.getLogger(Vocabulary.class);
+
+    public static final String UNKNOWN = "UUUNKKK";
+    public static final String RARE = "*RARE*";
+    public static final String START = "<s>";
+    public static final String END = "</s>";
+    // ids 1 to 4, every other word follows in order of descending count
+    public static final List<String> RESERVED = Arrays.asList(UNKNOWN, RARE, START, END);
+    public static final int UNKNOWN_ID = 1;
+    public static final int RARE_ID = 2;
+    public static final int END_ID = 4;
+
+    // Writes the words with at least minCount occurrences, at most maxSize words including the reserved ones. The count
+    // of the pruned words goes to *RARE*. The file is compiled into an index right away. Returns the vocabulary id of
+    // every counter id, pruned words map to RARE_ID.
+    public static int[] write(final WordCounter counter, String filename, long minCount, int maxSize) throws IOException {
+        final int[] ids = new int[counter.size()];
+        final List<Integer> words = new ArrayList<>();
+        for (int id = 0; id < counter.size(); id++) {
+            final int reserved = RESERVED.indexOf(counter.word(id));
+            if (reserved >= 0) {
+                ids[id] = reserved + 1;
+            } else {
+                words.add(id);
+            }
+        }
+        Collections.sort(words, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                final int order = Long.compare(counter.count(o2), counter.count(o1));
+                return order != 0 ? order : counter.word(o1).compareTo(counter.word(o2));
+            }
+        });
+        final long[] reservedCounts = new long[RESERVED.size()];
+        for (int id = 0; id < ids.length; id++) {
+            if (ids[id] > 0) {
+                reservedCounts[ids[id] - 1] += counter.count(id);
+            }
+        }
+        int next = RESERVED.size() + 1;
+        for (int id : words) {
+            if (counter.count(id) >= minCount && next <= maxSize) {
+                ids[id] = next++;
+            } else {
+                ids[id] = RARE_ID;
+                reservedCounts[RARE_ID - 1] += counter.count(id);
+            }
+        }
+        final PrintWriter writer = new PrintWriter(filename, "UTF-8");
+        try {
+            for (int i = 0; i < RESERVED.size(); i++) {
+                writer.printf("%s\t%d\t%d\n", RESERVED.get(i), i + 1, reservedCounts[i]);
+            }
+            for (int id : words) {
+                if (ids[id] != RARE_ID) {
+                    writer.printf("%s\t%d\t%d\n", counter.word(id), ids[id], counter.count(id));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        compile(filename);
+        return ids;
+    }
+
+    // Compiles the vocabulary file into a VocabularyIndex next to it, an index that can not be written is only kept in
+    // memory. The last entry of a word that is listed twice wins.
+    public static VocabularyIndex compile(String vocabularyFile) throws IOException {
+        final File file = new File(vocabularyFile);
+        final Map<String, long[]> entries = new LinkedHashMap<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                final String[] split = line.trim().split("[\t ]+");
+                if (split.length >= 2) {
+                    entries.put(split[0], new long[]{Integer.parseInt(split[1]), split.length >= 3 ? Long.parseLong(split[2]) : 0});
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        final List<String> words = new ArrayList<>(entries.keySet());
+        final int[] ids = new int[words.size()];
+        final long[] counts = new long[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            final long[] entry = entries.get(words.get(i));
+            ids[i] = (int) entry[0];
+            counts[i] = entry[1];
+        }
+        final VocabularyIndex index = VocabularyIndex.build(words, ids, counts, file);
+        final File indexFile = new File(vocabularyFile + VocabularyIndex.EXTENSION);
+        final File temporary = new File(indexFile.getPath() + ".tmp");
+        OutputStream output = null;
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(temporary));
+            index.write(output);
+            output.close();
+            // an existing index may still be mapped, it is replaced instead of overwritten
+            if (!temporary.renameTo(indexFile) && !(indexFile.delete() && temporary.renameTo(indexFile))) {
+                throw new IOException("Unable to rename " + temporary + " to " + indexFile);
+            }
+            log.info("Compiled {} words into {}", words.size(), indexFile);
+        } catch (IOException e) {
+            log.warn("Unable to write the vocabulary index " + indexFile, e);
+            temporary.delete();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+        return index;
+    }
+
+    // the compiled vocabulary, compiled again when the vocabulary file changed since
+    public static VocabularyIndex index(String vocabularyFile) throws IOException {
+        final File indexFile = new File(vocabularyFile + VocabularyIndex.EXTENSION);
+        if (indexFile.exists()) {
+            final VocabularyIndex index = VocabularyIndex.map(indexFile);
+            if (index.isCompiledFrom(new File(vocabularyFile))) {
+                return index;
+            }
+        }
+        return compile(vocabularyFile);
     }
 }
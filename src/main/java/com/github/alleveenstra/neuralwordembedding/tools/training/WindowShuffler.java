@@ -0,0 +1,86 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Shuffles the windows of a set of files without holding more than one file and a buffer of fixed size. The files are
+// visited in random order, the windows of a file in chunks in random order, and every window passes the buffer, which
+// lets a random window out for every window that comes in once it is full. The windows leave in batches, so a worker
+// no longer gets a long run of windows from the same few sentences. The same seed gives the same order.
+public class WindowShuffler<T> {
+
+    public interface Source<T> {
+        List<T> read(File file);
+    }
+
+    public interface Sink<T> {
+        void accept(List<T> batch);
+    }
+
+    private final int capacity;
+    private final int chunkSize;
+    private final int batchSize;
+    private final Random random;
+
+    public WindowShuffler(int capacity, int chunkSize, int batchSize, Random random) {
+        if (chunkSize < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("The chunk and batch size need to be at least 1");
+        }
+        this.capacity = Math.max(0, capacity);
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.random = random;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void shuffle(List<File> files, Source<T> source, Sink<T> sink) {
+        final List<File> order = new ArrayList<>(files);
+        Collections.shuffle(order, random);
+        final List<T> buffer = new ArrayList<>(Math.min(capacity, 1 << 20));
+        List<T> batch = new ArrayList<>(batchSize);
+        for (File file : order) {
+            final List<T> windows = source.read(file);
+            final List<Integer> chunks = new ArrayList<>();
+            for (int start = 0; start < windows.size(); start += chunkSize) {
+                chunks.add(start);
+            }
+            Collections.shuffle(chunks, random);
+            for (int start : chunks) {
+                for (T window : windows.subList(start, Math.min(start + chunkSize, windows.size()))) {
+                    if (buffer.size() < capacity) {
+                        buffer.add(window);
+                        continue;
+                    }
+                    T out = window;
+                    if (capacity > 0) {
+                        final int index = random.nextInt(capacity);
+                        out = buffer.get(index);
+                        buffer.set(index, window);
+                    }
+                    batch.add(out);
+                    if (batch.size() == batchSize) {
+                        sink.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+        }
+        Collections.shuffle(buffer, random);
+        for (T window : buffer) {
+            batch.add(window);
+            if (batch.size() == batchSize) {
+                sink.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+}
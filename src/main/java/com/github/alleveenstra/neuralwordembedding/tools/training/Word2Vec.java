@@ -0,0 +1,129 @@
+package com.github.alleveenstra.neuralwordembedding.tools.training;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.jblas.DoubleMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+// word2vec text and binary vectors, both are read and written one row at a time
+public class Word2Vec {
+    private static final Logger log = LoggerFactory.getLogger(Word2Vec.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static boolean isBinary(String fileName) {
+        return fileName.endsWith(".bin");
+    }
+
+    public static void export(Map<String, DoubleMatrix> embeddings, String fileName) throws IOException {
+        final boolean binary = isBinary(fileName);
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(fileName), BUFFER_SIZE);
+        try {
+            int dimension = 0;
+            for (DoubleMatrix row : embeddings.values()) {
+                dimension = row.length;
+                break;
+            }
+            output.write(String.format("%d %d\n", embeddings.size(), dimension).getBytes(Charsets.UTF_8));
+            final ByteBuffer floats = ByteBuffer.allocate(4 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+            final StringBuilder line = new StringBuilder();
+            for (Map.Entry<String, DoubleMatrix> entry : embeddings.entrySet()) {
+                final double[] row = entry.getValue().data;
+                if (binary) {
+                    output.write(entry.getKey().getBytes(Charsets.UTF_8));
+                    output.write(' ');
+                    floats.clear();
+                    for (int k = 0; k < dimension; k++) {
+                        floats.putFloat((float) row[k]);
+                    }
+                    output.write(floats.array());
+                    output.write('\n');
+                } else {
+                    line.setLength(0);
+                    line.append(entry.getKey());
+                    for (int k = 0; k < dimension; k++) {
+                        line.append(' ').append((float) row[k]);
+                    }
+                    line.append('\n');
+                    output.write(line.toString().getBytes(Charsets.UTF_8));
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    // overwrites the embeddings of every vocabulary word found in the file, returns the number of words found
+    public static int load(String fileName, VocabularyIndex vocabulary, Map<String, DoubleMatrix> embeddings, int dimension) throws IOException {
+        final boolean binary = isBinary(fileName);
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), BUFFER_SIZE));
+        int found = 0;
+        try {
+            final String[] header = readToken(input, '\n').trim().split(" ");
+            final long rows = Long.parseLong(header[0]);
+            final int fileDimension = Integer.parseInt(header[1]);
+            if (fileDimension != dimension) {
+                throw new IOException(String.format("%s contains %d dimensional vectors, expected %d", fileName, fileDimension, dimension));
+            }
+            final byte[] floats = new byte[4 * dimension];
+            final ByteBuffer buffer = ByteBuffer.wrap(floats).order(ByteOrder.LITTLE_ENDIAN);
+            for (long row = 0; row < rows; row++) {
+                final String word;
+                final double[] values = new double[dimension];
+                if (binary) {
+                    word = readToken(input, ' ').trim();
+                    input.readFully(floats);
+                    buffer.clear();
+                    for (int k = 0; k < dimension; k++) {
+                        values[k] = buffer.getFloat();
+                    }
+                } else {
+                    final String[] split = readToken(input, '\n').trim().split(" ");
+                    if (split.length != dimension + 1) {
+                        throw new IOException("Malformed vector on row " + row);
+                    }
+                    word = split[0];
+                    for (int k = 0; k < dimension; k++) {
+                        values[k] = Double.parseDouble(split[k + 1]);
+                    }
+                }
+                if (vocabulary.contains(word)) {
+                    final DoubleMatrix embedding = embeddings.get(word);
+                    if (embedding != null && embedding.length == dimension) {
+                        System.arraycopy(values, 0, embedding.data, 0, dimension);
+                    } else {
+                        embeddings.put(word, new DoubleMatrix(1, dimension, values));
+                    }
+                    found++;
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+        log.info("Initialized {} of {} vocabulary words from {}", new Object[]{found, vocabulary.size(), fileName});
+        return found;
+    }
+
+    // reads UTF-8 bytes up to the delimiter, the binary format leaves a newline in front of every word after the first
+    private static String readToken(DataInputStream input, char delimiter) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        int next = input.read();
+        while (next != -1 && next != delimiter) {
+            if (next != '\n' || bytes.size() > 0) {
+                bytes.write(next);
+            }
+            next = input.read();
+        }
+        if (next == -1 && bytes.size() == 0) {
+            throw new EOFException();
+        }
+        return new String(bytes.toByteArray(), Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Counters and stage timings of the preprocessing tools, with a progress line while a tool runs and a report at the end.
+// Every thread counts into slots of its own that are only added up for the progress line and the report, so the hot
+// loops share nothing. The stage times are summed over threads, so they add up to more than the wall time on a busy
+// pool. Nothing is measured before start is called.
+public class Instrumentation {
+    private static final Logger log = LoggerFactory.getLogger(Instrumentation.class);
+
+    public enum Stage {
+        READ, SENTENCES, TOKENIZATION, SANITIZATION, WRITE
+    }
+
+    public enum Count {
+        BYTES, LINES, SENTENCES, TOKENS, FILES
+    }
+
+    private static final int STAGES = Stage.values().length;
+    private static final int SLOTS = STAGES + Count.values().length;
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    // without a console the progress is logged instead of redrawn, less often
+    private static final long LOG_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final int BAR_WIDTH = 30;
+
+    private static final List<long[]> slots = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<long[]> local = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            final long[] threadSlots = new long[SLOTS];
+            slots.add(threadSlots);
+            return threadSlots;
+        }
+    };
+
+    private static volatile boolean enabled = false;
+    private static String name;
+    private static long totalBytes;
+    private static long started;
+    private static ForkJoinPool pool;
+    private static Thread reporter;
+    private static long poolSamples;
+    private static double poolRunning;
+
+    private Instrumentation() {
+    }
+
+    // totalBytes is what the tool is going to read, the progress and the ETA are relative to it
+    public static synchronized void start(String name, long totalBytes, ForkJoinPool pool) {
+        for (long[] threadSlots : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                threadSlots[i] = 0;
+            }
+        }
+        Instrumentation.name = name;
+        Instrumentation.totalBytes = totalBytes;
+        Instrumentation.pool = pool;
+        Instrumentation.poolSamples = 0;
+        Instrumentation.poolRunning = 0.0;
+        Instrumentation.started = System.nanoTime();
+        enabled = true;
+        final boolean console = System.console() != null;
+        reporter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long logged = System.currentTimeMillis();
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(PROGRESS_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    samplePool();
+                    if (console) {
+                        System.err.print('\r' + progress());
+                    } else if (System.currentTimeMillis() - logged >= LOG_INTERVAL) {
+                        log.info(progress());
+                        logged = System.currentTimeMillis();
+                    }
+                }
+            }
+        }, "instrumentation");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    // stops the progress line and logs the report
+    public static synchronized void finish() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        reporter.interrupt();
+        try {
+            reporter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (System.console() != null) {
+            System.err.println('\r' + progress());
+        }
+        report();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // returns the time to hand to end, or 0 when nothing is measured
+    public static long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void end(Stage stage, long begin) {
+        if (enabled) {
+            local.get()[stage.ordinal()] += System.nanoTime() - begin;
+        }
+    }
+
+    public static void count(Count count, long amount) {
+        if (enabled) {
+            local.get()[STAGES + count.ordinal()] += amount;
+        }
+    }
+
+    // counts the bytes read through the stream, and the time spent waiting for them as reading
+    public static InputStream counting(InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                final long begin = begin();
+                final int result = super.read();
+                end(Stage.READ, begin);
+                if (result != -1) {
+                    count(Count.BYTES, 1);
+                }
+                return result;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                final long begin = begin();
+                final int result = super.read(buffer, offset, length);
+                end(Stage.READ, begin);
+                if (result > 0) {
+                    count(Count.BYTES, result);
+                }
+                return result;
+            }
+        };
+    }
+
+    private static long total(int slot) {
+        long total = 0;
+        for (long[] threadSlots : slots) {
+            total += threadSlots[slot];
+        }
+        return total;
+    }
+
+    public static long get(Stage stage) {
+        return total(stage.ordinal());
+    }
+
+    public static long get(Count count) {
+        return total(STAGES + count.ordinal());
+    }
+
+    private static synchronized void samplePool() {
+        if (pool != null) {
+            poolRunning += pool.getRunningThreadCount();
+            poolSamples++;
+        }
+    }
+
+    // [=========>          ] 45.2% 310.4/686.9 MB 12.3 MB/s 1204331 sentences ETA 0:00:31
+    private static String progress() {
+        final double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+        final long bytes = get(Count.BYTES);
+        final double fraction = totalBytes > 0 ? Math.min(1.0, (double) bytes / totalBytes) : 0.0;
+        final StringBuilder bar = new StringBuilder("[");
+        final int filled = (int) (fraction * BAR_WIDTH);
+        for (int i = 0; i < BAR_WIDTH; i++) {
+            bar.append(i < filled ? '=' : i == filled ? '>' : ' ');
+        }
+        bar.append(']');
+        final double rate = bytes / seconds;
+        final String eta = rate > 0 ? duration((long) ((totalBytes - bytes) / rate)) : "?";
+        return String.format("%s %5.1f%% %.1f/%.1f MB %.1f MB/s %d sentences ETA %s", bar, fraction * 100.0,
+                bytes / 1e6, totalBytes / 1e6, rate / 1e6, get(Count.SENTENCES), eta);
+    }
+
+    private static String duration(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, Math.max(0, seconds % 60));
+    }
+
+    private static void report() {
+        final double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+        log.info(String.format("%s read %d files, %.1f MB and %d lines in %.2f sec, %.1f MB/s", name, get(Count.FILES),
+                get(Count.BYTES) / 1e6, get(Count.LINES), seconds, get(Count.BYTES) / 1e6 / seconds));
+        log.info(String.format("%s produced %d sentences and %d tokens, %.0f tokens/s", name, get(Count.SENTENCES),
+                get(Count.TOKENS), get(Count.TOKENS) / seconds));
+        long staged = 0;
+        for (Stage stage : Stage.values()) {
+            staged += get(stage);
+        }
+        for (Stage stage : Stage.values()) {
+            final long nanos = get(stage);
+            if (nanos > 0) {
+                log.info(String.format("%s %-12s %9.2f sec %5.1f%%", name, stage.name().toLowerCase(), nanos / 1e9,
+                        100.0 * nanos / Math.max(1, staged)));
+            }
+        }
+        if (pool != null && poolSamples > 0) {
+            log.info(String.format("%s pool of %d ran %.1f threads on average, %.0f%% utilisation, %d steals", name,
+                    pool.getParallelism(), poolRunning / poolSamples, 100.0 * poolRunning / poolSamples / pool.getParallelism(),
+                    pool.getStealCount()));
+        }
+    }
+}
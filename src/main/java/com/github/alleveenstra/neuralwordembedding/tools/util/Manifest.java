@@ -0,0 +1,191 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The inputs a preprocessing stage has processed, so a rerun only processes the new and changed ones. Every input is
+// kept with its size, modification time, SHA-1 and the outputs it produced. An input with another modification time but
+// the same size is hashed again and only counts as changed when its content did. The settings of the stage are stored
+// as well, no input is current when they differ, but the outputs of the inputs are still known.
+//
+// # settings
+// input, size, modified, sha1, outputs... separated by tabs
+public class Manifest {
+    private static final Logger log = LoggerFactory.getLogger(Manifest.class);
+
+    public static final String DIRECTORY = "./data/manifest";
+
+    private final File file;
+    private final String settings;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // written with other settings
+    private boolean stale;
+
+    private Manifest(File file, String settings) {
+        this.file = file;
+        this.settings = settings;
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String digest;
+        final String[] outputs;
+
+        Entry(long size, long modified, String digest, String[] outputs) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+            this.outputs = outputs;
+        }
+    }
+
+    // an empty manifest when the file does not exist
+    public static Manifest load(File file, String settings) throws IOException {
+        final Manifest manifest = new Manifest(file, settings);
+        if (!file.exists()) {
+            return manifest;
+        }
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            if (line == null || !line.equals("# " + settings)) {
+                log.info("The settings changed since {} was written, every input is processed again", file);
+                manifest.stale = true;
+            }
+            line = reader.readLine();
+            while (line != null) {
+                final String[] split = line.split("\t");
+                if (split.length >= 4) {
+                    final String[] outputs = Arrays.copyOfRange(split, 4, split.length);
+                    manifest.entries.put(split[0], new Entry(Long.parseLong(split[1]), Long.parseLong(split[2]), split[3], outputs));
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return manifest;
+    }
+
+    // true when the input was processed with the same content before and all its outputs still exist, an input that can
+    // not be read counts as changed
+    public boolean isCurrent(File input) {
+        final String key = key(input);
+        final Entry entry = entries.get(key);
+        if (stale || entry == null || entry.size != input.length()) {
+            return false;
+        }
+        for (String output : entry.outputs) {
+            if (!new File(output).exists()) {
+                return false;
+            }
+        }
+        if (entry.modified == input.lastModified()) {
+            return true;
+        }
+        try {
+            if (!entry.digest.equals(digest(input))) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to hash " + input, e);
+            return false;
+        }
+        // touched but not changed, remember the new time so it is not hashed again
+        entries.put(key, new Entry(entry.size, input.lastModified(), entry.digest, entry.outputs));
+        return true;
+    }
+
+    // true when the input was processed before, its outputs belong to the content it had then
+    public boolean contains(File input) {
+        return entries.containsKey(key(input));
+    }
+
+    public void record(File input, File... outputs) throws IOException {
+        final String[] paths = new String[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            paths[i] = key(outputs[i]);
+        }
+        entries.put(key(input), new Entry(input.length(), input.lastModified(), digest(input), paths));
+    }
+
+    // forgets the inputs that are not among these anymore, returns the outputs they produced
+    public List<File> retain(Collection<File> inputs) {
+        final Set<String> keys = new HashSet<>();
+        for (File input : inputs) {
+            keys.add(key(input));
+        }
+        final List<File> outputs = new ArrayList<>();
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Entry> entry = iterator.next();
+            if (!keys.contains(entry.getKey())) {
+                for (String output : entry.getValue().outputs) {
+                    outputs.add(new File(output));
+                }
+                iterator.remove();
+            }
+        }
+        return outputs;
+    }
+
+    // the manifest on disk no longer describes the outputs, until save is called again
+    public void invalidate() {
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete {}", file);
+        }
+    }
+
+    public void save() throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        final File temporary = new File(file.getPath() + ".tmp");
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+        try {
+            writer.write("# " + settings + "\n");
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                final Entry value = entry.getValue();
+                writer.write(entry.getKey() + "\t" + value.size + "\t" + value.modified + "\t" + value.digest);
+                for (String output : value.outputs) {
+                    writer.write("\t" + output);
+                }
+                writer.write("\n");
+            }
+        } finally {
+            writer.close();
+        }
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+            throw new IOException("Unable to rename " + temporary + " to " + file);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static String digest(File file) throws IOException {
+        final byte[] digest;
+        try {
+            digest = Files.getDigest(file, MessageDigest.getInstance("SHA-1"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static String key(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -8,6 +8,8 @@ import opennlp.tools.tokenize.Tokenizer;
 import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,45 +17,96 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Parser {
-    private static final String SENTENCE_MODEL = "nl-sent.bin";
-    private static final String TOKENIZER_MODEL = "nl-token.bin";
+    private static final String SENTENCE_MODEL_FILE = "nl-sent.bin";
+    private static final String TOKENIZER_MODEL_FILE = "nl-token.bin";
 
     private SentenceDetector sentenceDetector;
     private Tokenizer tokenizer;
+    private RuleTokenizer ruleTokenizer;
+    private char[] buffer = new char[64];
+    private final CountingSink countingSink = new CountingSink();
 
     public Parser() {
-        InputStream sentenceModelStream = null;
-        InputStream modelToken = null;
-        try {
-            sentenceModelStream = Resources.getResource(SENTENCE_MODEL).openStream();
-            final SentenceModel sentenceModel = new SentenceModel(sentenceModelStream);
-            sentenceDetector = new SentenceDetectorME(sentenceModel);
-            modelToken =  Resources.getResource(TOKENIZER_MODEL).openStream();
-            TokenizerModel tokenizerModel = new TokenizerModel(modelToken);
-            tokenizer = new TokenizerME(tokenizerModel);
-        } catch (IOException exception) {
-            throw new IllegalStateException(exception);
-        } finally {
-            IOUtils.closeQuietly(sentenceModelStream);
-            IOUtils.closeQuietly(modelToken);
+        this(false);
+    }
+
+    // the models are thread-safe and loaded once per JVM, the ME wrappers around them are not
+    public Parser(boolean useRuleTokenizer) {
+        sentenceDetector = new SentenceDetectorME(Models.SENTENCE_MODEL);
+        if (useRuleTokenizer) {
+            ruleTokenizer = new RuleTokenizer();
+        } else {
+            tokenizer = new TokenizerME(Models.TOKENIZER_MODEL);
+        }
+    }
+
+    public boolean usesRuleTokenizer() {
+        return ruleTokenizer != null;
+    }
+
+    public static long getModelLoadTime() {
+        return Models.LOAD_TIME;
+    }
+
+    private static class Models {
+        private static final Logger log = LoggerFactory.getLogger(Parser.class);
+
+        static final SentenceModel SENTENCE_MODEL;
+        static final TokenizerModel TOKENIZER_MODEL;
+        static final long LOAD_TIME;
+
+        static {
+            final long start = System.currentTimeMillis();
+            InputStream sentenceModelStream = null;
+            InputStream modelToken = null;
+            try {
+                sentenceModelStream = Resources.getResource(SENTENCE_MODEL_FILE).openStream();
+                SENTENCE_MODEL = new SentenceModel(sentenceModelStream);
+                modelToken = Resources.getResource(TOKENIZER_MODEL_FILE).openStream();
+                TOKENIZER_MODEL = new TokenizerModel(modelToken);
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            } finally {
+                IOUtils.closeQuietly(sentenceModelStream);
+                IOUtils.closeQuietly(modelToken);
+            }
+            LOAD_TIME = System.currentTimeMillis() - start;
+            log.info("Loaded OpenNLP models in {} ms", LOAD_TIME);
         }
     }
 
     public List<String> extractSentences(String input) {
         final List<String> processedSentences = new ArrayList<>();
+        long begin = Instrumentation.begin();
         final String sentences[] = sentenceDetector.sentDetect(input);
+        Instrumentation.end(Instrumentation.Stage.SENTENCES, begin);
+        begin = Instrumentation.begin();
         for (int i = 0; i < sentences.length; i++) {
             final String sanitizedLine = Sanitization.sanitizeLine(sentences[i]);
             if (Validation.isValidSentence(sanitizedLine)) {
                 processedSentences.add(sanitizedLine);
             }
         }
+        Instrumentation.end(Instrumentation.Stage.SANITIZATION, begin);
+        Instrumentation.count(Instrumentation.Count.SENTENCES, processedSentences.size());
         return processedSentences;
     }
 
     public List<String> tokenize(String sentence) {
-        final String[] words = tokenizer.tokenize(sentence);
         final List<String> tokens = new ArrayList<>();
+        if (ruleTokenizer != null) {
+            ruleTokenizer.tokenize(sentence, new RuleTokenizer.TokenSink() {
+                @Override
+                public void token(char[] buffer, int offset, int length) {
+                    tokens.add(new String(buffer, offset, length));
+                }
+            });
+            return tokens;
+        }
+        long begin = Instrumentation.begin();
+        final String[] words = tokenizer.tokenize(sentence);
+        Instrumentation.end(Instrumentation.Stage.TOKENIZATION, begin);
+        begin = Instrumentation.begin();
         for (int i = 0; i < words.length; i++) {
             final String word = words[i].trim();
             if (!word.isEmpty()) {
@@ -64,6 +117,49 @@ public class Parser {
                 }
             }
         }
+        Instrumentation.end(Instrumentation.Stage.SANITIZATION, begin);
         return tokens;
     }
+
+    // the rule tokenizer hands out its own buffer, the OpenNLP tokens are copied into a reused one
+    public void tokenize(String sentence, RuleTokenizer.TokenSink sink) {
+        if (ruleTokenizer != null) {
+            if (!Instrumentation.isEnabled()) {
+                ruleTokenizer.tokenize(sentence, sink);
+                return;
+            }
+            // the rule tokenizer calls the sink as it goes, so the time of the sink counts as tokenization
+            final long begin = Instrumentation.begin();
+            countingSink.start(sink);
+            ruleTokenizer.tokenize(sentence, countingSink);
+            Instrumentation.end(Instrumentation.Stage.TOKENIZATION, begin);
+            Instrumentation.count(Instrumentation.Count.TOKENS, countingSink.tokens);
+            return;
+        }
+        final List<String> tokens = tokenize(sentence);
+        for (String token : tokens) {
+            if (buffer.length < token.length()) {
+                buffer = new char[Math.max(buffer.length * 2, token.length())];
+            }
+            token.getChars(0, token.length(), buffer, 0);
+            sink.token(buffer, 0, token.length());
+        }
+        Instrumentation.count(Instrumentation.Count.TOKENS, tokens.size());
+    }
+
+    private static class CountingSink implements RuleTokenizer.TokenSink {
+        private RuleTokenizer.TokenSink sink;
+        private int tokens;
+
+        void start(RuleTokenizer.TokenSink sink) {
+            this.sink = sink;
+            this.tokens = 0;
+        }
+
+        @Override
+        public void token(char[] buffer, int offset, int length) {
+            tokens++;
+            sink.token(buffer, offset, length);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Parsers are not thread-safe, a task borrows one for as long as it runs on its worker thread and returns it after
+public class ParserPool {
+    private static final Logger log = LoggerFactory.getLogger(ParserPool.class);
+
+    private static final GenericObjectPool<Parser> pool = new GenericObjectPool<>(new BasePoolableObjectFactory<Parser>() {
+        @Override
+        public Parser makeObject() {
+            return new Parser(ruleTokenizer);
+        }
+    });
+
+    private static volatile boolean ruleTokenizer = false;
+
+    static {
+        pool.setMaxActive(-1);
+        pool.setMaxIdle(-1);
+    }
+
+    // only affects parsers created after the call, set it before the first borrow
+    public static void setRuleTokenizer(boolean useRuleTokenizer) {
+        ruleTokenizer = useRuleTokenizer;
+    }
+
+    public static Parser borrow() {
+        try {
+            return pool.borrowObject();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to create a parser", e);
+        }
+    }
+
+    public static void release(Parser parser) {
+        if (parser == null) {
+            return;
+        }
+        try {
+            pool.returnObject(parser);
+        } catch (Exception e) {
+            log.error("Unable to return parser to the pool", e);
+        }
+    }
+
+    public static int getCreated() {
+        return pool.getNumActive() + pool.getNumIdle();
+    }
+}
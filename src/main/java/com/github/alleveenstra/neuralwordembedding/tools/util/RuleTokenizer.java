@@ -0,0 +1,137 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+// Deterministic tokenizer for sanitized sentences. Splits on whitespace, cuts punctuation off both ends of a word and
+// keeps it inside when it sits between letters or digits, so "1.5", "12:30" and "beth-semes" stay whole. Tokens are
+// lowercased and digits replaced like Sanitization.sanitizeWord, straight into a reusable buffer. Not thread-safe.
+public class RuleTokenizer {
+
+    public interface TokenSink {
+        void token(char[] buffer, int offset, int length);
+    }
+
+    private char[] buffer = new char[64];
+
+    public void tokenize(CharSequence sentence, TokenSink sink) {
+        final int length = sentence.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && Character.isWhitespace(sentence.charAt(position))) {
+                position++;
+            }
+            int end = position;
+            while (end < length && !Character.isWhitespace(sentence.charAt(end))) {
+                end++;
+            }
+            if (end > position) {
+                word(sentence, position, end, sink);
+            }
+            position = end;
+        }
+    }
+
+    private void word(CharSequence sentence, int start, int end, TokenSink sink) {
+        // markup such as the <s> and </s> paragraph markers is one token
+        if (end - start > 2 && sentence.charAt(start) == '<' && sentence.charAt(end - 1) == '>') {
+            emit(sentence, start, end, sink);
+            return;
+        }
+        // leading punctuation, every character is a token of its own
+        while (start < end && !Character.isLetterOrDigit(sentence.charAt(start))) {
+            emit(sentence, start, start + 1, sink);
+            start++;
+        }
+        if (start == end) {
+            return;
+        }
+        int coreEnd = end;
+        while (!Character.isLetterOrDigit(sentence.charAt(coreEnd - 1))) {
+            coreEnd--;
+        }
+        // like OpenNLP, a capitalized word keeps a single full stop as if it were an abbreviation
+        if (coreEnd < end && sentence.charAt(coreEnd) == '.' && (coreEnd + 1 == end || sentence.charAt(coreEnd + 1) != '.')
+                && isUpperCase(sentence, start, coreEnd)) {
+            emit(sentence, start, coreEnd + 1, sink);
+            trailing(sentence, coreEnd + 1, end, sink);
+            return;
+        }
+        // a run of punctuation inside the word that is not a single joiner splits it
+        int tokenStart = start;
+        int position = start;
+        while (position < coreEnd) {
+            if (Character.isLetterOrDigit(sentence.charAt(position))) {
+                position++;
+                continue;
+            }
+            if (isJoiner(sentence.charAt(position)) && Character.isLetterOrDigit(sentence.charAt(position + 1))) {
+                position++;
+                continue;
+            }
+            emit(sentence, tokenStart, position, sink);
+            while (position < coreEnd && !Character.isLetterOrDigit(sentence.charAt(position))) {
+                emit(sentence, position, position + 1, sink);
+                position++;
+            }
+            tokenStart = position;
+        }
+        emit(sentence, tokenStart, coreEnd, sink);
+        trailing(sentence, coreEnd, end, sink);
+    }
+
+    // repeated dots stay together as an ellipsis, other trailing punctuation is one token per character
+    private void trailing(CharSequence sentence, int start, int end, TokenSink sink) {
+        int position = start;
+        while (position < end) {
+            int next = position + 1;
+            if (sentence.charAt(position) == '.') {
+                while (next < end && sentence.charAt(next) == '.') {
+                    next++;
+                }
+            }
+            emit(sentence, position, next, sink);
+            position = next;
+        }
+    }
+
+    private static boolean isUpperCase(CharSequence sentence, int start, int end) {
+        if (end - start < 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isUpperCase(sentence.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isJoiner(char c) {
+        return c == '-' || c == '.' || c == ',' || c == ':' || c == '/' || c == '&' || c == '_';
+    }
+
+    private void emit(CharSequence sentence, int start, int end, TokenSink sink) {
+        final int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        if (buffer.length < length + 2) {
+            buffer = new char[Math.max(buffer.length * 2, length + 2)];
+        }
+        boolean digits = false;
+        for (int i = 0; i < length; i++) {
+            final char c = sentence.charAt(start + i);
+            if (c >= '0' && c <= '9') {
+                buffer[i + 1] = 'D';
+                digits = true;
+            } else {
+                buffer[i + 1] = Character.toLowerCase(c);
+            }
+        }
+        if (digits) {
+            buffer[0] = '*';
+            buffer[length + 1] = '*';
+            sink.token(buffer, 0, length + 2);
+        } else {
+            sink.token(buffer, 1, length);
+        }
+    }
+}
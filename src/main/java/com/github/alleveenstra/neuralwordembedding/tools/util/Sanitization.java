@@ -10,12 +10,6 @@ public class Sanitization {
 
     public static final Pattern DIACRITICS_AND_FRIENDS = Pattern.compile("[\\p{InCombiningDiacriticalMarks}\\p{IsLm}\\p{IsSk}]+");
 
-    private static String stripDiacritics(String str) {
-        str = Normalizer.normalize(str, Normalizer.Form.NFD);
-        str = DIACRITICS_AND_FRIENDS.matcher(str).replaceAll("");
-        return str;
-    }
-
     public static String sanitizeWord(String input) {
         StringBuilder stringBuilder = new StringBuilder(input);
         final Matcher numbers = NUMBERS.matcher(input);
@@ -31,30 +25,102 @@ public class Sanitization {
         return stringBuilder.toString();
     }
 
+    // translations applied before the NFD normalization, null keeps the character
+    private static final String[] TRANSLATIONS = new String[0x2100];
+
+    static {
+        TRANSLATIONS['\r'] = "";
+        TRANSLATIONS['\u00bb'] = ""; // »
+        TRANSLATIONS['\u201d'] = "\""; // ”
+        TRANSLATIONS['\u201c'] = "\""; // “
+        TRANSLATIONS['\u2018'] = "'"; // ‘
+        TRANSLATIONS['\u2019'] = "'"; // ’
+        TRANSLATIONS['\u00b2'] = "2"; // ²
+        TRANSLATIONS['\u00b3'] = "3"; // ³
+        TRANSLATIONS['\u2026'] = "..."; // …
+        TRANSLATIONS['\u2013'] = "-"; // –
+        TRANSLATIONS['\u2014'] = "-"; // —
+        TRANSLATIONS['\u00ad'] = "-"; // soft hyphen
+        TRANSLATIONS['\u00d7'] = "*"; // ×
+        TRANSLATIONS['\u00b0'] = "DEG"; // °
+        TRANSLATIONS['\u02da'] = "DEG"; // ˚
+        TRANSLATIONS['\u00ba'] = "DEG"; // º
+        TRANSLATIONS['\u20ac'] = "EUR"; // €
+        TRANSLATIONS['\u00a3'] = "PND"; // £
+        TRANSLATIONS['\u00ab'] = ""; // «
+    }
+
+    // Same result as translating, normalizing to NFD, stripping diacritics and modifiers, replacing no-break spaces and
+    // removing quotes, in that order. ASCII input never needs the normalization.
     public static String sanitizeLine(String input) {
-        input = input.replaceAll("\r", "");
-        input = input.replaceAll("»", "");
-        input = input.replaceAll("”", "\"");
-        input = input.replaceAll("“", "\"");
-        input = input.replaceAll("‘", "'");
-        input = input.replaceAll("’", "'");
-        input = input.replaceAll("²", "2");
-        input = input.replaceAll("³", "3");
-        input = input.replaceAll("…", "...");
-        input = input.replaceAll("–", "-");
-        input = input.replaceAll("—", "-");
-        input = input.replaceAll("­", "-");
-        input = input.replaceAll("×", "*");
-        input = input.replaceAll("°", "DEG");
-        input = input.replaceAll("˚", "DEG");
-        input = input.replaceAll("º", "DEG");
-        input = input.replaceAll("€", "EUR");
-        input = input.replaceAll("£", "PND");
-        input = input.replaceAll("«", "");
-        input = stripDiacritics(input);
-        input = input.replaceAll(" ", " "); // do not optimize
-        input = input.replaceAll("'", ""); // remove 's
-        input = input.replaceAll("\"", ""); // remove "s
-        return input;
+        final int length = input.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = input.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return stripAscii(input);
+        }
+        final StringBuilder translated = new StringBuilder(length + 16);
+        ascii = true;
+        for (int i = 0; i < length; i++) {
+            final char c = input.charAt(i);
+            final String translation = c < TRANSLATIONS.length ? TRANSLATIONS[c] : null;
+            if (translation == null) {
+                translated.append(c);
+                ascii &= c < 0x80;
+            } else {
+                translated.append(translation);
+            }
+        }
+        if (ascii) {
+            return stripAscii(translated.toString());
+        }
+        final String normalized = Normalizer.normalize(translated, Normalizer.Form.NFD);
+        final StringBuilder result = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); ) {
+            final int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '\'' || codePoint == '"' || isDiacriticOrModifier(codePoint)) {
+                continue;
+            }
+            if (codePoint == '\u00a0') {
+                result.append(' ');
+            } else {
+                result.appendCodePoint(codePoint);
+            }
+        }
+        return result.toString();
+    }
+
+    // removes the carriage returns, quotes and the two ASCII modifier symbols, ^ and `
+    private static String stripAscii(String input) {
+        final int length = input.length();
+        int i = 0;
+        while (i < length && !isStrippedAscii(input.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return input;
+        }
+        final StringBuilder result = new StringBuilder(length);
+        result.append(input, 0, i);
+        for (; i < length; i++) {
+            final char c = input.charAt(i);
+            if (!isStrippedAscii(c)) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean isStrippedAscii(char c) {
+        return c == '\r' || c == '\'' || c == '"' || c == '^' || c == '`';
+    }
+
+    private static boolean isDiacriticOrModifier(int codePoint) {
+        final int type = Character.getType(codePoint);
+        return type == Character.MODIFIER_LETTER || type == Character.MODIFIER_SYMBOL
+                || Character.UnicodeBlock.of(codePoint) == Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS;
     }
 }
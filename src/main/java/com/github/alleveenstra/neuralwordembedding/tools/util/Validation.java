@@ -8,7 +8,25 @@ public class Validation {
     private static final Pattern ALLOWED_PATTERN = Pattern.compile("[A-Za-z0-9_=!@#%&,/:;\"'`<> \\|\\}\\{\\?\\.\\*\\(\\)\\^\\$\\-\\+\\]\\[\\\\]+");
     private static final Pattern DIACRITIC_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
 
+    private static final boolean[] ALLOWED_ASCII = new boolean[0x80];
+
+    static {
+        for (char c = 0; c < ALLOWED_ASCII.length; c++) {
+            ALLOWED_ASCII[c] = ALLOWED_PATTERN.matcher(String.valueOf(c)).matches();
+        }
+    }
+
     public static boolean isValidSentence(final String sentence) {
+        // NFD leaves ASCII alone and there are no diacritics to remove, a table lookup per character is enough
+        boolean ascii = true, allowed = !sentence.isEmpty();
+        for (int i = 0; i < sentence.length() && ascii; i++) {
+            final char c = sentence.charAt(i);
+            ascii = c < 0x80;
+            allowed &= ascii && ALLOWED_ASCII[c];
+        }
+        if (ascii) {
+            return allowed;
+        }
         final String normalized = Normalizer.normalize(sentence, Normalizer.Form.NFD);
         final String cleaned = DIACRITIC_MARKS.matcher(normalized).replaceAll("");
         final Matcher matcher = ALLOWED_PATTERN.matcher(cleaned);
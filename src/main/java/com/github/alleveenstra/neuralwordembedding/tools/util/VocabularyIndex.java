@@ -0,0 +1,334 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+// Minimal perfect hash from the UTF-8 bytes of a word to its vocabulary id, with the words, ids and counts in one flat
+// buffer that is memory mapped as it is, so opening a vocabulary does not parse or allocate anything per word.
+// Words are hashed into buckets of about two, the largest buckets are placed first and every bucket gets the first
+// displacement that moves all its words to free slots (hash and displace). Buckets of one word store their slot. An
+// unknown word ends up on some slot and is rejected by comparing the bytes. Lookups are thread-safe.
+//
+// magic, version, size, buckets, max id, padding, seed, source length, source modified,
+// counts[slot], displacements[bucket], ids[slot], offsets[slot + 1], slots[id], word bytes
+public class VocabularyIndex {
+    public static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x4e575649; // NWVI
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 48;
+    private static final int WORDS_PER_BUCKET = 2;
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+    private static final int MAX_SEEDS = 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int buckets;
+    private final int maxId;
+    private final long seed;
+
+    // section offsets in the buffer
+    private final int counts;
+    private final int displacements;
+    private final int ids;
+    private final int offsets;
+    private final int slots;
+    private final int bytes;
+
+    private VocabularyIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        size = buffer.getInt(8);
+        buckets = buffer.getInt(12);
+        maxId = buffer.getInt(16);
+        seed = buffer.getLong(24);
+        counts = HEADER_SIZE;
+        displacements = counts + 8 * size;
+        ids = displacements + 4 * buckets;
+        offsets = ids + 4 * size;
+        slots = offsets + 4 * (size + 1);
+        bytes = slots + 4 * (maxId + 1);
+    }
+
+    public static VocabularyIndex map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            return map(randomAccessFile.getChannel(), 0, randomAccessFile.length());
+        } finally {
+            Closeables.closeQuietly(randomAccessFile);
+        }
+    }
+
+    // maps an index written at an offset in a larger file, the mapping stays valid after the channel is closed
+    public static VocabularyIndex map(FileChannel channel, long offset, long length) throws IOException {
+        if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+            throw new IOException("A vocabulary index can not be " + length + " bytes long");
+        }
+        final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a vocabulary index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported vocabulary index version " + buffer.getInt(4));
+        }
+        return new VocabularyIndex(buffer);
+    }
+
+    // Builds an index in memory, the words need to be distinct and the ids at least zero. The source is the file the
+    // words were read from, or null.
+    public static VocabularyIndex build(List<String> words, int[] ids, long[] counts, File source) {
+        final int size = words.size();
+        final byte[][] keys = new byte[size][];
+        int maxId = -1;
+        long length = HEADER_SIZE + 16L * size + 4;
+        for (int key = 0; key < size; key++) {
+            keys[key] = words.get(key).getBytes(Charsets.UTF_8);
+            maxId = Math.max(maxId, ids[key]);
+            length += keys[key].length;
+        }
+        final int buckets = Math.max(1, size / WORDS_PER_BUCKET);
+        length += 4L * buckets + 4L * (maxId + 1);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A vocabulary of " + size + " words does not fit in one index");
+        }
+
+        final long[] hashes = new long[size];
+        final int[] displacement = new int[buckets];
+        int[] slotKeys = null;
+        long seed = 0;
+        for (int attempt = 0; slotKeys == null; attempt++) {
+            if (attempt == MAX_SEEDS) {
+                throw new IllegalArgumentException("Unable to build a perfect hash, are the words distinct?");
+            }
+            seed = mix(attempt + 1);
+            for (int key = 0; key < size; key++) {
+                hashes[key] = hash(keys[key], 0, keys[key].length, seed);
+            }
+            slotKeys = place(hashes, buckets, displacement);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, size);
+        buffer.putInt(12, buckets);
+        buffer.putInt(16, maxId);
+        buffer.putLong(24, seed);
+        buffer.putLong(32, source == null ? -1 : source.length());
+        buffer.putLong(40, source == null ? -1 : source.lastModified());
+        final VocabularyIndex index = new VocabularyIndex(buffer);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            buffer.putInt(index.displacements + 4 * bucket, displacement[bucket]);
+        }
+        for (int id = 0; id <= maxId; id++) {
+            buffer.putInt(index.slots + 4 * id, -1);
+        }
+        int offset = 0;
+        for (int slot = 0; slot < size; slot++) {
+            final int key = slotKeys[slot];
+            buffer.putLong(index.counts + 8 * slot, counts[key]);
+            buffer.putInt(index.ids + 4 * slot, ids[key]);
+            buffer.putInt(index.offsets + 4 * slot, offset);
+            buffer.putInt(index.slots + 4 * ids[key], slot);
+            buffer.position(index.bytes + offset);
+            buffer.put(keys[key]);
+            offset += keys[key].length;
+        }
+        buffer.putInt(index.offsets + 4 * size, offset);
+        buffer.clear();
+        return index;
+    }
+
+    public void write(OutputStream output) throws IOException {
+        final ByteBuffer source = buffer.duplicate();
+        source.clear();
+        final byte[] chunk = new byte[WRITE_BUFFER_SIZE];
+        while (source.hasRemaining()) {
+            final int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            output.write(chunk, 0, length);
+        }
+    }
+
+    // true when the index was built from this version of the file
+    public boolean isCompiledFrom(File source) {
+        return buffer.getLong(32) == source.length() && buffer.getLong(40) == source.lastModified();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMaxId() {
+        return maxId;
+    }
+
+    // -1 when the word is not in the vocabulary
+    public int id(String word) {
+        final byte[] key = word.getBytes(Charsets.UTF_8);
+        return id(key, 0, key.length);
+    }
+
+    public int id(byte[] key, int offset, int length) {
+        if (size == 0) {
+            return -1;
+        }
+        final long hash = hash(key, offset, length, seed);
+        final int displacement = buffer.getInt(displacements + 4 * bucket(hash, buckets));
+        final int slot = displacement < 0 ? -displacement - 1 : slot(hash, displacement, size);
+        final int start = buffer.getInt(offsets + 4 * slot);
+        if (buffer.getInt(offsets + 4 * slot + 4) - start != length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(bytes + start + i) != key[offset + i]) {
+                return -1;
+            }
+        }
+        return buffer.getInt(ids + 4 * slot);
+    }
+
+    public boolean contains(String word) {
+        return id(word) >= 0;
+    }
+
+    // null when no word has this id
+    public String word(int id) {
+        final int slot = slot(id);
+        if (slot < 0) {
+            return null;
+        }
+        final int start = buffer.getInt(offsets + 4 * slot);
+        final byte[] word = new byte[buffer.getInt(offsets + 4 * slot + 4) - start];
+        final ByteBuffer source = buffer.duplicate();
+        source.position(bytes + start);
+        source.get(word);
+        return new String(word, Charsets.UTF_8);
+    }
+
+    // 0 when no word has this id
+    public long count(int id) {
+        final int slot = slot(id);
+        return slot < 0 ? 0 : buffer.getLong(counts + 8 * slot);
+    }
+
+    private int slot(int id) {
+        return id < 0 || id > maxId ? -1 : buffer.getInt(slots + 4 * id);
+    }
+
+    // the key on every slot, or null when some bucket has no displacement that fits
+    private static int[] place(long[] hashes, int buckets, int[] displacement) {
+        final int size = hashes.length;
+        final int[] start = new int[buckets + 1];
+        for (long hash : hashes) {
+            start[bucket(hash, buckets) + 1]++;
+        }
+        int largest = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            largest = Math.max(largest, start[bucket + 1]);
+            start[bucket + 1] += start[bucket];
+        }
+        final int[] members = new int[size];
+        final int[] fill = new int[buckets];
+        for (int key = 0; key < size; key++) {
+            final int bucket = bucket(hashes[key], buckets);
+            members[start[bucket] + fill[bucket]++] = key;
+        }
+        // buckets by descending size
+        final int[] bySize = new int[largest + 2];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bySize[largest - (start[bucket + 1] - start[bucket]) + 1]++;
+        }
+        for (int i = 1; i < bySize.length; i++) {
+            bySize[i] += bySize[i - 1];
+        }
+        final int[] order = new int[buckets];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            order[bySize[largest - (start[bucket + 1] - start[bucket])]++] = bucket;
+        }
+
+        final int[] slotKeys = new int[size];
+        final boolean[] taken = new boolean[size];
+        final int[] candidate = new int[largest];
+        int free = 0;
+        for (int bucket : order) {
+            final int first = start[bucket];
+            final int count = start[bucket + 1] - first;
+            if (count == 0) {
+                break;
+            }
+            if (count == 1) {
+                // the remaining buckets hold one word, they take the free slots in order
+                while (taken[free]) {
+                    free++;
+                }
+                taken[free] = true;
+                slotKeys[free] = members[first];
+                displacement[bucket] = -free - 1;
+                continue;
+            }
+            int d = 0;
+            search:
+            for (; d < MAX_DISPLACEMENT; d++) {
+                for (int k = 0; k < count; k++) {
+                    final int slot = slot(hashes[members[first + k]], d, size);
+                    if (taken[slot]) {
+                        continue search;
+                    }
+                    for (int j = 0; j < k; j++) {
+                        if (candidate[j] == slot) {
+                            continue search;
+                        }
+                    }
+                    candidate[k] = slot;
+                }
+                break;
+            }
+            if (d == MAX_DISPLACEMENT) {
+                return null;
+            }
+            for (int k = 0; k < count; k++) {
+                taken[candidate[k]] = true;
+                slotKeys[candidate[k]] = members[first + k];
+            }
+            displacement[bucket] = d;
+        }
+        return slotKeys;
+    }
+
+    private static int bucket(long hash, int buckets) {
+        return (int) ((hash >>> 1) % buckets);
+    }
+
+    private static int slot(long hash, int displacement, int size) {
+        return (int) ((mix(hash + displacement * 0x9e3779b97f4a7c15L) >>> 1) % size);
+    }
+
+    // 64 bit FNV-1a with a final mix
+    static long hash(byte[] key, int offset, int length, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= key[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
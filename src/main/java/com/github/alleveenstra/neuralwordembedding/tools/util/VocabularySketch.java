@@ -0,0 +1,133 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Vocabulary in bounded memory. A Misra-Gries summary keeps the frequent words: when it holds more than its capacity,
+// the count of the word at half the capacity is subtracted from all words and the ones at or below zero are dropped.
+// A count-min sketch next to it gives an upper bound on the count of every word it keeps. Summaries built with the same
+// budget can be merged.
+public class VocabularySketch implements RuleTokenizer.TokenSink {
+    private static final int DEPTH = 4;
+    // table slots, id arrays, key bytes and the slack of doubling arrays
+    private static final int BYTES_PER_WORD = 80;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final int capacity;
+    private WordCounter counter;
+    // the most any count in the summary can be below its true count
+    private long error;
+    private long tokens;
+
+    private final long[] sketch;
+    private final int width;
+
+    private byte[] scratch = new byte[64];
+
+    // a quarter of the budget goes to the sketch, the rest to the summary
+    public VocabularySketch(long memoryBudget) {
+        capacity = (int) Math.min(Integer.MAX_VALUE / 4, Math.max(MIN_CAPACITY, memoryBudget * 3 / 4 / BYTES_PER_WORD));
+        width = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(MIN_CAPACITY, memoryBudget / 4 / 8 / DEPTH)));
+        sketch = new long[width * DEPTH];
+        counter = new WordCounter(capacity);
+    }
+
+    @Override
+    public void token(char[] buffer, int offset, int length) {
+        scratch = WordCounter.ensureCapacity(scratch, length);
+        final int bytes = WordCounter.encode(buffer, offset, length, scratch);
+        final int hash = WordCounter.hash(scratch, 0, bytes);
+        for (int row = 0; row < DEPTH; row++) {
+            sketch[row * width + cell(hash, row)]++;
+        }
+        counter.add(scratch, 0, bytes, 1);
+        tokens++;
+        if (counter.size() > capacity) {
+            prune();
+        }
+    }
+
+    public void merge(VocabularySketch other) {
+        if (other.width != width || other.capacity != capacity) {
+            throw new IllegalArgumentException("Sketches with different budgets can not be merged");
+        }
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] += other.sketch[i];
+        }
+        counter.addAll(other.counter);
+        error += other.error;
+        tokens += other.tokens;
+        if (counter.size() > capacity) {
+            prune();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public long getTokens() {
+        return tokens;
+    }
+
+    // the words with the highest estimates, most frequent first, counted with their estimate
+    public WordCounter top(int size) {
+        final int words = counter.size();
+        final long[] estimates = new long[words];
+        final Integer[] order = new Integer[words];
+        for (int id = 0; id < words; id++) {
+            estimates[id] = estimate(id);
+            order[id] = id;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(estimates[o2], estimates[o1]);
+            }
+        });
+        final int count = Math.min(size, words);
+        final WordCounter result = new WordCounter(count);
+        for (int rank = 0; rank < count; rank++) {
+            final int id = result.add(counter, order[rank]);
+            result.addCount(id, estimates[order[rank]] - counter.count(order[rank]));
+        }
+        return result;
+    }
+
+    // the sketch and the summary count plus its error are both upper bounds, the smaller one wins
+    private long estimate(int id) {
+        final int hash = counter.hash(id);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch[row * width + cell(hash, row)]);
+        }
+        return Math.min(estimate, counter.count(id) + error);
+    }
+
+    private int cell(int hash, int row) {
+        // double hashing, the second hash is derived from the first one
+        final int second = (hash * 0x9e3779b9) | 1;
+        return (hash + row * second) & (width - 1);
+    }
+
+    private void prune() {
+        final long[] counts = new long[counter.size()];
+        for (int id = 0; id < counts.length; id++) {
+            counts[id] = counter.count(id);
+        }
+        Arrays.sort(counts);
+        final long threshold = counts[counts.length - capacity / 2 - 1];
+        final WordCounter survivors = new WordCounter(capacity);
+        for (int id = 0; id < counts.length; id++) {
+            if (counter.count(id) > threshold) {
+                survivors.addCount(survivors.add(counter, id), -threshold);
+            }
+        }
+        counter = survivors;
+        error += threshold;
+    }
+}
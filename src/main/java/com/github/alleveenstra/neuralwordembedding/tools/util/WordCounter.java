@@ -0,0 +1,289 @@
+package com.github.alleveenstra.neuralwordembedding.tools.util;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.util.Arrays;
+
+// Open addressing word counter. Words are stored once as UTF-8 bytes in a single slab and get dense ids in the order they
+// were first added, the table only holds ids. Counting a token from a char buffer does not allocate. Not thread-safe.
+public class WordCounter implements RuleTokenizer.TokenSink {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    // slot -> id + 1, zero is an empty slot
+    private int[] table;
+    private int mask;
+
+    // per id
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private long[] counts;
+    private int size;
+
+    private byte[] slab;
+    private int slabSize;
+
+    private byte[] scratch = new byte[64];
+
+    // a restricted counter only counts the words it already has
+    private boolean restricted;
+
+    public WordCounter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public WordCounter(int expectedWords) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedWords * 2) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        mask = capacity - 1;
+        offsets = new int[capacity / 2];
+        lengths = new int[capacity / 2];
+        hashes = new int[capacity / 2];
+        counts = new long[capacity / 2];
+        slab = new byte[capacity * 8];
+    }
+
+    @Override
+    public void token(char[] buffer, int offset, int length) {
+        if (restricted) {
+            addIfPresent(buffer, offset, length);
+        } else {
+            add(buffer, offset, length);
+        }
+    }
+
+    // the same words and ids with all counts at zero, restricted to those words
+    public WordCounter restrictedCopy() {
+        final WordCounter copy = new WordCounter(size);
+        for (int id = 0; id < size; id++) {
+            copy.findOrInsert(slab, offsets[id], lengths[id], hashes[id]);
+        }
+        copy.restricted = true;
+        return copy;
+    }
+
+    // returns the id of the word
+    public int add(char[] buffer, int offset, int length) {
+        scratch = ensureCapacity(scratch, length);
+        final int bytes = encode(buffer, offset, length, scratch);
+        return add(scratch, 0, bytes, 1);
+    }
+
+    // returns the id of the word, or -1 without counting it when the word is unknown
+    public int addIfPresent(char[] buffer, int offset, int length) {
+        scratch = ensureCapacity(scratch, length);
+        final int bytes = encode(buffer, offset, length, scratch);
+        final int id = find(scratch, 0, bytes, hash(scratch, 0, bytes));
+        if (id >= 0) {
+            counts[id]++;
+        }
+        return id;
+    }
+
+    public int add(String word, long count) {
+        final byte[] bytes = word.getBytes(Charsets.UTF_8);
+        return add(bytes, 0, bytes.length, count);
+    }
+
+    public int add(byte[] key, int offset, int length, long count) {
+        final int id = findOrInsert(key, offset, length, hash(key, offset, length));
+        counts[id] += count;
+        return id;
+    }
+
+    // adds the word and count of an id of another counter, returns the id in this counter
+    public int add(WordCounter other, int otherId) {
+        final int id = findOrInsert(other.slab, other.offsets[otherId], other.lengths[otherId], other.hashes[otherId]);
+        counts[id] += other.counts[otherId];
+        return id;
+    }
+
+    public void addAll(WordCounter other) {
+        for (int id = 0; id < other.size; id++) {
+            add(other, id);
+        }
+    }
+
+    // -1 when the word was never added
+    public int id(String word) {
+        final byte[] key = word.getBytes(Charsets.UTF_8);
+        return find(key, 0, key.length, hash(key, 0, key.length));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long count(int id) {
+        return counts[id];
+    }
+
+    public String word(int id) {
+        return new String(slab, offsets[id], lengths[id], Charsets.UTF_8);
+    }
+
+    // one word and its count per line, words that are counted zero times are left out
+    public void write(File file) throws IOException {
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE);
+        try {
+            for (int id = 0; id < size; id++) {
+                if (counts[id] != 0) {
+                    output.write(slab, offsets[id], lengths[id]);
+                    output.write('\t');
+                    output.write(Long.toString(counts[id]).getBytes(Charsets.UTF_8));
+                    output.write('\n');
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    public static WordCounter read(File file) throws IOException {
+        final WordCounter counter = new WordCounter();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                final int tab = line.lastIndexOf('\t');
+                if (tab > 0) {
+                    counter.add(line.substring(0, tab), Long.parseLong(line.substring(tab + 1)));
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return counter;
+    }
+
+    int hash(int id) {
+        return hashes[id];
+    }
+
+    // adds to the count of an id, a negative amount lowers it
+    void addCount(int id, long count) {
+        counts[id] += count;
+    }
+
+    // the slot holding the key, or the empty slot where it belongs
+    private int slot(byte[] key, int offset, int length, int hash) {
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            final int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, key, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int find(byte[] key, int offset, int length, int hash) {
+        return table[slot(key, offset, length, hash)] - 1;
+    }
+
+    private int findOrInsert(byte[] key, int offset, int length, int hash) {
+        final int slot = slot(key, offset, length, hash);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        final int id = size++;
+        if (id == counts.length) {
+            offsets = Arrays.copyOf(offsets, id * 2);
+            lengths = Arrays.copyOf(lengths, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+            counts = Arrays.copyOf(counts, id * 2);
+        }
+        if (slabSize + length > slab.length) {
+            slab = Arrays.copyOf(slab, Math.max(slab.length * 2, slabSize + length));
+        }
+        System.arraycopy(key, offset, slab, slabSize, length);
+        offsets[id] = slabSize;
+        lengths[id] = length;
+        hashes[id] = hash;
+        slabSize += length;
+        table[slot] = id + 1;
+        // keep the load factor at most one half
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private boolean equals(int id, byte[] key, int offset, int length) {
+        if (lengths[id] != length) {
+            return false;
+        }
+        final int start = offsets[id];
+        for (int i = 0; i < length; i++) {
+            if (slab[start + i] != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a with a final mix, so the low bits used for the slot depend on every byte
+    static int hash(byte[] key, int offset, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= key[i];
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    // room for the UTF-8 encoding of length chars
+    static byte[] ensureCapacity(byte[] target, int length) {
+        return target.length < length * 3 ? new byte[length * 3] : target;
+    }
+
+    // UTF-8 into the target, unpaired surrogates become '?' like String.getBytes does
+    static int encode(char[] buffer, int offset, int length, byte[] target) {
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final char c = buffer[i];
+            if (c < 0x80) {
+                target[position++] = (byte) c;
+            } else if (c < 0x800) {
+                target[position++] = (byte) (0xc0 | (c >> 6));
+                target[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < offset + length && Character.isLowSurrogate(buffer[i + 1])) {
+                final int codePoint = Character.toCodePoint(c, buffer[++i]);
+                target[position++] = (byte) (0xf0 | (codePoint >> 18));
+                target[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                target[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                target[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                target[position++] = '?';
+            } else {
+                target[position++] = (byte) (0xe0 | (c >> 12));
+                target[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                target[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position;
+    }
+}
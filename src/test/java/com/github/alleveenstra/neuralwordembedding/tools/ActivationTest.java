@@ -0,0 +1,110 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.*;
+import com.github.alleveenstra.neuralwordembedding.tools.training.ModelContainer;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class ActivationTest {
+
+    @Test
+    public void tabulatedIsCloseToTanh() {
+        assertThat(maxError(Activations.TABULATED), lessThan(1.5e-6));
+    }
+
+    @Test
+    public void rationalIsCloseToTanh() {
+        assertThat(maxError(Activations.RATIONAL), lessThan(1e-4));
+    }
+
+    @Test
+    public void hardTanhClamps() {
+        assertThat(Activations.HARD.apply(0.25), equalTo(0.25));
+        assertThat(Activations.HARD.apply(3.0), equalTo(1.0));
+        assertThat(Activations.HARD.apply(-3.0), equalTo(-1.0));
+        final double[] outputs = {0.25, 1.0, -1.0};
+        Activations.HARD.derive(outputs, 0, outputs.length);
+        assertThat(outputs[0], equalTo(1.0));
+        assertThat(outputs[1], equalTo(0.0));
+        assertThat(outputs[2], equalTo(0.0));
+    }
+
+    @Test
+    public void bulkMatchesScalar() {
+        for (Activation activation : new Activation[]{Activations.TANH, Activations.TABULATED, Activations.RATIONAL, Activations.HARD}) {
+            final double[] values = new double[1000];
+            for (int index = 0; index < values.length; index++) {
+                values[index] = (index - 500) / 50.0;
+            }
+            // only the range is touched
+            activation.apply(values, 1, values.length - 2);
+            assertThat(values[0], equalTo(-10.0));
+            for (int index = 1; index < values.length - 1; index++) {
+                assertThat(values[index], equalTo(activation.apply((index - 500) / 50.0)));
+            }
+        }
+    }
+
+    @Test
+    public void tanhGradient() {
+        assertThat(meanGradientDifference(Activations.TANH), lessThan(1e-6));
+    }
+
+    @Test
+    public void tabulatedGradient() {
+        assertThat(meanGradientDifference(Activations.TABULATED), lessThan(1e-5));
+    }
+
+    @Test
+    public void rationalGradient() {
+        assertThat(meanGradientDifference(Activations.RATIONAL), lessThan(1e-6));
+    }
+
+    @Test
+    public void hardGradient() {
+        assertThat(meanGradientDifference(Activations.HARD), lessThan(1e-6));
+    }
+
+    @Test
+    public void activationIsKeptWithTheModel() throws IOException {
+        final FeedForwardNetwork network = new FeedForwardNetwork(4, 3, 1);
+        network.setActivation(Activations.HARD);
+        final File file = File.createTempFile("model", ModelContainer.EXTENSION);
+        file.deleteOnExit();
+        ModelContainer.write(new HashMap<String, DoubleMatrix>(), network, file);
+        final FeedForwardNetwork read = ModelContainer.open(file).readNetwork(false);
+        assertThat(read.getActivation(), equalTo(Activations.HARD));
+        assertThat(new BackPropagationTrainer(read, MatrixBackends.JAVA).activationFunction, equalTo(Activations.HARD));
+    }
+
+    private static double maxError(Activation activation) {
+        double max = 0.0;
+        for (int step = -200000; step <= 200000; step++) {
+            final double value = step / 10000.0;
+            max = Math.max(max, Math.abs(activation.apply(value) - Math.tanh(value)));
+        }
+        return max;
+    }
+
+    // like TestNN.verify_gradient, on a network small enough to check every weight
+    private static double meanGradientDifference(Activation activation) {
+        org.jblas.util.Random.seed(37);
+        final FeedForwardNetwork network = new FeedForwardNetwork(20, 10, 1);
+        final BackPropagationTrainer trainer = new BackPropagationTrainer(network, MatrixBackends.JAVA);
+        trainer.activationFunction = activation;
+        final ZealousWordEmbeddingTrainingStrategy strategy = new ZealousWordEmbeddingTrainingStrategy(network, trainer, new HashMap<String, DoubleMatrix>(), 1);
+        try {
+            return strategy.verifyGradient(DoubleMatrix.rand(1, 20).subi(0.5), DoubleMatrix.rand(1, 1));
+        } finally {
+            strategy.shutdown();
+        }
+    }
+}
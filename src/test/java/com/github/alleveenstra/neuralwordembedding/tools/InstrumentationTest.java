@@ -0,0 +1,74 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Instrumentation;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class InstrumentationTest {
+
+    // every task counts 1000 lines of 3 tokens and reads 4096 bytes through a counting stream
+    private static void count(ForkJoinPool pool, int tasks) {
+        final List<ForkJoinTask<?>> forks = new ArrayList<>();
+        for (int task = 0; task < tasks; task++) {
+            forks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int line = 0; line < 1000; line++) {
+                        final long begin = Instrumentation.begin();
+                        Instrumentation.count(Instrumentation.Count.LINES, 1);
+                        Instrumentation.count(Instrumentation.Count.TOKENS, 3);
+                        Instrumentation.end(Instrumentation.Stage.TOKENIZATION, begin);
+                    }
+                    final InputStream input = Instrumentation.counting(new ByteArrayInputStream(new byte[4096]));
+                    try {
+                        IOUtils.toByteArray(input);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    Instrumentation.count(Instrumentation.Count.FILES, 1);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> fork : forks) {
+            fork.join();
+        }
+    }
+
+    @Test
+    public void mergesTheCountsOfAllThreads() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Instrumentation.start("test", 64 * 4096, pool);
+            count(pool, 64);
+            Instrumentation.finish();
+            assertThat(Instrumentation.get(Instrumentation.Count.FILES), equalTo(64L));
+            assertThat(Instrumentation.get(Instrumentation.Count.LINES), equalTo(64000L));
+            assertThat(Instrumentation.get(Instrumentation.Count.TOKENS), equalTo(192000L));
+            assertThat(Instrumentation.get(Instrumentation.Count.BYTES), equalTo(64 * 4096L));
+            assertThat(Instrumentation.get(Instrumentation.Stage.TOKENIZATION), greaterThan(0L));
+
+            // nothing is counted after finish, and a new start begins from 0
+            count(pool, 8);
+            assertThat(Instrumentation.get(Instrumentation.Count.FILES), equalTo(64L));
+            Instrumentation.start("test", 8 * 4096, pool);
+            count(pool, 8);
+            Instrumentation.finish();
+            assertThat(Instrumentation.get(Instrumentation.Count.FILES), equalTo(8L));
+            assertThat(Instrumentation.get(Instrumentation.Count.LINES), equalTo(8000L));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Manifest;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ManifestTest {
+
+    @Test
+    public void onlyChangedInputsAreStale() throws IOException {
+        final File directory = File.createTempFile("manifest", "");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            final File manifestFile = new File(directory, "manifest.tsv");
+            final File input = new File(directory, "input.txt");
+            final File output = new File(directory, "output.txt");
+            FileUtils.writeStringToFile(input, "een twee drie", "UTF-8");
+            FileUtils.writeStringToFile(output, "1 2 3", "UTF-8");
+
+            Manifest manifest = Manifest.load(manifestFile, "rules=false");
+            assertThat(manifest.isCurrent(input), equalTo(false));
+            manifest.record(input, output);
+            manifest.save();
+
+            manifest = Manifest.load(manifestFile, "rules=false");
+            assertThat(manifest.isCurrent(input), equalTo(true));
+            // the same content with another time is still current
+            input.setLastModified(input.lastModified() - 10000);
+            assertThat(manifest.isCurrent(input), equalTo(true));
+            assertThat(Manifest.load(manifestFile, "rules=true").isCurrent(input), equalTo(false));
+
+            FileUtils.writeStringToFile(input, "een twee vier", "UTF-8");
+            input.setLastModified(input.lastModified() - 20000);
+            assertThat(manifest.isCurrent(input), equalTo(false));
+            assertThat(manifest.contains(input), equalTo(true));
+
+            manifest.record(input, output);
+            output.delete();
+            assertThat(manifest.isCurrent(input), equalTo(false));
+
+            assertThat(manifest.retain(Arrays.asList(input)).size(), equalTo(0));
+            assertThat(manifest.retain(Collections.<File>emptyList()), equalTo(Arrays.asList(output.getAbsoluteFile())));
+            assertThat(manifest.size(), equalTo(0));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.JavaBackend;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.MatrixBackend;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class MatrixBackendTest {
+    private final MatrixBackend backend = new JavaBackend();
+
+    // the shapes of the training, the scoring batches and a few odd ones that miss the unrolled loops
+    private static final int[][] SHAPES = {{1, 500, 100}, {1, 100, 1}, {256, 500, 100}, {3, 7, 5}, {1, 1, 9}, {5, 1, 3}};
+
+    @Test
+    public void mmul() {
+        for (int[] shape : SHAPES) {
+            final DoubleMatrix a = DoubleMatrix.rand(shape[0], shape[1]);
+            final DoubleMatrix b = DoubleMatrix.rand(shape[1], shape[2]);
+            assertClose(reference(a, b), backend.mmul(a, b, null));
+        }
+    }
+
+    @Test
+    public void mmulTransposed() {
+        for (int[] shape : SHAPES) {
+            final DoubleMatrix a = DoubleMatrix.rand(shape[0], shape[1]);
+            final DoubleMatrix b = DoubleMatrix.rand(shape[2], shape[1]);
+            assertClose(reference(a, b.transpose()), backend.mmulTransposed(a, b, null));
+        }
+    }
+
+    @Test
+    public void transposedMmul() {
+        for (int[] shape : SHAPES) {
+            final DoubleMatrix a = DoubleMatrix.rand(shape[1], shape[0]);
+            final DoubleMatrix b = DoubleMatrix.rand(shape[1], shape[2]);
+            assertClose(reference(a.transpose(), b), backend.transposedMmul(a, b, null));
+        }
+    }
+
+    @Test
+    public void reusesResult() {
+        final DoubleMatrix a = DoubleMatrix.rand(4, 6);
+        final DoubleMatrix b = DoubleMatrix.rand(6, 3);
+        // stale values in the result must not leak into the product
+        final DoubleMatrix result = DoubleMatrix.ones(4, 3);
+        backend.mmul(a, b, result);
+        assertClose(reference(a, b), result);
+        result.fill(1.0);
+        backend.mmulTransposed(a, b.transpose(), result);
+        assertClose(reference(a, b), result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompatibleSizes() {
+        backend.mmul(DoubleMatrix.rand(2, 3), DoubleMatrix.rand(4, 2), null);
+    }
+
+    private static DoubleMatrix reference(DoubleMatrix a, DoubleMatrix b) {
+        final DoubleMatrix result = new DoubleMatrix(a.rows, b.columns);
+        for (int row = 0; row < a.rows; row++) {
+            for (int column = 0; column < b.columns; column++) {
+                double sum = 0.0;
+                for (int k = 0; k < a.columns; k++) {
+                    sum += a.get(row, k) * b.get(k, column);
+                }
+                result.put(row, column, sum);
+            }
+        }
+        return result;
+    }
+
+    private static void assertClose(DoubleMatrix expected, DoubleMatrix actual) {
+        assertThat(Math.abs(expected.rows - actual.rows) + Math.abs(expected.columns - actual.columns), lessThan(1));
+        for (int index = 0; index < expected.length; index++) {
+            assertThat(Math.abs(expected.data[index] - actual.data[index]), lessThan(1e-9));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.Activations;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.tools.training.MappedEmbeddings;
+import com.github.alleveenstra.neuralwordembedding.tools.training.Model;
+import com.github.alleveenstra.neuralwordembedding.tools.training.ModelContainer;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ModelContainerTest {
+
+    private static byte[] parameters(FeedForwardNetwork network) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        network.writeParameters(output);
+        network.writeOptimizerState(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (String word : new String[]{"UUUNKKK", "*RARE*", "kat", "hond", "\u00e9\u00e9n"}) {
+            embeddings.put(word, DoubleMatrix.rand(1, 6).subi(0.5));
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(12, 4, 1);
+        network.setActivation(Activations.HARD);
+        final File file = File.createTempFile("model", ModelContainer.EXTENSION);
+        file.deleteOnExit();
+        ModelContainer.write(embeddings, network, file);
+
+        assertThat(ModelContainer.isContainer(file), equalTo(true));
+        final ModelContainer container = ModelContainer.open(file);
+        final MappedEmbeddings mapped = container.mapEmbeddings();
+        assertThat(mapped.size(), equalTo(embeddings.size()));
+        assertThat(mapped.getDimension(), equalTo(6));
+        assertThat(mapped.keySet(), equalTo(embeddings.keySet()));
+        final DoubleMatrix into = new DoubleMatrix(1, 6);
+        for (String word : embeddings.keySet()) {
+            assertThat(mapped.get(word), equalTo(embeddings.get(word)));
+            assertThat(mapped.get(word, into), sameInstance(into));
+            assertThat(into, equalTo(embeddings.get(word)));
+        }
+        assertThat(mapped.get("vis"), nullValue());
+
+        // the rows follow the ids of the index
+        final VocabularyIndex index = mapped.getIndex();
+        assertThat(index.size(), equalTo(embeddings.size()));
+        for (int id = 0; id < index.size(); id++) {
+            assertThat(index.id(index.word(id)), equalTo(id));
+            assertThat(mapped.row(id), equalTo(embeddings.get(index.word(id))));
+        }
+
+        final FeedForwardNetwork read = container.readNetwork(true);
+        assertThat(parameters(read), equalTo(parameters(network)));
+        assertThat(read.getActivation(), equalTo(Activations.HARD));
+        assertThat(container.readOptimizerState(read), nullValue());
+    }
+
+    @Test
+    public void containerWithoutNetworkFailsToLoad() throws IOException {
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        embeddings.put("kat", DoubleMatrix.rand(1, 6));
+        final File file = File.createTempFile("model", ModelContainer.EXTENSION);
+        file.deleteOnExit();
+        ModelContainer.write(embeddings, null, file);
+        assertThat(ModelContainer.open(file).hasSection(ModelContainer.NETWORK), equalTo(false));
+        assertThat(Model.load(file), nullValue());
+        assertThat(Model.open(file, true), nullValue());
+        assertThat(Model.open(file, false).findCloseWords("kat", 1), equalTo(Arrays.asList("kat")));
+    }
+}
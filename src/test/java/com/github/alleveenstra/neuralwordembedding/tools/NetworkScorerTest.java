@@ -0,0 +1,71 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.*;
+import com.github.alleveenstra.neuralwordembedding.tools.training.Model;
+import com.github.alleveenstra.neuralwordembedding.tools.training.ModelContainer;
+import com.github.alleveenstra.neuralwordembedding.tools.training.SentenceScorer;
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NetworkScorerTest {
+
+    @Test
+    public void scoresLikeTheTrainer() {
+        final FeedForwardNetwork network = new FeedForwardNetwork(6, 4, 1);
+        network.setActivation(Activations.RATIONAL);
+        final BackPropagationTrainer trainer = new BackPropagationTrainer(network, MatrixBackends.JAVA);
+        // more rows than a batch
+        final DoubleMatrix windows = DoubleMatrix.rand(NetworkScorer.BATCH_SIZE + 44, 6).subi(0.5);
+        final double[] scores = new NetworkScorer(network, MatrixBackends.JAVA, network.getActivation()).score(windows);
+        for (int row = 0; row < windows.rows; row++) {
+            assertThat(scores[row], closeTo(trainer.evaluate(windows.getRow(row)).scalar(), 1e-12));
+        }
+    }
+
+    @Test
+    public void filtersLikeTheTrainingAndScoresEveryWindow() throws IOException {
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (String word : Arrays.asList(Vocabulary.RARE, "de", "kat", "hond", "huis")) {
+            embeddings.put(word, DoubleMatrix.rand(1, 3).subi(0.5));
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(6, 4, 1);
+        final File file = File.createTempFile("model", ModelContainer.EXTENSION);
+        file.deleteOnExit();
+        ModelContainer.write(embeddings, network, file);
+        final MatrixBackend backend = MatrixBackends.getDefault();
+        MatrixBackends.setDefault(MatrixBackends.JAVA);
+        try {
+            checkSentenceScorer(new SentenceScorer(Model.open(file, true)), embeddings, network);
+        } finally {
+            MatrixBackends.setDefault(backend);
+        }
+    }
+
+    private static void checkSentenceScorer(SentenceScorer scorer, Map<String, DoubleMatrix> embeddings, FeedForwardNetwork network) {
+        assertThat(scorer.getWindowSize(), equalTo(2));
+
+        // "de" is a stop word, "paard" is not in the model
+        final List<String> words = scorer.filter(Arrays.asList("de", "kat", "paard", "hond", "de", "huis"));
+        assertThat(words, equalTo(Arrays.asList("kat", Vocabulary.RARE, "hond", "huis")));
+
+        final BackPropagationTrainer trainer = new BackPropagationTrainer(network, MatrixBackends.JAVA);
+        double sum = 0.0;
+        for (int start = 0; start + 2 <= words.size(); start++) {
+            sum += trainer.evaluate(DoubleMatrix.concatHorizontally(embeddings.get(words.get(start)), embeddings.get(words.get(start + 1)))).scalar();
+        }
+        assertThat(scorer.scoreSentence(words), closeTo(sum / 3, 1e-12));
+        assertThat(Double.isNaN(scorer.scoreSentence(Arrays.asList("kat"))), equalTo(true));
+    }
+}
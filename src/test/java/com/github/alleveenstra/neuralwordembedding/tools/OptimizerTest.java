@@ -0,0 +1,123 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.*;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class OptimizerTest {
+
+    @Test
+    public void adamStartsWithStepsOfTheRate() {
+        final double[] gradient = {0.5, -0.01, 20.0};
+        final double[] state = new double[2 * gradient.length];
+        Optimizers.ADAM.step(0.01, gradient, 0, gradient.length, state, 1);
+        assertThat(gradient[0], closeTo(0.01, 1e-8));
+        assertThat(gradient[1], closeTo(-0.01, 1e-6));
+        assertThat(gradient[2], closeTo(0.01, 1e-8));
+    }
+
+    @Test
+    public void adaGradShrinksTheStep() {
+        final double[] state = new double[1];
+        final double[] gradient = {2.0};
+        Optimizers.ADAGRAD.step(0.1, gradient, 0, 1, state, 1);
+        assertThat(gradient[0], closeTo(0.1, 1e-8));
+        gradient[0] = 2.0;
+        Optimizers.ADAGRAD.step(0.1, gradient, 0, 1, state, 2);
+        assertThat(gradient[0], closeTo(0.1 / Math.sqrt(2.0), 1e-8));
+    }
+
+    @Test
+    public void adamMinimizesAQuadratic() {
+        final double[] x = {5.0, -3.0};
+        final double[] state = new double[4];
+        for (int step = 1; step <= 2000; step++) {
+            // the negative gradient of (x0 - 1)^2 + 10 (x1 + 2)^2
+            final double[] gradient = {-2.0 * (x[0] - 1.0), -20.0 * (x[1] + 2.0)};
+            Optimizers.ADAM.step(0.05, gradient, 0, 2, state, step);
+            x[0] += gradient[0];
+            x[1] += gradient[1];
+        }
+        assertThat(x[0], closeTo(1.0, 1e-3));
+        assertThat(x[1], closeTo(-2.0, 1e-3));
+    }
+
+    @Test
+    public void lazyDecayMatchesEagerDecay() {
+        final double rate = 0.01, decay = 0.5;
+        final OptimizerState state = new OptimizerState(Optimizers.SGD, decay, new FeedForwardNetwork(4, 3, 1));
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        embeddings.put("a", new DoubleMatrix(new double[][]{{1.0, 2.0}}));
+        embeddings.put("b", new DoubleMatrix(new double[][]{{-1.0, 3.0}}));
+        final DoubleMatrix eagerA = embeddings.get("a").dup(), eagerB = embeddings.get("b").dup();
+
+        // "a" is updated after 7 and after 12 windows, "b" never
+        state.advance(7);
+        state.stepEmbedding("a", embeddings.get("a"), DoubleMatrix.ones(1, 2), rate);
+        state.advance(5);
+        state.stepEmbedding("a", embeddings.get("a"), DoubleMatrix.ones(1, 2), rate);
+        state.advance(3);
+        state.flushDecay(embeddings, rate);
+
+        for (int window = 1; window <= 15; window++) {
+            eagerA.muli(1.0 - rate * decay);
+            eagerB.muli(1.0 - rate * decay);
+            if (window == 7 || window == 12) {
+                eagerA.addi(rate);
+            }
+        }
+        for (int index = 0; index < 2; index++) {
+            assertThat(embeddings.get("a").get(index), closeTo(eagerA.get(index), 1e-12));
+            assertThat(embeddings.get("b").get(index), closeTo(eagerB.get(index), 1e-12));
+        }
+    }
+
+    @Test
+    public void stateSurvivesWritingAndReading() throws IOException {
+        final FeedForwardNetwork network = new FeedForwardNetwork(4, 3, 1);
+        final OptimizerState state = new OptimizerState(Optimizers.ADAM, 0.1, network);
+        state.stepNetwork(0.01, new DoubleMatrix[]{null, DoubleMatrix.ones(4, 3), DoubleMatrix.ones(3, 1)});
+        state.advance(2);
+        state.stepEmbedding("a", DoubleMatrix.ones(1, 2), DoubleMatrix.ones(1, 2), 0.01);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        state.write(new DataOutputStream(bytes));
+        final OptimizerState read = OptimizerState.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), network);
+        assertThat(read.getOptimizer(), equalTo(Optimizers.ADAM));
+        assertThat(read.getEmbeddingDecay(), equalTo(0.1));
+        assertThat(read.getRows(), equalTo(1));
+
+        // both take the same second step
+        final DoubleMatrix first = DoubleMatrix.ones(1, 2), second = DoubleMatrix.ones(1, 2);
+        state.stepEmbedding("a", first, new DoubleMatrix(new double[][]{{0.5, -2.0}}), 0.01);
+        read.stepEmbedding("a", second, new DoubleMatrix(new double[][]{{0.5, -2.0}}), 0.01);
+        assertThat(second, equalTo(first));
+    }
+
+    @Test
+    public void adaptiveUpdatesAreStepsOfTheRate() {
+        final FeedForwardNetwork network = new FeedForwardNetwork(20, 10, 1);
+        final BackPropagationTrainer trainer = new BackPropagationTrainer(network, MatrixBackends.JAVA);
+        trainer.optimizerState = new OptimizerState(Optimizers.ADAM, 0.0, network);
+        trainer.eta = 0.001;
+        trainer.evaluate(DoubleMatrix.rand(1, 20));
+        trainer.calculateDeltas(DoubleMatrix.ones(1, 1).muli(0.5));
+        final DoubleMatrix[] update = trainer.calculateWeightUpdate();
+        final DoubleMatrix gradient = update[1].dup();
+        // the update is still the plain gradient, Adam turns it into a first step of the rate when it is applied
+        trainer.applyWeightUpdate(null, update);
+        for (int index = 0; index < gradient.length; index++) {
+            if (Math.abs(gradient.get(index)) > 1e-3) {
+                assertThat(Math.abs(update[1].get(index)), closeTo(0.001, 1e-5));
+            }
+        }
+    }
+}
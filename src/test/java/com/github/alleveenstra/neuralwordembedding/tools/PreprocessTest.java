@@ -0,0 +1,58 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class PreprocessTest {
+
+    private static final String[] WORDS = {"de", "kat", "zit", "op", "mat", "hond", "blaft", "naar", "een", "vogel", "in", "boom"};
+
+    // paragraphs of different words, separated by three empty lines so every one of them can start a chunk
+    private static String text(int paragraphs, int offset) {
+        final StringBuilder builder = new StringBuilder();
+        for (int paragraph = 0; paragraph < paragraphs; paragraph++) {
+            for (int sentence = 0; sentence < 3; sentence++) {
+                builder.append("De ").append(WORDS[(paragraph * 3 + sentence + offset) % WORDS.length]);
+                builder.append(' ').append(WORDS[(paragraph + sentence * 5 + offset) % WORDS.length]).append(" zit hier.\n");
+            }
+            builder.append("\n\n\n");
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void chunkedRunMatchesSinglePass() throws IOException {
+        final File directory = File.createTempFile("preprocess", "");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            final File raw = new File(directory, "raw");
+            FileUtils.writeStringToFile(new File(raw, "a.txt"), text(20, 0), "UTF-8");
+            FileUtils.writeStringToFile(new File(raw, "sub/b.txt"), text(15, 7), "UTF-8");
+            assertThat(Step1ConvertRaw.findParagraphBoundaries(new File(raw, "a.txt"), 100).length, greaterThan(5));
+
+            final File single = new File(directory, "single"), chunked = new File(directory, "chunked");
+            Preprocess.preprocess(raw, single, new File(directory, "single.txt").getPath(), 1, Integer.MAX_VALUE, Long.MAX_VALUE);
+            Preprocess.preprocess(raw, chunked, new File(directory, "chunked.txt").getPath(), 1, Integer.MAX_VALUE, 100);
+
+            assertThat(FileUtils.readFileToString(new File(directory, "chunked.txt"), "UTF-8"),
+                    equalTo(FileUtils.readFileToString(new File(directory, "single.txt"), "UTF-8")));
+            for (String numbered : new String[]{"a.numbered", "sub/b.numbered"}) {
+                assertThat(FileUtils.readFileToString(new File(chunked, numbered), "UTF-8"),
+                        equalTo(FileUtils.readFileToString(new File(single, numbered), "UTF-8")));
+            }
+            // no chunk files are left behind
+            assertThat(chunked.list().length, equalTo(2));
+            assertThat(new File(chunked, "sub").list().length, equalTo(1));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.QuantizedEmbeddings;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class QuantizedEmbeddingsTest {
+
+    // 30 clusters of 10 words, "w0" to "w9" are the first cluster
+    private static Map<String, DoubleMatrix> embeddings() {
+        final Random random = new Random(11);
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (int cluster = 0; cluster < 30; cluster++) {
+            final double[] center = new double[8];
+            for (int index = 0; index < center.length; index++) {
+                center[index] = random.nextGaussian();
+            }
+            for (int member = 0; member < 10; member++) {
+                final double[] row = new double[8];
+                for (int index = 0; index < row.length; index++) {
+                    row[index] = center[index] + 0.01 * random.nextGaussian();
+                }
+                embeddings.put("w" + (cluster * 10 + member), new DoubleMatrix(1, 8, row));
+            }
+        }
+        return embeddings;
+    }
+
+    private static QuantizedEmbeddings saveAndLoad(QuantizedEmbeddings quantized) throws IOException {
+        final File file = File.createTempFile("quantized", ".nweq");
+        file.deleteOnExit();
+        quantized.save(file.getPath());
+        return QuantizedEmbeddings.load(file);
+    }
+
+    private static Set<String> firstCluster() {
+        final Set<String> words = new HashSet<>();
+        for (int member = 0; member < 10; member++) {
+            words.add("w" + member);
+        }
+        return words;
+    }
+
+    @Test
+    public void searchesTheInt8AndProductCodes() throws IOException {
+        final QuantizedEmbeddings quantized = saveAndLoad(QuantizedEmbeddings.quantize(embeddings(), 2));
+        assertThat(quantized.size(), equalTo(300));
+        assertThat(quantized.hasProductCodes(), equalTo(true));
+        final List<String> int8 = quantized.findCloseWords("w0", 10);
+        assertThat(int8.get(0), equalTo("w0"));
+        assertThat(new HashSet<>(int8), equalTo(firstCluster()));
+        assertThat(new HashSet<>(quantized.findCloseWordsProduct("w0", 10)), equalTo(firstCluster()));
+        assertThat(quantized.findCloseWords("vis", 10).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void searchesWithoutProductCodes() throws IOException {
+        final QuantizedEmbeddings quantized = saveAndLoad(QuantizedEmbeddings.quantize(embeddings(), 0));
+        assertThat(quantized.hasProductCodes(), equalTo(false));
+        assertThat(quantized.productBytes(), equalTo(0L));
+        assertThat(new HashSet<>(quantized.findCloseWords("w0", 10)), equalTo(firstCluster()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesAModelWithoutEmbeddings() {
+        QuantizedEmbeddings.quantize(new HashMap<String, DoubleMatrix>(), 0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.ReplayMixer;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ReplayMixerTest {
+
+    // three data sets of 1000 windows, 0 to 2999, and 300 replayed windows, -1 to -300
+    @Test
+    public void spreadsTheReplayOverTheDataSets() {
+        final List<Integer> replay = new ArrayList<>();
+        for (int window = 1; window <= 300; window++) {
+            replay.add(-window);
+        }
+        final ReplayMixer<Integer> mixer = new ReplayMixer<>(replay, 3, new Random(5));
+        final List<Integer> replayed = new ArrayList<>();
+        for (int dataSet = 0; dataSet < 3; dataSet++) {
+            final List<Integer> windows = new ArrayList<>();
+            for (int window = dataSet * 1000; window < (dataSet + 1) * 1000; window++) {
+                windows.add(window);
+            }
+            final List<Integer> mixed = mixer.mix(windows);
+            assertThat(mixed.size(), equalTo(1100));
+            final List<Integer> data = new ArrayList<>();
+            int firstHalf = 0;
+            for (int index = 0; index < mixed.size(); index++) {
+                if (mixed.get(index) >= 0) {
+                    data.add(mixed.get(index));
+                } else {
+                    replayed.add(mixed.get(index));
+                    if (index < mixed.size() / 2) {
+                        firstHalf++;
+                    }
+                }
+            }
+            // the data set keeps its order, the replayed windows are not all at one end
+            assertThat(data, equalTo(windows));
+            assertThat(firstHalf, greaterThan(25));
+            assertThat(firstHalf, lessThan(75));
+        }
+        Collections.sort(replayed);
+        Collections.reverse(replayed);
+        assertThat(replayed, equalTo(replay));
+    }
+
+    @Test
+    public void lastDataSetGetsTheRest() {
+        final ReplayMixer<Integer> mixer = new ReplayMixer<>(Arrays.asList(1, 2, 3, 4, 5), 3, new Random(1));
+        assertThat(mixer.mix(new ArrayList<Integer>()).size(), equalTo(1));
+        assertThat(mixer.mix(new ArrayList<Integer>()).size(), equalTo(2));
+        assertThat(mixer.mix(new ArrayList<Integer>()).size(), equalTo(2));
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RuleTokenizerTest {
+
+    @Test
+    public void splitsPunctuationAndReplacesDigits() {
+        final Parser parser = new Parser(true);
+        assertThat(parser.tokenize("En God zeide: Daar zij licht, en daar werd licht."),
+                equalTo(Arrays.asList("en", "god", "zeide", ":", "daar", "zij", "licht", ",", "en", "daar", "werd", "licht", ".")));
+        assertThat(parser.tokenize("Genesis 12:30 en 1.5 (zie ook 3-4)"),
+                equalTo(Arrays.asList("genesis", "*DD:DD*", "en", "*D.D*", "(", "zie", "ook", "*D-D*", ")")));
+        assertThat(parser.tokenize("te Beth-Semes, zegt de HERE. Wacht..."),
+                equalTo(Arrays.asList("te", "beth-semes", ",", "zegt", "de", "here.", "wacht", "...")));
+        assertThat(parser.tokenize("</s>"), equalTo(Arrays.asList("</s>")));
+    }
+
+    @Test
+    public void agreesWithOpenNlpOnPlainSentences() {
+        final Parser rules = new Parser(true);
+        final Parser openNlp = new Parser(false);
+        final String[] sentences = {
+                "In het begin schiep God de hemel en de aarde.",
+                "En de aarde was woest en ledig, en duisternis lag op de vloed.",
+                "Toen zeide de HERE tot Mozes: Strek uw hand uit.",
+                "Zij waren 318 man sterk, en hij achtervolgde hen tot Dan."
+        };
+        for (String sentence : sentences) {
+            assertThat(sentence, rules.tokenize(sentence), equalTo(openNlp.tokenize(sentence)));
+        }
+    }
+}
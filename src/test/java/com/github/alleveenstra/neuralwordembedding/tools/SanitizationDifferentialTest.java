@@ -0,0 +1,114 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Sanitization;
+import com.github.alleveenstra.neuralwordembedding.tools.util.Validation;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SanitizationDifferentialTest {
+    private static final Pattern DIACRITIC_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern ALLOWED_PATTERN = Pattern.compile("[A-Za-z0-9_=!@#%&,/:;\"'`<> \\|\\}\\{\\?\\.\\*\\(\\)\\^\\$\\-\\+\\]\\[\\\\]+");
+
+    private static final String INTERESTING = "\r\n\t '\"^`~abcXYZ019.,;:!?-*()[]{}<>\\|$@#%&_=+"
+            + "»«”“‘’²³…–—­×°˚º€£ "
+            + "éèëêáàäâíìïîóòöôúùüûçñÉÈËÁÄÖÜÇß"
+            + "̧̀́̈ͯʰʹˆ˜¨´`;·"
+            + "ׁ֑⃐᷀  ʌʃə　ﬁÅ";
+
+    @Test
+    public void sanitizeLineMatchesRegexChain() throws IOException {
+        for (String line : inputs()) {
+            assertThat(escape(line), escape(Sanitization.sanitizeLine(line)), equalTo(escape(referenceSanitizeLine(line))));
+        }
+    }
+
+    @Test
+    public void isValidSentenceMatchesRegex() throws IOException {
+        for (String line : inputs()) {
+            final String sanitized = Sanitization.sanitizeLine(line);
+            assertThat(escape(line), Validation.isValidSentence(line), equalTo(referenceIsValidSentence(line)));
+            assertThat(escape(sanitized), Validation.isValidSentence(sanitized), equalTo(referenceIsValidSentence(sanitized)));
+        }
+        assertThat(Validation.isValidSentence(""), equalTo(referenceIsValidSentence("")));
+    }
+
+    private static List<String> inputs() throws IOException {
+        final List<String> inputs = new ArrayList<>();
+        final File raw = new File("data/raw");
+        if (raw.isDirectory()) {
+            for (File file : (Collection<File>) FileUtils.listFiles(raw, new SuffixFileFilter(".txt"), TrueFileFilter.TRUE)) {
+                inputs.addAll(FileUtils.readLines(file, "UTF-8"));
+            }
+        }
+        final Random random = new Random(33);
+        for (int line = 0; line < 20000; line++) {
+            final StringBuilder builder = new StringBuilder();
+            final int length = random.nextInt(24);
+            for (int i = 0; i < length; i++) {
+                final int choice = random.nextInt(10);
+                if (choice < 7) {
+                    builder.append(INTERESTING.charAt(random.nextInt(INTERESTING.length())));
+                } else if (choice < 9) {
+                    builder.append((char) random.nextInt(0x3000));
+                } else {
+                    builder.appendCodePoint(0x10000 + random.nextInt(0x20000));
+                }
+            }
+            inputs.add(builder.toString());
+        }
+        return inputs;
+    }
+
+    private static String escape(String input) {
+        final StringBuilder builder = new StringBuilder();
+        for (char c : input.toCharArray()) {
+            builder.append(c < 0x80 && c >= 0x20 ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+        }
+        return builder.toString();
+    }
+
+    private static String referenceSanitizeLine(String input) {
+        input = input.replaceAll("\r", "");
+        input = input.replaceAll("»", "");
+        input = input.replaceAll("”", "\"");
+        input = input.replaceAll("“", "\"");
+        input = input.replaceAll("‘", "'");
+        input = input.replaceAll("’", "'");
+        input = input.replaceAll("²", "2");
+        input = input.replaceAll("³", "3");
+        input = input.replaceAll("…", "...");
+        input = input.replaceAll("–", "-");
+        input = input.replaceAll("—", "-");
+        input = input.replaceAll("\u00ad", "-");
+        input = input.replaceAll("×", "*");
+        input = input.replaceAll("°", "DEG");
+        input = input.replaceAll("˚", "DEG");
+        input = input.replaceAll("º", "DEG");
+        input = input.replaceAll("€", "EUR");
+        input = input.replaceAll("£", "PND");
+        input = input.replaceAll("«", "");
+        input = Normalizer.normalize(input, Normalizer.Form.NFD);
+        input = Sanitization.DIACRITICS_AND_FRIENDS.matcher(input).replaceAll("");
+        input = input.replaceAll("\u00a0", " ");
+        input = input.replaceAll("'", "");
+        input = input.replaceAll("\"", "");
+        return input;
+    }
+
+    private static boolean referenceIsValidSentence(String sentence) {
+        final String normalized = Normalizer.normalize(sentence, Normalizer.Form.NFD);
+        final String cleaned = DIACRITIC_MARKS.matcher(normalized).replaceAll("");
+        return ALLOWED_PATTERN.matcher(cleaned).matches();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class Step1ConvertRawTest {
+
+    // short paragraphs apart from the fifth, which is longer than a chunk and holds one and two empty lines that do not
+    // end it, so the chunk that reaches into it has to run on to its end
+    private static String text(String newline) {
+        final StringBuilder builder = new StringBuilder();
+        for (int paragraph = 0; paragraph < 12; paragraph++) {
+            builder.append("Dit is alinea ").append(paragraph).append(". Hij heeft twee zinnen.").append(newline);
+            if (paragraph == 4) {
+                for (int line = 0; line < 8; line++) {
+                    builder.append("De kat zit op regel ").append(line).append(" van de lange alinea.").append(newline);
+                    builder.append(line % 2 == 0 ? newline : newline + newline);
+                }
+            }
+            builder.append(newline).append(newline).append(newline);
+        }
+        return builder.toString();
+    }
+
+    private static List<String> convert(Parser parser, File file, long[] boundaries) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder();
+        final Step1ConvertRaw.SentenceSink sink = new Step1ConvertRaw.SentenceSink() {
+            @Override
+            public void token(char[] buffer, int offset, int length) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(buffer, offset, length);
+            }
+
+            @Override
+            public void endSentence() {
+                lines.add(builder.toString());
+                builder.setLength(0);
+            }
+        };
+        for (int chunk = 0; chunk < boundaries.length - 1; chunk++) {
+            Step1ConvertRaw.tokenizeChunk(parser, file, boundaries[chunk], boundaries[chunk + 1], chunk == 0, chunk == boundaries.length - 2, sink);
+        }
+        return lines;
+    }
+
+    private static void assertChunkedMatchesSingle(String newline) throws IOException {
+        final File file = File.createTempFile("raw", ".txt");
+        file.deleteOnExit();
+        final String text = text(newline);
+        FileUtils.writeStringToFile(file, text, "UTF-8");
+        final Parser parser = new Parser(true);
+
+        final long[] boundaries = Step1ConvertRaw.findParagraphBoundaries(file, 100);
+        assertThat(boundaries.length, greaterThan(4));
+        // every chunk starts a paragraph, none of them inside the long one
+        final int longStart = text.indexOf("Dit is alinea 4"), longEnd = text.indexOf("Dit is alinea 5");
+        for (long boundary : boundaries) {
+            assertThat(boundary > longStart && boundary < longEnd, equalTo(false));
+            if (boundary > 0 && boundary < file.length()) {
+                assertThat(text.startsWith("Dit is alinea", (int) boundary), equalTo(true));
+            }
+        }
+
+        final List<String> single = convert(parser, file, Step1ConvertRaw.findParagraphBoundaries(file, Long.MAX_VALUE));
+        assertThat(single.get(0), equalTo("<s>"));
+        assertThat(convert(parser, file, boundaries), equalTo(single));
+    }
+
+    @Test
+    public void chunkedConversionMatchesSingleChunk() throws IOException {
+        assertChunkedMatchesSingle("\n");
+    }
+
+    @Test
+    public void chunkedConversionMatchesSingleChunkWithCarriageReturns() throws IOException {
+        assertChunkedMatchesSingle("\r\n");
+    }
+}
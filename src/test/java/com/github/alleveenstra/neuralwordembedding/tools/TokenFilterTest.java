@@ -0,0 +1,60 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.TokenFilter;
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TokenFilterTest {
+
+    // "de" is half of the 1000 counted tokens, "kat" and "hond" one in a thousand, "vis" has no embedding
+    private static TokenFilter filter(double sample) {
+        final List<String> words = Arrays.asList(Vocabulary.UNKNOWN, Vocabulary.RARE, "de", "kat", "hond", "vis", "en");
+        final int[] ids = {1, 2, 3, 4, 5, 6, 7};
+        final long[] counts = {0, 0, 500, 1, 1, 8, 490};
+        final VocabularyIndex vocabulary = VocabularyIndex.build(words, ids, counts, null);
+        final Map<String, Object> embeddings = new HashMap<>();
+        for (String word : Arrays.asList(Vocabulary.UNKNOWN, Vocabulary.RARE, "de", "kat", "hond", "en")) {
+            embeddings.put(word, word);
+        }
+        return TokenFilter.compile(vocabulary, new HashSet<>(Collections.singletonList("en")), embeddings, sample);
+    }
+
+    @Test
+    public void mapsStopWordsAndRareWords() {
+        final TokenFilter filter = filter(0.0);
+        assertThat(filter.filter("kat", new Random(1)), equalTo("kat"));
+        assertThat(filter.filter("de", new Random(1)), equalTo("de"));
+        assertThat(filter.filter("en", null), nullValue());
+        // without an embedding or outside the vocabulary
+        assertThat(filter.filter("vis", null), equalTo(Vocabulary.RARE));
+        assertThat(filter.filter("paard", null), equalTo(Vocabulary.RARE));
+    }
+
+    @Test
+    public void keepsFrequentWordsWithTheWord2VecProbability() {
+        final TokenFilter filter = filter(1e-3);
+        final double frequency = 0.5;
+        assertThat(filter.keepProbability("de"), closeTo((Math.sqrt(frequency / 1e-3) + 1.0) * 1e-3 / frequency, 1e-6));
+        assertThat(filter.keepProbability("kat"), equalTo(1.0));
+        assertThat(filter.keepProbability("en"), equalTo(0.0));
+
+        final Random random = new Random(7);
+        int kept = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.filter("de", random) != null) {
+                kept++;
+            }
+        }
+        assertThat(kept / 100000.0, closeTo(filter.keepProbability("de"), 0.005));
+        // validation does not subsample
+        assertThat(filter.filter("de", null), equalTo("de"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.BackPropagationTrainer;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.FeedForwardNetwork;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.MatrixBackends;
+import com.github.alleveenstra.neuralwordembedding.neuralnetwork.ZealousWordEmbeddingTrainingStrategy;
+import com.github.alleveenstra.neuralwordembedding.tools.training.TrainingMetrics;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class TrainingMetricsTest {
+
+    private static List<Vector<String>> windows(List<String> words, int count, Random random) {
+        final List<Vector<String>> windows = new ArrayList<>();
+        for (int window = 0; window < count; window++) {
+            final Vector<String> dataPoint = new Vector<>();
+            for (int word = 0; word < 10; word++) {
+                dataPoint.add(words.get(random.nextInt(words.size())));
+            }
+            windows.add(dataPoint);
+        }
+        return windows;
+    }
+
+    @Test
+    public void samplesTheDeltasBetweenTwoSamples() {
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        for (int word = 0; word < 20; word++) {
+            embeddings.put("w" + word, DoubleMatrix.rand(1, 50).subi(0.5));
+        }
+        final FeedForwardNetwork network = new FeedForwardNetwork(500, 20, 1);
+        final ZealousWordEmbeddingTrainingStrategy strategy = new ZealousWordEmbeddingTrainingStrategy(network, new BackPropagationTrainer(network, MatrixBackends.JAVA), embeddings, 2);
+        final List<String> words = new ArrayList<>(embeddings.keySet());
+        final Random random = new Random(3);
+        try {
+            final TrainingMetrics metrics = new TrainingMetrics(strategy);
+            strategy.train(windows(words, 300, random));
+            final double firstLoss = strategy.getCounters().getLoss();
+            metrics.sample();
+            assertThat(metrics.getWindows(), equalTo(300L));
+            assertThat(metrics.getWindowsPerSecond(), greaterThan(0.0));
+            final double[] workers = metrics.getWorkerWindowsPerSecond();
+            assertThat(workers.length, equalTo(2));
+            assertThat(workers[0] + workers[1], closeTo(metrics.getWindowsPerSecond(), 1e-6 * metrics.getWindowsPerSecond()));
+            assertThat(metrics.getLoss(), closeTo(firstLoss / 300, 1e-12));
+            assertThat(metrics.getLossMovingAverage(), equalTo(metrics.getLoss()));
+
+            // nothing happened in between, the rates drop to 0 and the loss is kept
+            metrics.sample();
+            assertThat(metrics.getWindowsPerSecond(), equalTo(0.0));
+            assertThat(metrics.getLoss(), closeTo(firstLoss / 300, 1e-12));
+
+            strategy.train(windows(words, 100, random));
+            final double secondLoss = (strategy.getCounters().getLoss() - firstLoss) / 100;
+            metrics.sample();
+            assertThat(metrics.getWindows(), equalTo(400L));
+            assertThat(metrics.getLoss(), closeTo(secondLoss, 1e-12));
+            assertThat(metrics.getLossMovingAverage(), closeTo(0.2 * secondLoss + 0.8 * firstLoss / 300, 1e-12));
+
+            metrics.setEpoch(2);
+            metrics.setFile("a \"quoted\"\\name\n.dataset");
+            final String json = metrics.toJson();
+            assertThat(json, containsString("\"epoch\": 2, \"file\": \"a \\\"quoted\\\"\\\\name\\n.dataset\", \"windows\": 400, "));
+            assertThat(json.indexOf('\n'), equalTo(-1));
+        } finally {
+            strategy.shutdown();
+        }
+    }
+
+    @Test
+    public void escapesStrings() {
+        assertThat(Json.object("name", "tab\there \u0001", "values", new double[]{1.0, Double.NaN}, "count", 3),
+                equalTo("{\"name\": \"tab\\there \\u0001\", \"values\": [1.00000, null], \"count\": 3}"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class VocabularyIndexTest {
+
+    @Test
+    public void mapsEveryWordToItsIdAfterMapping() throws IOException {
+        final Random random = new Random(39);
+        final Set<String> distinct = new LinkedHashSet<>();
+        while (distinct.size() < 50000) {
+            distinct.add(Long.toString(random.nextLong() & 0xffffffffL, 36) + (random.nextInt(20) == 0 ? "é" : ""));
+        }
+        final List<String> words = new ArrayList<>(distinct);
+        final int[] ids = new int[words.size()];
+        final long[] counts = new long[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            // sparse ids with a gap, like a vocabulary that had words removed
+            ids[i] = i < 100 ? i + 1 : i + 10;
+            counts[i] = i * 3;
+        }
+        final File file = File.createTempFile("vocab", VocabularyIndex.EXTENSION);
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            VocabularyIndex.build(words, ids, counts, null).write(output);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+        try {
+            final VocabularyIndex index = VocabularyIndex.map(file);
+            assertThat(index.size(), equalTo(words.size()));
+            for (int i = 0; i < ids.length; i++) {
+                assertThat(words.get(i), index.id(words.get(i)), equalTo(ids[i]));
+                assertThat(index.word(ids[i]), equalTo(words.get(i)));
+                assertThat(index.count(ids[i]), equalTo(counts[i]));
+            }
+            assertThat(index.word(0), nullValue());
+            assertThat(index.word(105), nullValue());
+            assertThat(index.id("never added"), equalTo(-1));
+            assertThat(index.id(""), equalTo(-1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void emptyAndSingleWordVocabularies() {
+        final List<String> none = new ArrayList<>();
+        assertThat(VocabularyIndex.build(none, new int[0], new long[0], null).id("a"), equalTo(-1));
+        final List<String> one = new ArrayList<>();
+        one.add("a");
+        final VocabularyIndex index = VocabularyIndex.build(one, new int[]{4}, new long[]{2}, null);
+        assertThat(index.id("a"), equalTo(4));
+        assertThat(index.id("b"), equalTo(-1));
+    }
+}
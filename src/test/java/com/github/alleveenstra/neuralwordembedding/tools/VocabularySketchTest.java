@@ -0,0 +1,47 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularySketch;
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class VocabularySketchTest {
+    private static final int WORDS = 20000;
+
+    @Test
+    public void keepsTheFrequentWordsOfAZipfStream() {
+        final Random random = new Random(37);
+        final WordCounter exact = new WordCounter();
+        final VocabularySketch left = new VocabularySketch(100000);
+        final VocabularySketch right = new VocabularySketch(100000);
+        for (int i = 0; i < 300000; i++) {
+            final char[] word = ("w" + zipf(random)).toCharArray();
+            exact.add(word, 0, word.length);
+            (i % 2 == 0 ? left : right).token(word, 0, word.length);
+        }
+        left.merge(right);
+        assertThat(left.getTokens(), equalTo(300000L));
+
+        final WordCounter top = left.top(100);
+        assertThat(top.size(), equalTo(100));
+        // the estimates are only a few hundred apart near rank 100, the first half is safe
+        for (int rank = 1; rank <= 50; rank++) {
+            assertThat(top.id("w" + rank), not(equalTo(-1)));
+        }
+        for (int id = 0; id < top.size(); id++) {
+            final long truth = exact.count(exact.id(top.word(id)));
+            assertThat(top.count(id), greaterThanOrEqualTo(truth));
+            assertThat(top.count(id), lessThanOrEqualTo(truth + left.getError()));
+        }
+    }
+
+    // ranks 1 to WORDS with a probability proportional to 1 / rank
+    private static int zipf(Random random) {
+        final double harmonic = Math.log(WORDS) + 0.5772;
+        return (int) Math.min(WORDS, Math.floor(Math.exp(random.nextDouble() * harmonic - 0.5772)) + 1);
+    }
+}
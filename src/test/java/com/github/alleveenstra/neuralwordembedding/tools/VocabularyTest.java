@@ -0,0 +1,74 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.Vocabulary;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class VocabularyTest {
+
+    @Test
+    public void writesReservedWordsThenDescendingCounts() throws IOException {
+        final WordCounter counter = new WordCounter();
+        counter.add("b", 5);
+        counter.add("</s>", 2);
+        counter.add("rare", 1);
+        counter.add("a", 5);
+        counter.add("c", 7);
+        counter.add("<s>", 2);
+        counter.add("d", 3);
+        final File file = File.createTempFile("vocab", ".txt");
+        try {
+            final int[] ids = Vocabulary.write(counter, file.getPath(), 2, 7);
+            final List<String> lines = (List<String>) FileUtils.readLines(file, "UTF-8");
+            assertThat(lines, equalTo(Arrays.asList(
+                    "UUUNKKK\t1\t0", "*RARE*\t2\t4", "<s>\t3\t2", "</s>\t4\t2", "c\t5\t7", "a\t6\t5", "b\t7\t5")));
+            assertThat(ids[counter.id("c")], equalTo(5));
+            assertThat(ids[counter.id("d")], equalTo(Vocabulary.RARE_ID));
+            assertThat(ids[counter.id("rare")], equalTo(Vocabulary.RARE_ID));
+            assertThat(ids[counter.id("</s>")], equalTo(Vocabulary.END_ID));
+
+            final VocabularyIndex loaded = Vocabulary.index(file.getPath());
+            assertThat(loaded.id("b"), equalTo(7));
+            assertThat(loaded.count(7), equalTo(5L));
+            assertThat(loaded.word(Vocabulary.RARE_ID), equalTo(Vocabulary.RARE));
+            assertThat(loaded.id("d"), equalTo(-1));
+            assertThat(loaded.size(), equalTo(7));
+        } finally {
+            file.delete();
+            new File(file.getPath() + VocabularyIndex.EXTENSION).delete();
+        }
+    }
+
+    @Test
+    public void mergeAppendsNewWordsInTheOrderOfWrite() throws IOException {
+        final WordCounter first = new WordCounter();
+        first.add("a", 5);
+        final File file = File.createTempFile("vocab", ".txt");
+        try {
+            Vocabulary.write(first, file.getPath(), 1, Integer.MAX_VALUE);
+            final WordCounter second = new WordCounter();
+            second.add("zebra", 3);
+            second.add("a", 1);
+            second.add("x", 1);
+            second.add("kat", 4);
+            second.add("appel", 3);
+            Step2CreateVocabulary.mergeIntoVocab(second, file.getPath(), 2, Integer.MAX_VALUE);
+            final List<String> lines = (List<String>) FileUtils.readLines(file, "UTF-8");
+            assertThat(lines, equalTo(Arrays.asList(
+                    "UUUNKKK\t1\t0", "*RARE*\t2\t1", "<s>\t3\t0", "</s>\t4\t0", "a\t5\t6", "kat\t6\t4", "appel\t7\t3", "zebra\t8\t3")));
+        } finally {
+            file.delete();
+            new File(file.getPath() + VocabularyIndex.EXTENSION).delete();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.WindowShuffler;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+
+public class WindowShufflerTest {
+
+    private static final List<File> FILES = Arrays.asList(new File("a"), new File("b"), new File("c"), new File("d"));
+
+    // every file holds 10000 windows numbered after the file
+    private static List<Integer> shuffle(int capacity, long seed, final List<Integer> batchSizes) {
+        final List<Integer> windows = new ArrayList<>();
+        new WindowShuffler<Integer>(capacity, 100, 3000, new Random(seed)).shuffle(FILES, new WindowShuffler.Source<Integer>() {
+            @Override
+            public List<Integer> read(File file) {
+                final int first = FILES.indexOf(file) * 10000;
+                final List<Integer> windows = new ArrayList<>();
+                for (int window = first; window < first + 10000; window++) {
+                    windows.add(window);
+                }
+                return windows;
+            }
+        }, new WindowShuffler.Sink<Integer>() {
+            @Override
+            public void accept(List<Integer> batch) {
+                batchSizes.add(batch.size());
+                windows.addAll(batch);
+            }
+        });
+        return windows;
+    }
+
+    @Test
+    public void passesEveryWindowOnceInBatches() {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<Integer> windows = shuffle(5000, 1, batchSizes);
+        final List<Integer> sorted = new ArrayList<>(windows);
+        Collections.sort(sorted);
+        for (int window = 0; window < 40000; window++) {
+            assertThat(sorted.get(window), equalTo(window));
+        }
+        assertThat(batchSizes.size(), equalTo(14));
+        assertThat(batchSizes.get(0), equalTo(3000));
+        assertThat(batchSizes.get(13), equalTo(1000));
+    }
+
+    @Test
+    public void sameSeedSameOrder() {
+        final List<Integer> ignored = new ArrayList<>();
+        assertThat(shuffle(5000, 3, ignored), equalTo(shuffle(5000, 3, ignored)));
+        assertThat(shuffle(5000, 3, ignored), not(equalTo(shuffle(5000, 4, ignored))));
+    }
+
+    @Test
+    public void breaksUpRunsOfNeighbouringWindows() {
+        final List<Integer> windows = shuffle(5000, 5, new ArrayList<Integer>());
+        int neighbours = 0;
+        for (int index = 1; index < windows.size(); index++) {
+            if (Math.abs(windows.get(index) - windows.get(index - 1)) == 1) {
+                neighbours++;
+            }
+        }
+        assertThat(neighbours, lessThan(100));
+        // without a buffer only the chunk boundaries separate neighbours
+        final List<Integer> unbuffered = shuffle(0, 5, new ArrayList<Integer>());
+        int unbufferedNeighbours = 0;
+        for (int index = 1; index < unbuffered.size(); index++) {
+            if (unbuffered.get(index) - unbuffered.get(index - 1) == 1) {
+                unbufferedNeighbours++;
+            }
+        }
+        // fewer than 400 when two chunks happen to follow each other
+        assertThat(unbufferedNeighbours, greaterThanOrEqualTo(40000 - 400));
+    }
+}
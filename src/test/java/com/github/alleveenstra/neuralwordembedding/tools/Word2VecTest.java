@@ -0,0 +1,65 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.training.Word2Vec;
+import com.github.alleveenstra.neuralwordembedding.tools.util.VocabularyIndex;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class Word2VecTest {
+
+    private static VocabularyIndex vocabulary() {
+        return VocabularyIndex.build(Arrays.asList("kat", "hond", "huis"), new int[]{1, 2, 3}, new long[3], null);
+    }
+
+    @Test
+    public void readsTextVectorsOfVocabularyWords() throws IOException {
+        final File file = File.createTempFile("vectors", ".txt");
+        file.deleteOnExit();
+        Files.write("3 2\nkat 0.5 -1.25\nvis 1 1\nhond 2 0.125\n", file, Charsets.UTF_8);
+        final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+        embeddings.put("hond", DoubleMatrix.zeros(1, 2));
+        embeddings.put("huis", new DoubleMatrix(new double[][]{{7.0, 8.0}}));
+
+        assertThat(Word2Vec.load(file.getPath(), vocabulary(), embeddings, 2), equalTo(2));
+        assertThat(embeddings.get("kat"), equalTo(new DoubleMatrix(new double[][]{{0.5, -1.25}})));
+        assertThat(embeddings.get("hond"), equalTo(new DoubleMatrix(new double[][]{{2.0, 0.125}})));
+        // not in the file or not in the vocabulary
+        assertThat(embeddings.get("huis"), equalTo(new DoubleMatrix(new double[][]{{7.0, 8.0}})));
+        assertThat(embeddings.get("vis"), nullValue());
+    }
+
+    @Test
+    public void exportedVectorsReadBack() throws IOException {
+        for (String extension : new String[]{".txt", ".bin"}) {
+            final Map<String, DoubleMatrix> embeddings = new HashMap<>();
+            embeddings.put("kat", DoubleMatrix.rand(1, 5));
+            embeddings.put("hond", DoubleMatrix.rand(1, 5).negi());
+            embeddings.put("huis", DoubleMatrix.rand(1, 5));
+            final File file = File.createTempFile("vectors", extension);
+            file.deleteOnExit();
+            Word2Vec.export(embeddings, file.getPath());
+
+            final Map<String, DoubleMatrix> read = new HashMap<>();
+            assertThat(Word2Vec.load(file.getPath(), vocabulary(), read, 5), equalTo(3));
+            for (Map.Entry<String, DoubleMatrix> entry : embeddings.entrySet()) {
+                for (int k = 0; k < 5; k++) {
+                    // written as floats
+                    assertThat(read.get(entry.getKey()).get(k), closeTo(entry.getValue().get(k), 1e-6));
+                }
+            }
+        }
+    }
+}
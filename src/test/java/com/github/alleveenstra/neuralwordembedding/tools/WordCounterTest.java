@@ -0,0 +1,86 @@
+package com.github.alleveenstra.neuralwordembedding.tools;
+
+import com.github.alleveenstra.neuralwordembedding.tools.util.WordCounter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class WordCounterTest {
+
+    @Test
+    public void countsLikeAHashMap() {
+        final Random random = new Random(36);
+        final Map<String, Long> expected = new HashMap<>();
+        final WordCounter left = new WordCounter();
+        final WordCounter right = new WordCounter();
+        for (int i = 0; i < 200000; i++) {
+            final String word = word(random);
+            final char[] chars = ("  " + word + " ").toCharArray();
+            (i % 3 == 0 ? right : left).add(chars, 2, word.length());
+            final Long count = expected.get(word);
+            expected.put(word, count == null ? 1 : count + 1);
+        }
+        left.addAll(right);
+        assertThat(left.size(), equalTo(expected.size()));
+        for (int id = 0; id < left.size(); id++) {
+            final String word = left.word(id);
+            assertThat(word, left.count(id), equalTo(expected.get(word)));
+            assertThat(word, left.id(word), equalTo(id));
+        }
+        assertThat(left.id("never added"), equalTo(-1));
+    }
+
+    @Test
+    public void idsFollowFirstOccurrence() {
+        final WordCounter counter = new WordCounter();
+        assertThat(counter.add("UUUNKKK", 1), equalTo(0));
+        assertThat(counter.add("<s>".toCharArray(), 0, 3), equalTo(1));
+        assertThat(counter.add("beth-semes", 2), equalTo(2));
+        assertThat(counter.add("<s>".toCharArray(), 0, 3), equalTo(1));
+        assertThat(counter.count(1), equalTo(2L));
+        assertThat(counter.count(2), equalTo(2L));
+    }
+
+    @Test
+    public void writesAndReadsCounts() throws IOException {
+        final WordCounter counter = new WordCounter();
+        counter.add("beth-semes", 3);
+        counter.add("<s>", 2);
+        counter.add("vergeten", 1);
+        counter.add("vergeten", -1);
+        final File file = File.createTempFile("counts", ".txt");
+        try {
+            counter.write(file);
+            final WordCounter read = WordCounter.read(file);
+            assertThat(read.size(), equalTo(2));
+            assertThat(read.count(read.id("beth-semes")), equalTo(3L));
+            assertThat(read.count(read.id("<s>")), equalTo(2L));
+        } finally {
+            file.delete();
+        }
+    }
+
+    // mostly short ascii words with some accents and supplementary characters, so the table grows several times
+    private static String word(Random random) {
+        final StringBuilder builder = new StringBuilder();
+        final int length = 1 + random.nextInt(random.nextInt(10) + 1);
+        for (int i = 0; i < length; i++) {
+            final int choice = random.nextInt(40);
+            if (choice == 0) {
+                builder.append('é');
+            } else if (choice == 1) {
+                builder.appendCodePoint(0x1d400 + random.nextInt(26));
+            } else {
+                builder.append((char) ('a' + random.nextInt(choice < 20 ? 6 : 26)));
+            }
+        }
+        return builder.toString();
+    }
+}